@@ -0,0 +1,82 @@
+package mat.pia.sentiment.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import mat.pia.sentiment.client.AnthropicMessageCodec;
+import mat.pia.sentiment.config.AppConfig;
+import mat.pia.sentiment.model.SentimentResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Payloads and components shared by the benchmarks, built the way the application wires them
+ * but without a Spring context.
+ */
+public final class Fixtures {
+
+    private Fixtures() {
+    }
+
+    public static ObjectMapper objectMapper() {
+        return new AppConfig().objectMapper();
+    }
+
+    public static AnthropicMessageCodec codec(ObjectMapper objectMapper) {
+        AnthropicMessageCodec codec = new AnthropicMessageCodec(objectMapper, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(codec, "model", "claude-3-haiku-20240307");
+        ReflectionTestUtils.setField(codec, "maxTokens", 1000);
+        return codec;
+    }
+
+    public static String read(String name) {
+        try (InputStream in = Fixtures.class.getResourceAsStream("/fixtures/" + name)) {
+            if (in == null) {
+                throw new IllegalArgumentException("No fixture named " + name);
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** Customer reviews of mixed length, from a two-word reply to a paragraph. */
+    public static List<String> reviewTexts() {
+        return read("review-texts.txt").lines().filter(line -> !line.isBlank()).toList();
+    }
+
+    /** Analysis results with full emotion scores, the same sequence on every run. */
+    public static List<SentimentResponse> responses(int count) {
+        Random random = new Random(7);
+        List<String> texts = reviewTexts();
+        SentimentResponse.SentimentType[] sentiments = SentimentResponse.SentimentType.values();
+        SentimentResponse.EmotionType[] emotions = SentimentResponse.EmotionType.values();
+
+        List<SentimentResponse> responses = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Map<SentimentResponse.EmotionType, Double> scores = new EnumMap<>(SentimentResponse.EmotionType.class);
+            for (SentimentResponse.EmotionType emotion : emotions) {
+                if (emotion != SentimentResponse.EmotionType.NONE) {
+                    scores.put(emotion, Math.round(random.nextDouble() * 100) / 100.0);
+                }
+            }
+            responses.add(SentimentResponse.builder()
+                    .text(texts.get(i % texts.size()))
+                    .sentiment(sentiments[random.nextInt(sentiments.length)])
+                    .primaryEmotion(emotions[random.nextInt(emotions.length - 1)])
+                    .emotionScores(scores)
+                    .confidence(0.5 + random.nextDouble() / 2)
+                    .analysis("The reviewer's tone and word choice point to this sentiment with moderate certainty.")
+                    .build());
+        }
+        return responses;
+    }
+}
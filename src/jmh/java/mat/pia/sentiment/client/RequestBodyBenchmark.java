@@ -0,0 +1,62 @@
+package mat.pia.sentiment.client;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import mat.pia.sentiment.benchmark.Fixtures;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/** Building Messages API request bodies as {@link ObjectNode}s and serializing them. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RequestBodyBenchmark {
+
+    @Param({"short", "long"})
+    public String textLength;
+
+    private AnthropicMessageCodec codec;
+    private String text;
+    private List<String> packedTexts;
+
+    @Setup
+    public void setUp() {
+        codec = Fixtures.codec(Fixtures.objectMapper());
+        List<String> texts = Fixtures.reviewTexts();
+        Comparator<String> byLength = Comparator.comparingInt(String::length);
+        text = "short".equals(textLength)
+                ? texts.stream().min(byLength).orElseThrow()
+                : texts.stream().max(byLength).orElseThrow();
+        packedTexts = texts;
+    }
+
+    @Benchmark
+    public ObjectNode buildRequestBody() {
+        return codec.buildRequestBody(text);
+    }
+
+    @Benchmark
+    public byte[] buildAndSerialize() {
+        return codec.serialize(codec.buildRequestBody(text));
+    }
+
+    @Benchmark
+    public byte[] buildAndSerializePacked() {
+        return codec.serialize(codec.buildPackedRequestBody(packedTexts));
+    }
+}
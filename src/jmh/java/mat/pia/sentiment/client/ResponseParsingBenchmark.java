@@ -0,0 +1,66 @@
+package mat.pia.sentiment.client;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import mat.pia.sentiment.benchmark.Fixtures;
+import mat.pia.sentiment.model.SentimentResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding a Claude reply into a {@link SentimentResponse}: the single streaming pass over the
+ * Messages API envelope, the decode of already extracted text used by streamed and batch
+ * replies, and a tree parse of the envelope alone as a reference for the cost it replaced.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ResponseParsingBenchmark {
+
+    /** A bare JSON reply, and one wrapped in prose and a code fence. */
+    @Param({"claude-message.json", "claude-message-prose.json"})
+    public String fixture;
+
+    private ObjectMapper objectMapper;
+    private AnthropicMessageCodec codec;
+    private String responseJson;
+    private String content;
+
+    @Setup
+    public void setUp() throws JsonProcessingException {
+        objectMapper = Fixtures.objectMapper();
+        codec = Fixtures.codec(objectMapper);
+        responseJson = Fixtures.read(fixture);
+        content = objectMapper.readTree(responseJson).path("content").path(0).path("text").asText();
+    }
+
+    @Benchmark
+    public JsonNode readTreeMessage() throws JsonProcessingException {
+        return objectMapper.readTree(responseJson);
+    }
+
+    @Benchmark
+    public SentimentResponse decode() {
+        return codec.decode("benchmark text", responseJson);
+    }
+
+    @Benchmark
+    public SentimentResponse decodeContent() {
+        return codec.decodeContent("benchmark text", content);
+    }
+}
@@ -0,0 +1,44 @@
+package mat.pia.sentiment.service;
+
+import mat.pia.sentiment.benchmark.Fixtures;
+import mat.pia.sentiment.dto.BatchSentimentResponse;
+import mat.pia.sentiment.model.SentimentResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/** Batch summary aggregation over result lists of typical and large batch sizes. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BatchSummariesBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int batchSize;
+
+    private List<SentimentResponse> results;
+
+    @Setup
+    public void setUp() {
+        results = Fixtures.responses(batchSize);
+    }
+
+    @Benchmark
+    public BatchSentimentResponse.BatchSummary summarize() {
+        return BatchSummaries.summarize(batchSize, results);
+    }
+}
@@ -0,0 +1,79 @@
+package mat.pia.sentiment.service;
+
+import mat.pia.sentiment.benchmark.Fixtures;
+import mat.pia.sentiment.dto.SentimentDTO;
+import mat.pia.sentiment.model.EmotionScoresConverter;
+import mat.pia.sentiment.model.SentimentEntity;
+import mat.pia.sentiment.model.SentimentRequest;
+import mat.pia.sentiment.model.SentimentResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mapping between analysis results, entities and DTOs, and the packed emotion-scores column
+ * each row's scores are encoded to on save and decoded from on every history read.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SentimentMapperBenchmark {
+
+    private SentimentMapper mapper;
+    private SentimentRequest request;
+    private SentimentResponse response;
+    private SentimentEntity entity;
+    private EmotionScoresConverter converter;
+    private byte[] emotionScoresColumn;
+
+    @Setup
+    public void setUp() {
+        mapper = new SentimentMapper();
+        converter = new EmotionScoresConverter();
+        response = Fixtures.responses(1).get(0);
+        request = new SentimentRequest(response.getText(), "benchmark", null);
+        entity = mapper.toEntity(request, response, "ANTHROPIC", "0".repeat(64));
+        entity.setId(42L);
+        emotionScoresColumn = converter.convertToDatabaseColumn(response.getEmotionScores());
+    }
+
+    @Benchmark
+    public SentimentEntity toEntity() {
+        return mapper.toEntity(request, response, "ANTHROPIC", "0".repeat(64));
+    }
+
+    @Benchmark
+    public SentimentDTO toDto() {
+        return mapper.toDto(entity);
+    }
+
+    @Benchmark
+    public byte[] encodeEmotionScores() {
+        return converter.convertToDatabaseColumn(response.getEmotionScores());
+    }
+
+    @Benchmark
+    public Map<SentimentResponse.EmotionType, Double> decodeEmotionScores() {
+        return converter.convertToEntityAttribute(emotionScoresColumn);
+    }
+
+    @Benchmark
+    public SentimentDTO roundTrip() {
+        SentimentEntity stored = mapper.toEntity(request, response, "ANTHROPIC", "0".repeat(64));
+        stored.setEmotionScores(converter.convertToEntityAttribute(converter.convertToDatabaseColumn(stored.getEmotionScores())));
+        return mapper.toDto(stored);
+    }
+}
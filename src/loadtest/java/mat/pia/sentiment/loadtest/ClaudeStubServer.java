@@ -0,0 +1,268 @@
+package mat.pia.sentiment.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.extern.slf4j.Slf4j;
+import mat.pia.sentiment.client.AnthropicMessageCodec;
+import mat.pia.sentiment.model.SentimentResponse;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Local stand-in for the Messages API endpoint. Answers single and packed analysis requests with
+ * well-formed replies after a delay drawn from a {@link LatencyDistribution}, injects 429 and
+ * 5xx responses at configurable rates, and optionally enforces a requests-per-minute limit with
+ * the same rate-limit headers the real API sends. Message Batches (create, retrieve, results) are
+ * answered from memory and have ended by the time they are retrieved.
+ */
+@Slf4j
+class ClaudeStubServer implements AutoCloseable {
+
+    private static final Pattern PACKED_ENTRY = Pattern.compile("(?m)^\\[(\\d+)] (.*)$");
+    private static final SentimentResponse.EmotionType[] EMOTIONS = SentimentResponse.EmotionType.values();
+    private static final SentimentResponse.SentimentType[] SENTIMENTS = SentimentResponse.SentimentType.values();
+
+    private final ObjectMapper objectMapper;
+    private final LatencyDistribution latency;
+    private final double rateLimitShare;
+    private final double serverErrorShare;
+    private final int requestsPerMinute;
+    private final String analysis;
+    private final HttpServer server;
+    /** Platform threads, so the stub never competes with the application for virtual-thread carriers. */
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong packedCalls = new AtomicLong();
+    private final AtomicLong rateLimited = new AtomicLong();
+    private final AtomicLong serverErrors = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final Map<String, List<JsonNode>> batchRequests = new ConcurrentHashMap<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private long windowStart = System.nanoTime();
+    private int windowCount;
+
+    ClaudeStubServer(ObjectMapper objectMapper, LoadTestSettings settings) throws IOException {
+        this.objectMapper = objectMapper;
+        this.latency = LatencyDistribution.parse(settings.stubLatency());
+        this.rateLimitShare = settings.stubRateLimitShare();
+        this.serverErrorShare = settings.stubServerErrorShare();
+        this.requestsPerMinute = settings.stubRequestsPerMinute();
+        this.analysis = "The text reads as mostly consistent in tone. ".repeat(settings.stubAnalysisChars() / 46 + 1)
+                .substring(0, settings.stubAnalysisChars());
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1024);
+        server.createContext("/v1/messages", this::handle);
+        server.createContext("/v1/messages/batches", this::handleBatches);
+        server.setExecutor(executor);
+    }
+
+    void start() {
+        server.start();
+        log.info("Claude stub listening on {}", url());
+    }
+
+    String url() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/v1/messages";
+    }
+
+    Map<String, Object> stats() {
+        return Map.of(
+                "calls", calls.get(),
+                "packedCalls", packedCalls.get(),
+                "rateLimited", rateLimited.get(),
+                "serverErrors", serverErrors.get(),
+                "batches", batches.get(),
+                "maxConcurrentCalls", maxInFlight.get());
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+        try (exchange) {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                // The application warms its connections with HEAD requests, which must get no body
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            JsonNode request;
+            try (InputStream body = exchange.getRequestBody()) {
+                request = objectMapper.readTree(body);
+            }
+            calls.incrementAndGet();
+
+            int remaining = takeRequestPermit();
+            if (requestsPerMinute > 0) {
+                exchange.getResponseHeaders().add("anthropic-ratelimit-requests-limit", String.valueOf(requestsPerMinute));
+                exchange.getResponseHeaders().add("anthropic-ratelimit-requests-remaining", String.valueOf(Math.max(remaining, 0)));
+            }
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            if (remaining < 0 || random.nextDouble() < rateLimitShare) {
+                rateLimited.incrementAndGet();
+                exchange.getResponseHeaders().add("retry-after", "1");
+                send(exchange, 429, error("rate_limit_error", "Number of requests has exceeded your rate limit"));
+                return;
+            }
+
+            TimeUnit.NANOSECONDS.sleep(latency.sampleNanos());
+            if (random.nextDouble() < serverErrorShare) {
+                serverErrors.incrementAndGet();
+                boolean overloaded = random.nextBoolean();
+                send(exchange, overloaded ? 529 : 500, overloaded
+                        ? error("overloaded_error", "Overloaded")
+                        : error("api_error", "Internal server error"));
+                return;
+            }
+            if (request.path("stream").asBoolean()) {
+                send(exchange, 400, error("invalid_request_error", "Streaming is not simulated by the stub"));
+                return;
+            }
+            send(exchange, 200, reply(request));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    private void handleBatches(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String path = exchange.getRequestURI().getPath().substring("/v1/messages/batches".length());
+            if ("POST".equals(exchange.getRequestMethod()) && path.isEmpty()) {
+                JsonNode body;
+                try (InputStream in = exchange.getRequestBody()) {
+                    body = objectMapper.readTree(in);
+                }
+                String id = "msgbatch_stub_" + batches.incrementAndGet();
+                batchRequests.put(id, objectMapper.convertValue(body.path("requests"),
+                        objectMapper.getTypeFactory().constructCollectionType(List.class, JsonNode.class)));
+                send(exchange, 200, batch(id, "in_progress"));
+            } else if ("GET".equals(exchange.getRequestMethod()) && path.endsWith("/results")) {
+                String id = path.substring(1, path.length() - "/results".length());
+                StringBuilder lines = new StringBuilder();
+                for (JsonNode request : batchRequests.getOrDefault(id, List.of())) {
+                    ObjectNode line = objectMapper.createObjectNode();
+                    line.put("custom_id", request.path("custom_id").asText());
+                    line.putObject("result").put("type", "succeeded").set("message", reply(request.path("params")));
+                    lines.append(objectMapper.writeValueAsString(line)).append('\n');
+                }
+                byte[] bytes = lines.toString().getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(200, bytes.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(bytes);
+                }
+            } else if ("GET".equals(exchange.getRequestMethod()) && !path.isEmpty() && batchRequests.containsKey(path.substring(1))) {
+                send(exchange, 200, batch(path.substring(1), "ended"));
+            } else {
+                send(exchange, 404, error("not_found_error", "No such batch"));
+            }
+        }
+    }
+
+    private ObjectNode batch(String id, String processingStatus) {
+        ObjectNode batch = objectMapper.createObjectNode();
+        batch.put("id", id);
+        batch.put("type", "message_batch");
+        batch.put("processing_status", processingStatus);
+        batch.put("results_url", "http://127.0.0.1:" + server.getAddress().getPort()
+                + "/v1/messages/batches/" + id + "/results");
+        return batch;
+    }
+
+    /** Requests left in the current minute after this one, negative once the limit is exceeded. */
+    private synchronized int takeRequestPermit() {
+        if (requestsPerMinute <= 0) {
+            return Integer.MAX_VALUE;
+        }
+        long now = System.nanoTime();
+        if (now - windowStart >= TimeUnit.MINUTES.toNanos(1)) {
+            windowStart = now;
+            windowCount = 0;
+        }
+        return requestsPerMinute - ++windowCount;
+    }
+
+    private ObjectNode reply(JsonNode request) {
+        String content = request.path("messages").path(0).path("content").asText();
+        String text;
+        if (AnthropicMessageCodec.PACKED_SYSTEM_PROMPT.equals(request.path("system").asText())) {
+            packedCalls.incrementAndGet();
+            ArrayNode entries = objectMapper.createArrayNode();
+            Matcher matcher = PACKED_ENTRY.matcher(content);
+            while (matcher.find()) {
+                entries.add(result(matcher.group(2)).put("index", Integer.parseInt(matcher.group(1))));
+            }
+            text = entries.toString();
+        } else {
+            text = result(content).toPrettyString();
+        }
+
+        ObjectNode message = objectMapper.createObjectNode();
+        message.put("id", "msg_stub_" + calls.get());
+        message.put("type", "message");
+        message.put("role", "assistant");
+        message.put("model", request.path("model").asText());
+        message.putArray("content").addObject().put("type", "text").put("text", text);
+        message.put("stop_reason", "end_turn");
+        message.putObject("usage")
+                .put("input_tokens", (request.path("system").asText().length() + content.length()) / 4)
+                .put("output_tokens", text.length() / 4);
+        return message;
+    }
+
+    /** A plausible result that is always the same for the same text. */
+    private ObjectNode result(String text) {
+        int hash = text.hashCode();
+        ObjectNode result = objectMapper.createObjectNode();
+        result.put("sentiment", SENTIMENTS[Math.floorMod(hash, SENTIMENTS.length)].name());
+        result.put("primaryEmotion", EMOTIONS[Math.floorMod(hash >> 4, EMOTIONS.length - 1)].name());
+        ObjectNode scores = result.putObject("emotionScores");
+        for (int i = 0; i < EMOTIONS.length - 1; i++) {
+            scores.put(EMOTIONS[i].name(), Math.floorMod(hash >> i, 100) / 100.0);
+        }
+        result.put("confidence", 0.5 + Math.floorMod(hash >> 8, 50) / 100.0);
+        result.put("analysis", analysis);
+        return result;
+    }
+
+    private ObjectNode error(String type, String message) {
+        ObjectNode error = objectMapper.createObjectNode();
+        error.put("type", "error");
+        error.putObject("error").put("type", type).put("message", message);
+        return error;
+    }
+
+    private void send(HttpExchange exchange, int status, JsonNode body) throws IOException {
+        byte[] bytes = objectMapper.writeValueAsBytes(body);
+        exchange.getResponseHeaders().add("content-type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package mat.pia.sentiment.loadtest;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Response delay of the Claude stub, parsed from {@code fixed:PT0.3S},
+ * {@code uniform:PT0.1S..PT0.5S} or {@code lognormal:PT0.4S..PT2S} (median..p99, the long tail
+ * real model latencies have).
+ */
+interface LatencyDistribution {
+
+    /** z-score of the 99th percentile of the standard normal distribution. */
+    double Z_99 = 2.3263;
+
+    long sampleNanos();
+
+    static LatencyDistribution parse(String spec) {
+        int colon = spec.indexOf(':');
+        if (colon < 0) {
+            throw new IllegalArgumentException("Latency must look like kind:arguments, got " + spec);
+        }
+        String kind = spec.substring(0, colon);
+        String[] bounds = spec.substring(colon + 1).split("\\.\\.");
+        switch (kind) {
+            case "fixed": {
+                long nanos = Duration.parse(bounds[0]).toNanos();
+                return () -> nanos;
+            }
+            case "uniform": {
+                long min = Duration.parse(bounds[0]).toNanos();
+                long max = Duration.parse(bounds[1]).toNanos();
+                return () -> ThreadLocalRandom.current().nextLong(min, max + 1);
+            }
+            case "lognormal": {
+                double median = Duration.parse(bounds[0]).toNanos();
+                double p99 = Duration.parse(bounds[1]).toNanos();
+                double mu = Math.log(median);
+                double sigma = Math.log(p99 / median) / Z_99;
+                return () -> (long) Math.exp(mu + sigma * ThreadLocalRandom.current().nextGaussian());
+            }
+            default:
+                throw new IllegalArgumentException("Unknown latency distribution " + kind);
+        }
+    }
+}
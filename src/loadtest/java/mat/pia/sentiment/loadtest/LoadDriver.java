@@ -0,0 +1,218 @@
+package mat.pia.sentiment.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-model traffic generator: requests are sent on a schedule (Poisson or evenly spaced
+ * arrivals) whether or not earlier ones have finished, so a slow server faces a growing backlog
+ * as real clients would produce. Latency is measured from the scheduled send time, which keeps
+ * queueing inside the driver from hiding server delays.
+ */
+@Slf4j
+class LoadDriver {
+
+    private static final List<String> TEMPLATES = List.of(
+            "Great product, works exactly as described",
+            "Delivery took forever and nobody answered my emails",
+            "It's okay. Does what it says, nothing more",
+            "I can't believe how fast the support team solved my issue, thank you so much",
+            "The battery barely lasts half a day, which is really disappointing for a phone at this price",
+            "Ordered the blue one, got a grey one. Returned it, still waiting for the refund",
+            "Absolutely love the new update, the dark mode is beautiful and the app feels much snappier",
+            "The hotel was clean and the staff were friendly, but the street noise kept us awake every night",
+            "Honestly I expected more from a brand with this reputation; the stitching came apart after two washes",
+            "Why is the checkout page asking for my password again every single time?");
+    /** Distinct texts that repeated requests are drawn from, so they can hit the result caches. */
+    private static final int REPEAT_POOL = 50;
+
+    private final ObjectMapper objectMapper;
+    private final LoadTestSettings settings;
+    private final HttpClient httpClient;
+    private final URI analyzeUri;
+    private final URI batchUri;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong sequence = new AtomicLong();
+
+    LoadDriver(ObjectMapper objectMapper, LoadTestSettings settings, String target) {
+        this.objectMapper = objectMapper;
+        this.settings = settings;
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        this.analyzeUri = URI.create(target + "/api/sentiment/analyze");
+        this.batchUri = URI.create(target + "/api/sentiment/analyze/batch");
+    }
+
+    /** Offers {@code rate} requests per second for {@code duration}, then waits for stragglers. */
+    Stage run(int rate, Duration duration) {
+        Stage stage = new Stage(rate, duration);
+        long start = System.nanoTime();
+        long end = start + duration.toNanos();
+        long next = start;
+        while (next < end) {
+            long wait = next - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            send(stage, next, end);
+            next += interArrivalNanos(rate);
+        }
+        stage.awaitCompletion(settings.requestTimeout().plusSeconds(5));
+        return stage;
+    }
+
+    private long interArrivalNanos(int rate) {
+        double mean = TimeUnit.SECONDS.toNanos(1) / (double) rate;
+        if (!settings.poissonArrivals()) {
+            return (long) mean;
+        }
+        return (long) (-Math.log(1 - ThreadLocalRandom.current().nextDouble()) * mean);
+    }
+
+    private void send(Stage stage, long scheduledAt, long stageEnd) {
+        if (inFlight.get() >= settings.maxInFlight()) {
+            // The driver itself is saturated; counting these keeps the offered rate honest
+            stage.dropped.increment();
+            return;
+        }
+        boolean batch = ThreadLocalRandom.current().nextDouble() < settings.batchShare();
+        Endpoint endpoint = stage.endpoints.get(batch ? "batch" : "analyze");
+        HttpRequest request = HttpRequest.newBuilder(batch ? batchUri : analyzeUri)
+                .timeout(settings.requestTimeout())
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body(batch)))
+                .build();
+
+        inFlight.incrementAndGet();
+        stage.pending.incrementAndGet();
+        endpoint.requests.increment();
+        httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .whenComplete((response, error) -> {
+                    long now = System.nanoTime();
+                    inFlight.decrementAndGet();
+                    if (error != null) {
+                        Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+                        endpoint.error(cause instanceof HttpTimeoutException ? "timeout" : "io");
+                    } else if (response.statusCode() == 200) {
+                        endpoint.latencies.recordValue(now - scheduledAt);
+                        endpoint.succeeded.increment();
+                        if (now <= stageEnd) {
+                            stage.succeededInWindow.increment();
+                        }
+                    } else {
+                        endpoint.error(String.valueOf(response.statusCode()));
+                    }
+                    stage.pending.decrementAndGet();
+                });
+    }
+
+    private byte[] body(boolean batch) {
+        try {
+            if (!batch) {
+                return objectMapper.writeValueAsBytes(entry());
+            }
+            ObjectNode request = objectMapper.createObjectNode();
+            ArrayNode entries = request.putArray("requests");
+            for (int i = 0; i < settings.batchSize(); i++) {
+                entries.add(entry());
+            }
+            return objectMapper.writeValueAsBytes(request);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private ObjectNode entry() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        // Unique texts by default so every request reaches Claude instead of a cache
+        long id = random.nextDouble() < settings.repeatShare() ? random.nextInt(REPEAT_POOL) : REPEAT_POOL + sequence.incrementAndGet();
+        String text = TEMPLATES.get((int) (id % TEMPLATES.size())) + " (order " + id + ")";
+        return objectMapper.createObjectNode().put("text", text).put("source", "loadtest");
+    }
+
+    /** Outcome counters for one stage. */
+    static final class Stage {
+        final int offeredRps;
+        final Duration duration;
+        final Map<String, Endpoint> endpoints = new LinkedHashMap<>();
+        final LongAdder dropped = new LongAdder();
+        final LongAdder succeededInWindow = new LongAdder();
+        final AtomicInteger pending = new AtomicInteger();
+
+        private Stage(int offeredRps, Duration duration) {
+            this.offeredRps = offeredRps;
+            this.duration = duration;
+            endpoints.put("analyze", new Endpoint());
+            endpoints.put("batch", new Endpoint());
+        }
+
+        private void awaitCompletion(Duration timeout) {
+            long deadline = System.nanoTime() + timeout.toNanos();
+            while (pending.get() > 0 && System.nanoTime() < deadline) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(50));
+            }
+            if (pending.get() > 0) {
+                log.warn("{} requests of the {} rps stage were still running when it was closed", pending.get(), offeredRps);
+            }
+        }
+
+        long sent() {
+            return endpoints.values().stream().mapToLong(endpoint -> endpoint.requests.sum()).sum();
+        }
+
+        long failed() {
+            return endpoints.values().stream().mapToLong(Endpoint::failed).sum();
+        }
+
+        double throughputRps() {
+            return succeededInWindow.sum() / (duration.toNanos() / 1e9);
+        }
+
+        Histogram latencies() {
+            Histogram all = new Histogram(3);
+            endpoints.values().forEach(endpoint -> all.add(endpoint.latencies));
+            return all;
+        }
+    }
+
+    static final class Endpoint {
+        final Histogram latencies = new ConcurrentHistogram(3);
+        final LongAdder requests = new LongAdder();
+        final LongAdder succeeded = new LongAdder();
+        final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+
+        private void error(String kind) {
+            errors.computeIfAbsent(kind, key -> new LongAdder()).increment();
+        }
+
+        long failed() {
+            return errors.values().stream().mapToLong(LongAdder::sum).sum();
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package mat.pia.sentiment.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import lombok.extern.slf4j.Slf4j;
+import mat.pia.sentiment.SentimentBackendApplication;
+import mat.pia.sentiment.config.AppConfig;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.File;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Runs a stepped load test: starts the Claude stub, starts the application against it (or uses
+ * {@code --loadtest.target}), offers each rate in turn and writes a JSON report with throughput,
+ * latency percentiles, error rates and pool saturation per stage.
+ */
+@Slf4j
+public final class LoadTest {
+
+    private static final String OPTION_PREFIX = "--loadtest.";
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        List<String> applicationArgs = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith(OPTION_PREFIX) && arg.contains("=")) {
+                int equals = arg.indexOf('=');
+                options.put(arg.substring(OPTION_PREFIX.length(), equals), arg.substring(equals + 1));
+            } else if (!arg.isBlank()) {
+                applicationArgs.add(arg);
+            }
+        }
+        LoadTestSettings settings = LoadTestSettings.from(options);
+        ObjectMapper objectMapper = new AppConfig().objectMapper();
+
+        try (ClaudeStubServer stub = new ClaudeStubServer(objectMapper, settings)) {
+            stub.start();
+            ConfigurableApplicationContext application = null;
+            String target = settings.target();
+            if (target == null) {
+                application = startApplication(stub.url(), settings, applicationArgs);
+                target = "http://127.0.0.1:" + application.getEnvironment().getProperty("local.server.port");
+            } else {
+                log.info("Testing {}; point its anthropic.api.url at {} to use the stub", target, stub.url());
+            }
+            try {
+                LoadTestReport report = run(objectMapper, settings, target, stub);
+                File file = new File(settings.report());
+                file.getAbsoluteFile().getParentFile().mkdirs();
+                objectMapper.writer(SerializationFeature.INDENT_OUTPUT).writeValue(file, report);
+                log.info("Report written to {}", file.getAbsolutePath());
+            } finally {
+                if (application != null) {
+                    application.close();
+                }
+            }
+        }
+    }
+
+    private static LoadTestReport run(ObjectMapper objectMapper, LoadTestSettings settings, String target,
+                                      ClaudeStubServer stub) {
+        Instant startedAt = Instant.now();
+        LoadDriver driver = new LoadDriver(objectMapper, settings, target);
+        List<LoadTestReport.StageReport> stages = new ArrayList<>();
+        try (SaturationSampler sampler = new SaturationSampler(objectMapper, target)) {
+            log.info("Warming up at {} rps for {} s", settings.rates().get(0), settings.warmup().toSeconds());
+            driver.run(settings.rates().get(0), settings.warmup());
+            sampler.nextStage();
+
+            for (int rate : settings.rates()) {
+                log.info("Offering {} rps for {} s", rate, settings.stageDuration().toSeconds());
+                LoadDriver.Stage stage = driver.run(rate, settings.stageDuration());
+                LoadTestReport.StageReport report = stageReport(settings, stage, sampler.nextStage());
+                stages.add(report);
+                log.info("{} rps offered: {} rps served, p50 {} ms, p99 {} ms, p99.9 {} ms, errors {}%{}",
+                        rate, String.format("%.1f", report.throughputRps()), report.latencyMs().p50(),
+                        report.latencyMs().p99(), report.latencyMs().p999(),
+                        String.format("%.2f", report.errorRate() * 100),
+                        report.saturationReasons().isEmpty() ? "" : ", saturated: " + report.saturationReasons());
+            }
+        }
+        return new LoadTestReport(startedAt, target, settings, stages, summarize(stages), stub.stats());
+    }
+
+    private static LoadTestReport.StageReport stageReport(LoadTestSettings settings, LoadDriver.Stage stage,
+                                                          Map<String, LoadTestReport.ResourceReport> resources) {
+        Map<String, LoadTestReport.EndpointReport> endpoints = new LinkedHashMap<>();
+        stage.endpoints.forEach((name, endpoint) -> endpoints.put(name, new LoadTestReport.EndpointReport(
+                endpoint.requests.sum(),
+                endpoint.succeeded.sum(),
+                endpoint.errors.entrySet().stream()
+                        .collect(Collectors.toMap(Map.Entry::getKey, entry -> entry.getValue().sum())),
+                LoadTestReport.LatencyReport.of(endpoint.latencies))));
+
+        long sent = stage.sent();
+        long dropped = stage.dropped.sum();
+        double errorRate = sent + dropped == 0 ? 0 : (double) (stage.failed() + dropped) / (sent + dropped);
+        LoadTestReport.LatencyReport latency = LoadTestReport.LatencyReport.of(stage.latencies());
+        double throughput = stage.throughputRps();
+
+        List<String> reasons = new ArrayList<>();
+        // Batch requests count once, so the served rate is compared with the offered request rate
+        if (throughput < stage.offeredRps * 0.9) {
+            reasons.add("throughput");
+        }
+        if (latency.p99() > settings.sloP99().toMillis()) {
+            reasons.add("p99");
+        }
+        if (errorRate > settings.maxErrorRate()) {
+            reasons.add("errors");
+        }
+        if (dropped > 0) {
+            reasons.add("driver-in-flight-limit");
+        }
+        return new LoadTestReport.StageReport(stage.offeredRps, sent, dropped, Math.round(throughput * 10) / 10.0,
+                errorRate, latency, endpoints, resources, reasons);
+    }
+
+    private static LoadTestReport.Summary summarize(List<LoadTestReport.StageReport> stages) {
+        LoadTestReport.StageReport peak = stages.stream()
+                .max((a, b) -> Double.compare(a.throughputRps(), b.throughputRps()))
+                .orElseThrow();
+        LoadTestReport.StageReport saturation = stages.stream()
+                .filter(stage -> !stage.saturationReasons().isEmpty())
+                .findFirst()
+                .orElse(null);
+        LoadTestReport.StageReport inspected = saturation != null ? saturation : stages.get(stages.size() - 1);
+        List<String> saturatedResources = inspected.resources().entrySet().stream()
+                .filter(entry -> entry.getValue().saturated())
+                .map(Map.Entry::getKey)
+                .toList();
+        return new LoadTestReport.Summary(
+                peak.throughputRps(),
+                peak.offeredRps(),
+                saturation != null ? saturation.offeredRps() : null,
+                saturation != null ? saturation.saturationReasons() : List.of(),
+                saturatedResources);
+    }
+
+    private static ConfigurableApplicationContext startApplication(String stubUrl, LoadTestSettings settings,
+                                                                   List<String> applicationArgs) {
+        SpringApplication application = new SpringApplication(SentimentBackendApplication.class);
+        application.setDefaultProperties(Map.of("spring.profiles.active", "test"));
+
+        // Property files outrank default properties, so the harness settings go on the command line
+        List<String> args = new ArrayList<>(applicationArgs);
+        addUnlessGiven(args, "anthropic.api.url", stubUrl);
+        addUnlessGiven(args, "server.port", "0");
+        addUnlessGiven(args, "spring.jpa.show-sql", "false");
+        addUnlessGiven(args, "server.tomcat.mbeanregistry.enabled", "true");
+        addUnlessGiven(args, "management.endpoints.web.exposure.include", "health,metrics");
+        addUnlessGiven(args, "logging.level.mat.pia.sentiment", "WARN");
+        // The client-side limiter defaults to a real account's quota; match the stub's instead
+        if (settings.stubRequestsPerMinute() > 0) {
+            addUnlessGiven(args, "anthropic.rate-limit.requests-per-minute", String.valueOf(settings.stubRequestsPerMinute()));
+            addUnlessGiven(args, "anthropic.rate-limit.tokens-per-minute", String.valueOf(Integer.MAX_VALUE));
+        } else {
+            addUnlessGiven(args, "anthropic.rate-limit.enabled", "false");
+        }
+        return application.run(args.toArray(String[]::new));
+    }
+
+    private static void addUnlessGiven(List<String> args, String property, String value) {
+        String option = "--" + property + "=";
+        if (args.stream().noneMatch(arg -> arg.startsWith(option))) {
+            args.add(option + value);
+        }
+    }
+}
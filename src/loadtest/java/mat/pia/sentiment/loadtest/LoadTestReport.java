@@ -0,0 +1,70 @@
+package mat.pia.sentiment.loadtest;
+
+import org.HdrHistogram.Histogram;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+/** Machine-readable result of a load test run, written as JSON. */
+record LoadTestReport(
+        Instant startedAt,
+        String target,
+        LoadTestSettings settings,
+        List<StageReport> stages,
+        Summary summary,
+        Map<String, Object> stub) {
+
+    /** One step of offered load. Throughput counts successes that completed within the stage. */
+    record StageReport(
+            int offeredRps,
+            long sent,
+            long dropped,
+            double throughputRps,
+            double errorRate,
+            LatencyReport latencyMs,
+            Map<String, EndpointReport> endpoints,
+            Map<String, ResourceReport> resources,
+            List<String> saturationReasons) {
+    }
+
+    record EndpointReport(long requests, long succeeded, Map<String, Long> errors, LatencyReport latencyMs) {
+    }
+
+    /** Latency of successful requests, measured from their scheduled send time. */
+    record LatencyReport(double p50, double p90, double p99, double p999, double max, double mean) {
+
+        static LatencyReport of(Histogram nanos) {
+            if (nanos.getTotalCount() == 0) {
+                return new LatencyReport(0, 0, 0, 0, 0, 0);
+            }
+            return new LatencyReport(
+                    millis(nanos.getValueAtPercentile(50)),
+                    millis(nanos.getValueAtPercentile(90)),
+                    millis(nanos.getValueAtPercentile(99)),
+                    millis(nanos.getValueAtPercentile(99.9)),
+                    millis(nanos.getMaxValue()),
+                    millis(nanos.getMean()));
+        }
+
+        private static double millis(double nanos) {
+            return Math.round(nanos / 10_000) / 100.0;
+        }
+    }
+
+    /** Peak usage of a pool or queue during a stage; saturated when full or when callers waited. */
+    record ResourceReport(double maxUsed, Double capacity, Double maxWaiting, boolean saturated) {
+    }
+
+    /**
+     * Highest throughput reached, and the first stage that missed the offered rate, the p99
+     * objective or the error budget, with the resources that were saturated there.
+     */
+    record Summary(
+            double peakThroughputRps,
+            int peakAtOfferedRps,
+            Integer saturationAtOfferedRps,
+            List<String> saturationReasons,
+            List<String> saturatedResources) {
+    }
+}
@@ -0,0 +1,54 @@
+package mat.pia.sentiment.loadtest;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Harness options, given as {@code --loadtest.name=value}. Every other argument is passed to the
+ * application when the harness starts it.
+ */
+record LoadTestSettings(
+        String target,
+        List<Integer> rates,
+        Duration warmup,
+        Duration stageDuration,
+        boolean poissonArrivals,
+        double batchShare,
+        int batchSize,
+        double repeatShare,
+        int maxInFlight,
+        Duration requestTimeout,
+        Duration sloP99,
+        double maxErrorRate,
+        String report,
+        String stubLatency,
+        double stubRateLimitShare,
+        double stubServerErrorShare,
+        int stubRequestsPerMinute,
+        int stubAnalysisChars) {
+
+    static LoadTestSettings from(Map<String, String> options) {
+        return new LoadTestSettings(
+                options.get("target"),
+                Arrays.stream(options.getOrDefault("rates", "10,25,50,100,200").split(","))
+                        .map(String::trim).map(Integer::valueOf).toList(),
+                Duration.parse(options.getOrDefault("warmup", "PT10S")),
+                Duration.parse(options.getOrDefault("stage-duration", "PT30S")),
+                !"constant".equals(options.getOrDefault("arrivals", "poisson")),
+                Double.parseDouble(options.getOrDefault("batch-share", "0.1")),
+                Integer.parseInt(options.getOrDefault("batch-size", "10")),
+                Double.parseDouble(options.getOrDefault("repeat-share", "0.0")),
+                Integer.parseInt(options.getOrDefault("max-in-flight", "5000")),
+                Duration.parse(options.getOrDefault("request-timeout", "PT60S")),
+                Duration.parse(options.getOrDefault("slo-p99", "PT5S")),
+                Double.parseDouble(options.getOrDefault("max-error-rate", "0.01")),
+                options.getOrDefault("report", "target/loadtest-report.json"),
+                options.getOrDefault("stub.latency", "lognormal:PT0.4S..PT2S"),
+                Double.parseDouble(options.getOrDefault("stub.rate-limit-share", "0.0")),
+                Double.parseDouble(options.getOrDefault("stub.server-error-share", "0.0")),
+                Integer.parseInt(options.getOrDefault("stub.requests-per-minute", "0")),
+                Integer.parseInt(options.getOrDefault("stub.analysis-chars", "200")));
+    }
+}
@@ -0,0 +1,140 @@
+package mat.pia.sentiment.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalDouble;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Polls the application's actuator metrics once a second and keeps the peak usage of its pools
+ * and queues per stage: database connections, the Anthropic HTTP connection pool, request
+ * threads, the adaptive concurrency limit and the write-behind queue. Metrics the application
+ * does not publish are left out of the report.
+ */
+@Slf4j
+class SaturationSampler implements AutoCloseable {
+
+    private static final List<Probe> PROBES = List.of(
+            new Probe("db-pool", "hikaricp.connections.active", "hikaricp.connections.max",
+                    "hikaricp.connections.pending", null),
+            new Probe("anthropic-http-pool", "reactor.netty.connection.provider.active.connections",
+                    "reactor.netty.connection.provider.max.connections",
+                    "reactor.netty.connection.provider.pending.connections", "name:anthropic"),
+            new Probe("request-threads", "tomcat.threads.busy", "tomcat.threads.config.max", null, null),
+            new Probe("anthropic-concurrency", "anthropic.concurrency.in-flight", "anthropic.concurrency.limit",
+                    "anthropic.concurrency.queued", null),
+            new Probe("write-behind-queue", "sentiment.persistence.queue.size", null, null, null),
+            new Probe("jvm-threads", "jvm.threads.live", null, null, null));
+
+    private final ObjectMapper objectMapper;
+    private final String target;
+    private final HttpClient httpClient = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(2)).build();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private volatile Map<String, Peak> peaks = new ConcurrentHashMap<>();
+
+    SaturationSampler(ObjectMapper objectMapper, String target) {
+        this.objectMapper = objectMapper;
+        this.target = target;
+        scheduler.scheduleWithFixedDelay(this::sample, 0, 1, TimeUnit.SECONDS);
+    }
+
+    /** Peaks since the previous call, which starts the next stage. */
+    Map<String, LoadTestReport.ResourceReport> nextStage() {
+        Map<String, Peak> stage = peaks;
+        peaks = new ConcurrentHashMap<>();
+        Map<String, LoadTestReport.ResourceReport> resources = new LinkedHashMap<>();
+        for (Probe probe : PROBES) {
+            Peak peak = stage.get(probe.name());
+            if (peak != null) {
+                resources.put(probe.name(), peak.report());
+            }
+        }
+        return resources;
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    private void sample() {
+        Map<String, Peak> current = peaks;
+        for (Probe probe : PROBES) {
+            OptionalDouble used = read(probe.used(), probe.tag());
+            if (used.isEmpty()) {
+                continue;
+            }
+            OptionalDouble capacity = probe.capacity() != null ? read(probe.capacity(), probe.tag()) : OptionalDouble.empty();
+            OptionalDouble waiting = probe.waiting() != null ? read(probe.waiting(), probe.tag()) : OptionalDouble.empty();
+            current.computeIfAbsent(probe.name(), name -> new Peak()).record(used.getAsDouble(), capacity, waiting);
+        }
+    }
+
+    private OptionalDouble read(String metric, String tag) {
+        String uri = target + "/actuator/metrics/" + metric
+                + (tag != null ? "?tag=" + URLEncoder.encode(tag, StandardCharsets.UTF_8) : "");
+        try {
+            HttpResponse<byte[]> response = httpClient.send(
+                    HttpRequest.newBuilder(URI.create(uri)).timeout(Duration.ofSeconds(2)).build(),
+                    HttpResponse.BodyHandlers.ofByteArray());
+            if (response.statusCode() != 200) {
+                return OptionalDouble.empty();
+            }
+            for (JsonNode measurement : objectMapper.readTree(response.body()).path("measurements")) {
+                if ("VALUE".equals(measurement.path("statistic").asText())) {
+                    return OptionalDouble.of(measurement.path("value").asDouble());
+                }
+            }
+            return OptionalDouble.empty();
+        } catch (IOException e) {
+            log.debug("Could not read metric {}: {}", metric, e.getMessage());
+            return OptionalDouble.empty();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return OptionalDouble.empty();
+        }
+    }
+
+    private record Probe(String name, String used, String capacity, String waiting, String tag) {
+    }
+
+    private static final class Peak {
+        private double used;
+        private Double capacity;
+        private Double waiting;
+        private boolean saturated;
+
+        private synchronized void record(double used, OptionalDouble capacity, OptionalDouble waiting) {
+            this.used = Math.max(this.used, used);
+            // Judged per sample, since adaptive limits move between samples
+            if (capacity.isPresent()) {
+                this.capacity = this.capacity == null ? capacity.getAsDouble() : Math.max(this.capacity, capacity.getAsDouble());
+                saturated |= used >= capacity.getAsDouble();
+            }
+            if (waiting.isPresent()) {
+                this.waiting = this.waiting == null ? waiting.getAsDouble() : Math.max(this.waiting, waiting.getAsDouble());
+                saturated |= waiting.getAsDouble() > 0;
+            }
+        }
+
+        private synchronized LoadTestReport.ResourceReport report() {
+            return new LoadTestReport.ResourceReport(used, capacity, waiting, saturated);
+        }
+    }
+}
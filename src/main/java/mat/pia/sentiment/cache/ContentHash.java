@@ -0,0 +1,44 @@
+package mat.pia.sentiment.cache;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.Normalizer;
+import java.util.HexFormat;
+import java.util.regex.Pattern;
+
+/**
+ * Builds content-addressed keys for analysis results: a SHA-256 over the normalized text
+ * and every model parameter that can change the answer.
+ */
+public final class ContentHash {
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private ContentHash() {
+    }
+
+    public static String normalize(String text) {
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFKC);
+        return WHITESPACE.matcher(normalized.trim()).replaceAll(" ");
+    }
+
+    public static String of(String text, String model, String systemPrompt, int maxTokens) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            update(digest, normalize(text));
+            update(digest, model);
+            update(digest, systemPrompt);
+            update(digest, Integer.toString(maxTokens));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static void update(MessageDigest digest, String part) {
+        digest.update(part.getBytes(StandardCharsets.UTF_8));
+        // Separator so that ("ab", "c") and ("a", "bc") hash differently
+        digest.update((byte) 0);
+    }
+}
@@ -0,0 +1,103 @@
+package mat.pia.sentiment.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Turns text into a fixed-size, L2-normalized vector without a model: word unigrams, word
+ * bigrams and character trigrams are hashed into signed buckets (the hashing trick). Case,
+ * punctuation and whitespace differences disappear, so paraphrases that only differ in those
+ * end up with identical vectors.
+ */
+final class HashingVectorizer {
+
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}']+");
+    private static final Set<String> NEGATORS = Set.of(
+            "not", "no", "never", "nothing", "none", "neither", "nor", "without", "hardly", "barely",
+            "cannot", "cant", "dont", "doesnt", "didnt", "isnt", "wasnt", "arent", "werent", "wont",
+            "wouldnt", "shouldnt", "couldnt", "aint");
+
+    private static final float UNIGRAM_WEIGHT = 1.0f;
+    private static final float BIGRAM_WEIGHT = 0.7f;
+    private static final float TRIGRAM_WEIGHT = 0.4f;
+
+    private final int dimensions;
+
+    HashingVectorizer(int dimensions) {
+        this.dimensions = dimensions;
+    }
+
+    int dimensions() {
+        return dimensions;
+    }
+
+    static List<String> tokens(String text) {
+        List<String> tokens = new ArrayList<>();
+        for (String token : NON_WORD.split(ContentHash.normalize(text).toLowerCase(Locale.ROOT))) {
+            String word = token.replace("'", "");
+            if (!word.isEmpty()) {
+                tokens.add(word);
+            }
+        }
+        return tokens;
+    }
+
+    /** 1 if the text contains an odd number of negators, so "good" and "not good" never match. */
+    static int negationParity(List<String> tokens) {
+        return (int) (tokens.stream().filter(NEGATORS::contains).count() & 1);
+    }
+
+    float[] vectorize(List<String> tokens) {
+        float[] vector = new float[dimensions];
+        for (int i = 0; i < tokens.size(); i++) {
+            String token = tokens.get(i);
+            add(vector, "w:" + token, UNIGRAM_WEIGHT);
+            if (i + 1 < tokens.size()) {
+                add(vector, "b:" + token + ' ' + tokens.get(i + 1), BIGRAM_WEIGHT);
+            }
+            String padded = '<' + token + '>';
+            for (int j = 0; j + 3 <= padded.length(); j++) {
+                add(vector, "c:" + padded.substring(j, j + 3), TRIGRAM_WEIGHT);
+            }
+        }
+
+        double norm = 0;
+        for (float value : vector) {
+            norm += value * value;
+        }
+        if (norm > 0) {
+            float scale = (float) (1 / Math.sqrt(norm));
+            for (int i = 0; i < vector.length; i++) {
+                vector[i] *= scale;
+            }
+        }
+        return vector;
+    }
+
+    /** Cosine similarity for the unit-length vectors this class produces. */
+    static double dot(float[] a, float[] b) {
+        double dot = 0;
+        for (int i = 0; i < a.length; i++) {
+            dot += a[i] * b[i];
+        }
+        return dot;
+    }
+
+    private void add(float[] vector, String feature, float weight) {
+        int hash = mix(feature.hashCode());
+        vector[Math.floorMod(hash, dimensions)] += (hash & 0x8000_0000) == 0 ? weight : -weight;
+    }
+
+    /** Murmur3 finalizer; String.hashCode alone clusters short features into few buckets. */
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
@@ -0,0 +1,235 @@
+package mat.pia.sentiment.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import mat.pia.sentiment.model.SentimentResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Near-duplicate cache of analysis results. Texts are embedded with {@link HashingVectorizer}
+ * and indexed by random-hyperplane LSH: several tables of sign bits, so similar vectors share a
+ * bucket in at least one table with high probability. Candidates from the matching buckets are
+ * compared by exact cosine similarity and the best one at or above the threshold is returned.
+ * <p>
+ * A sampled fraction of lookups is audited: the nearest neighbour is also found by a full scan
+ * (ANN recall), and audited hits are sent to the model anyway and compared with the cached
+ * answer when it is stored (precision).
+ */
+@Component
+@Slf4j
+public class SemanticSentimentCache {
+
+    /** Inserts this close to an existing entry add nothing. */
+    private static final double DUPLICATE_SIMILARITY = 0.99;
+
+    private final boolean enabled;
+    private final double threshold;
+    private final double auditRate;
+    private final int tables;
+    private final int bits;
+    private final HashingVectorizer vectorizer;
+    private final float[][] hyperplanes;
+    private final Cache<Long, Entry> entries;
+    private final ConcurrentHashMap<Long, Set<Long>> buckets = new ConcurrentHashMap<>();
+    private final Cache<String, SentimentResponse> pendingAudits;
+    private final AtomicLong ids = new AtomicLong();
+
+    private final Counter hits;
+    private final Counter misses;
+    private final DistributionSummary hitSimilarity;
+    private final MeterRegistry meterRegistry;
+
+    public SemanticSentimentCache(
+            @Value("${sentiment.semantic-cache.enabled:false}") boolean enabled,
+            @Value("${sentiment.semantic-cache.similarity-threshold:0.92}") double threshold,
+            @Value("${sentiment.semantic-cache.dimensions:1024}") int dimensions,
+            @Value("${sentiment.semantic-cache.lsh.tables:8}") int tables,
+            @Value("${sentiment.semantic-cache.lsh.bits:12}") int bits,
+            @Value("${sentiment.semantic-cache.max-size:10000}") long maxSize,
+            @Value("${sentiment.semantic-cache.ttl:PT1H}") Duration ttl,
+            @Value("${sentiment.semantic-cache.audit-rate:0.01}") double auditRate,
+            MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.threshold = threshold;
+        this.auditRate = auditRate;
+        this.tables = tables;
+        this.bits = bits;
+        this.vectorizer = new HashingVectorizer(dimensions);
+        this.meterRegistry = meterRegistry;
+
+        // Fixed seed so the index layout is the same on every start
+        Random random = new Random(42);
+        this.hyperplanes = new float[tables * bits][dimensions];
+        for (float[] hyperplane : hyperplanes) {
+            for (int i = 0; i < dimensions; i++) {
+                hyperplane[i] = (float) random.nextGaussian();
+            }
+        }
+
+        this.entries = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .<Long, Entry>removalListener((id, entry, cause) -> {
+                    if (entry != null) {
+                        unindex(entry);
+                    }
+                })
+                .build();
+        this.pendingAudits = Caffeine.newBuilder()
+                .maximumSize(1000)
+                .expireAfterWrite(Duration.ofMinutes(5))
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, entries, "semanticSentimentResults");
+
+        this.hits = meterRegistry.counter("sentiment.semantic-cache.lookups", "result", "hit");
+        this.misses = meterRegistry.counter("sentiment.semantic-cache.lookups", "result", "miss");
+        this.hitSimilarity = DistributionSummary.builder("sentiment.semantic-cache.hit.similarity")
+                .description("Cosine similarity of served near-duplicate hits")
+                .register(meterRegistry);
+        log.info("Semantic result cache enabled={}, threshold={}, {} LSH tables x {} bits over {} dimensions",
+                enabled, threshold, tables, bits, dimensions);
+    }
+
+    public Optional<SentimentResponse> lookup(String text) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        Query query = query(text);
+        Match match = nearest(query);
+        boolean audit = ThreadLocalRandom.current().nextDouble() < auditRate;
+        if (audit) {
+            auditRecall(query, match);
+        }
+        if (match == null || match.similarity() < threshold) {
+            misses.increment();
+            return Optional.empty();
+        }
+        if (audit) {
+            // Let this one reach the model; put() compares the answers
+            pendingAudits.put(query.key(), match.entry().response());
+            misses.increment();
+            return Optional.empty();
+        }
+        hits.increment();
+        hitSimilarity.record(match.similarity());
+        log.debug("Semantic cache hit with similarity {}", String.format("%.3f", match.similarity()));
+        return Optional.of(match.entry().response());
+    }
+
+    public void put(String text, SentimentResponse response) {
+        if (!enabled) {
+            return;
+        }
+        Query query = query(text);
+        SentimentResponse audited = pendingAudits.asMap().remove(query.key());
+        if (audited != null) {
+            String outcome = audited.getSentiment() == response.getSentiment() ? "agree" : "disagree";
+            meterRegistry.counter("sentiment.semantic-cache.audit.precision", "outcome", outcome).increment();
+        }
+        Match existing = nearest(query);
+        if (existing != null && existing.similarity() >= DUPLICATE_SIMILARITY) {
+            return;
+        }
+
+        Entry entry = new Entry(ids.incrementAndGet(), query.vector(), query.bucketKeys(), response);
+        entries.put(entry.id(), entry);
+        for (long bucketKey : entry.bucketKeys()) {
+            // compute() so a concurrent unindex cannot drop the bucket between creating and adding
+            buckets.compute(bucketKey, (key, bucket) -> {
+                Set<Long> members = bucket != null ? bucket : ConcurrentHashMap.<Long>newKeySet();
+                members.add(entry.id());
+                return members;
+            });
+        }
+    }
+
+    private Match nearest(Query query) {
+        Match best = null;
+        for (long bucketKey : query.bucketKeys()) {
+            Set<Long> bucket = buckets.get(bucketKey);
+            if (bucket == null) {
+                continue;
+            }
+            for (Long id : bucket) {
+                // asMap().get does not count towards the cache's hit/miss stats
+                Entry entry = entries.asMap().get(id);
+                if (entry != null) {
+                    best = closer(best, entry, query);
+                }
+            }
+        }
+        return best;
+    }
+
+    /** Full scan to check whether LSH missed a neighbour above the threshold. */
+    private void auditRecall(Query query, Match approximate) {
+        Match exact = null;
+        for (Entry entry : entries.asMap().values()) {
+            // The parity bits sit in every bucket key; compare them from the first table
+            if ((entry.bucketKeys()[0] >>> bits & 1) == (query.bucketKeys()[0] >>> bits & 1)) {
+                exact = closer(exact, entry, query);
+            }
+        }
+        if (exact != null && exact.similarity() >= threshold) {
+            boolean found = approximate != null && approximate.similarity() >= threshold;
+            meterRegistry.counter("sentiment.semantic-cache.audit.recall", "outcome", found ? "found" : "missed")
+                    .increment();
+        }
+    }
+
+    private static Match closer(Match best, Entry entry, Query query) {
+        double similarity = HashingVectorizer.dot(query.vector(), entry.vector());
+        return best == null || similarity > best.similarity() ? new Match(entry, similarity) : best;
+    }
+
+    private Query query(String text) {
+        List<String> tokens = HashingVectorizer.tokens(text);
+        float[] vector = vectorizer.vectorize(tokens);
+        int parity = HashingVectorizer.negationParity(tokens);
+        long[] bucketKeys = new long[tables];
+        for (int table = 0; table < tables; table++) {
+            long signature = 0;
+            for (int bit = 0; bit < bits; bit++) {
+                if (HashingVectorizer.dot(hyperplanes[table * bits + bit], vector) >= 0) {
+                    signature |= 1L << bit;
+                }
+            }
+            bucketKeys[table] = (long) table << 32 | (long) parity << bits | signature;
+        }
+        return new Query(String.join(" ", tokens), vector, bucketKeys);
+    }
+
+    private void unindex(Entry entry) {
+        for (long bucketKey : entry.bucketKeys()) {
+            buckets.computeIfPresent(bucketKey, (key, bucket) -> {
+                bucket.remove(entry.id());
+                return bucket.isEmpty() ? null : bucket;
+            });
+        }
+    }
+
+    private record Query(String key, float[] vector, long[] bucketKeys) {
+    }
+
+    private record Entry(long id, float[] vector, long[] bucketKeys, SentimentResponse response) {
+    }
+
+    private record Match(Entry entry, double similarity) {
+    }
+}
@@ -0,0 +1,53 @@
+package mat.pia.sentiment.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import mat.pia.sentiment.model.SentimentResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Bounded in-memory cache of analysis results keyed by {@link ContentHash}.
+ * Hit, miss, eviction and size metrics are published under the "sentimentResults" cache name.
+ */
+@Component
+@Slf4j
+public class SentimentResultCache {
+
+    private final boolean enabled;
+    private final Cache<String, SentimentResponse> cache;
+
+    public SentimentResultCache(
+            @Value("${sentiment.cache.enabled:true}") boolean enabled,
+            @Value("${sentiment.cache.max-size:10000}") long maxSize,
+            @Value("${sentiment.cache.ttl:PT1H}") Duration ttl,
+            MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "sentimentResults");
+        log.info("Sentiment result cache enabled={}, maxSize={}, ttl={}", enabled, maxSize, ttl);
+    }
+
+    public Optional<SentimentResponse> get(String key) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(cache.getIfPresent(key));
+    }
+
+    public void put(String key, SentimentResponse response) {
+        if (enabled) {
+            cache.put(key, response);
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package mat.pia.sentiment.client;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import mat.pia.sentiment.exception.ServiceBusyException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * AIMD concurrency limit around outbound Anthropic calls. Every successful call grows the
+ * limit by 1/limit (about +1 per round of calls); a 429, 5xx overload or timeout multiplies
+ * it by the backoff ratio. A permit is held until the response body has been read, and a
+ * cancelled call frees its permit without moving the limit. Callers over the limit wait in a
+ * bounded FIFO queue without holding a thread; once that is full they are shed with
+ * {@link ServiceBusyException}.
+ */
+@Component
+@Slf4j
+public class AdaptiveConcurrencyLimiter {
+
+    private final boolean enabled;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final int maxQueued;
+    private final Deque<MonoSink<Permit>> waiters = new ArrayDeque<>();
+
+    private double limit;
+    private int inFlight;
+
+    public AdaptiveConcurrencyLimiter(
+            @Value("${anthropic.concurrency.enabled:true}") boolean enabled,
+            @Value("${anthropic.concurrency.initial-limit:8}") int initialLimit,
+            @Value("${anthropic.concurrency.min-limit:1}") int minLimit,
+            @Value("${anthropic.concurrency.max-limit:64}") int maxLimit,
+            @Value("${anthropic.concurrency.backoff-ratio:0.7}") double backoffRatio,
+            @Value("${anthropic.concurrency.max-queued:1000}") int maxQueued,
+            MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.backoffRatio = backoffRatio;
+        this.maxQueued = maxQueued;
+        Gauge.builder("anthropic.concurrency.limit", this, AdaptiveConcurrencyLimiter::currentLimit)
+                .register(meterRegistry);
+        Gauge.builder("anthropic.concurrency.in-flight", this, AdaptiveConcurrencyLimiter::currentInFlight)
+                .register(meterRegistry);
+        Gauge.builder("anthropic.concurrency.queued", this, AdaptiveConcurrencyLimiter::currentQueued)
+                .register(meterRegistry);
+    }
+
+    public ExchangeFilterFunction filter() {
+        return (request, next) -> {
+            if (!enabled) {
+                return next.exchange(request);
+            }
+            return acquire().flatMap(permit -> next.exchange(request)
+                    .map(response -> {
+                        Outcome outcome = isOverload(response.statusCode()) ? Outcome.OVERLOADED : Outcome.SUCCEEDED;
+                        // The call is only over once the body has arrived, which can take longer than the headers
+                        return response.mutate()
+                                .body(body -> body
+                                        .doOnComplete(() -> permit.release(outcome))
+                                        .doOnError(e -> permit.release(isTimeout(e) ? Outcome.OVERLOADED : outcome))
+                                        .doOnCancel(() -> permit.release(Outcome.CANCELLED)))
+                                .build();
+                    })
+                    .doOnError(e -> permit.release(isTimeout(e) ? Outcome.OVERLOADED : Outcome.SUCCEEDED))
+                    .doOnCancel(() -> permit.release(Outcome.CANCELLED)));
+        };
+    }
+
+    private Mono<Permit> acquire() {
+        return Mono.<Permit>create(sink -> {
+            synchronized (this) {
+                if (inFlight < (int) limit) {
+                    inFlight++;
+                    sink.success(new Permit());
+                    return;
+                }
+                if (waiters.size() >= maxQueued) {
+                    sink.error(new ServiceBusyException("Too many pending Anthropic calls, try again later"));
+                    return;
+                }
+                waiters.addLast(sink);
+            }
+            sink.onCancel(() -> {
+                synchronized (this) {
+                    waiters.remove(sink);
+                }
+            });
+        })
+        // A permit handed to a caller that cancelled in the meantime must not leak
+        .doOnDiscard(Permit.class, permit -> permit.release(Outcome.CANCELLED));
+    }
+
+    private void onRelease(Outcome outcome) {
+        MonoSink<Permit> next = null;
+        synchronized (this) {
+            inFlight--;
+            if (outcome == Outcome.OVERLOADED) {
+                limit = Math.max(minLimit, limit * backoffRatio);
+                log.warn("Anthropic overload signal, concurrency limit reduced to {}", (int) limit);
+            } else if (outcome == Outcome.SUCCEEDED) {
+                limit = Math.min(maxLimit, limit + 1.0 / limit);
+            }
+            if (inFlight < (int) limit && !waiters.isEmpty()) {
+                inFlight++;
+                next = waiters.pollFirst();
+            }
+        }
+        if (next != null) {
+            next.success(new Permit());
+        }
+    }
+
+    private boolean isOverload(HttpStatusCode status) {
+        return status.value() == 429 || status.value() == 503 || status.value() == 529;
+    }
+
+    static boolean isTimeout(Throwable e) {
+        Throwable cause = e.getCause() != null ? e.getCause() : e;
+        return e instanceof TimeoutException
+                || cause instanceof TimeoutException
+                || cause instanceof io.netty.handler.timeout.TimeoutException;
+    }
+
+    private synchronized double currentLimit() {
+        return limit;
+    }
+
+    private synchronized double currentInFlight() {
+        return inFlight;
+    }
+
+    private synchronized double currentQueued() {
+        return waiters.size();
+    }
+
+    /** How a call ended; a cancelled call says nothing about the provider's capacity. */
+    private enum Outcome {
+        SUCCEEDED,
+        OVERLOADED,
+        CANCELLED
+    }
+
+    private final class Permit {
+
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        void release(Outcome outcome) {
+            if (released.compareAndSet(false, true)) {
+                onRelease(outcome);
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package mat.pia.sentiment.client;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.util.Map;
+
+/**
+ * Client for the Anthropic Message Batches API. The endpoint is configurable through
+ * anthropic.batches.url so the engine can run against a local stub.
+ */
+@Component
+@Slf4j
+public class AnthropicBatchClient {
+
+    private final WebClient webClient;
+    private final ObjectMapper objectMapper;
+    private final AnthropicMessageCodec messageCodec;
+    private final String batchesUrl;
+
+    public AnthropicBatchClient(
+            @Qualifier("anthropicWebClient") WebClient webClient,
+            ObjectMapper objectMapper,
+            AnthropicMessageCodec messageCodec,
+            @Value("${anthropic.batches.url:${anthropic.api.url:https://api.anthropic.com/v1/messages}/batches}") String batchesUrl) {
+        this.webClient = webClient;
+        this.objectMapper = objectMapper;
+        this.messageCodec = messageCodec;
+        this.batchesUrl = batchesUrl;
+    }
+
+    /**
+     * Submits one provider batch and returns its id.
+     *
+     * @param texts texts keyed by the custom_id the results will be reported under
+     */
+    public Mono<String> createBatch(Map<String, String> texts) {
+        ObjectNode body = objectMapper.createObjectNode();
+        ArrayNode requests = body.putArray("requests");
+        texts.forEach((customId, text) -> {
+            ObjectNode entry = requests.addObject();
+            entry.put("custom_id", customId);
+            entry.set("params", messageCodec.buildRequestBody(text));
+        });
+
+        return webClient.post()
+                .uri(URI.create(batchesUrl))
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(body)
+                .retrieve()
+                .bodyToMono(JsonNode.class)
+                .map(response -> response.path("id").asText());
+    }
+
+    public Mono<JsonNode> getBatch(String batchId) {
+        return webClient.get()
+                .uri(URI.create(batchesUrl + "/" + batchId))
+                .retrieve()
+                .bodyToMono(JsonNode.class);
+    }
+
+    /** Streams the JSONL results file line by line without buffering the whole file. */
+    public Flux<String> streamResults(String resultsUrl) {
+        return webClient.get()
+                .uri(URI.create(resultsUrl))
+                .accept(MediaType.ALL)
+                .retrieve()
+                .bodyToFlux(String.class)
+                .filter(line -> !line.isBlank());
+    }
+}
@@ -0,0 +1,153 @@
+package mat.pia.sentiment.client;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Count-based circuit breaker for the Anthropic API. It opens when the failure rate over the
+ * last window-size calls reaches the threshold, rejects calls for open-duration, then lets a
+ * few probe calls through and closes again once they all succeed.
+ */
+@Component
+@Slf4j
+public class AnthropicCircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final boolean enabled;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final Duration openDuration;
+    private final int halfOpenCalls;
+
+    private final boolean[] window;
+    private int windowIndex;
+    private int windowCount;
+    private int windowFailures;
+
+    private State state = State.CLOSED;
+    private long openUntilNanos;
+    private int probesStarted;
+    private int probesSucceeded;
+
+    public AnthropicCircuitBreaker(
+            @Value("${anthropic.circuit-breaker.enabled:true}") boolean enabled,
+            @Value("${anthropic.circuit-breaker.window-size:20}") int windowSize,
+            @Value("${anthropic.circuit-breaker.minimum-calls:10}") int minimumCalls,
+            @Value("${anthropic.circuit-breaker.failure-rate-threshold:0.5}") double failureRateThreshold,
+            @Value("${anthropic.circuit-breaker.open-duration:PT30S}") Duration openDuration,
+            @Value("${anthropic.circuit-breaker.half-open-calls:3}") int halfOpenCalls,
+            MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.window = new boolean[windowSize];
+        this.minimumCalls = Math.min(minimumCalls, windowSize);
+        this.failureRateThreshold = failureRateThreshold;
+        this.openDuration = openDuration;
+        this.halfOpenCalls = halfOpenCalls;
+        Gauge.builder("anthropic.circuit.state", this, breaker -> breaker.getState().ordinal())
+                .description("0 = closed, 1 = open, 2 = half-open")
+                .register(meterRegistry);
+    }
+
+    /** Returns false when the call must be rejected without reaching the provider. */
+    public synchronized boolean tryAcquire() {
+        if (!enabled) {
+            return true;
+        }
+        if (state == State.OPEN) {
+            if (System.nanoTime() - openUntilNanos < 0) {
+                return false;
+            }
+            state = State.HALF_OPEN;
+            probesStarted = 0;
+            probesSucceeded = 0;
+            log.info("Anthropic circuit half-open, letting {} probe calls through", halfOpenCalls);
+        }
+        if (state == State.HALF_OPEN) {
+            if (probesStarted >= halfOpenCalls) {
+                return false;
+            }
+            probesStarted++;
+        }
+        return true;
+    }
+
+    public synchronized void onSuccess() {
+        if (!enabled) {
+            return;
+        }
+        if (state == State.HALF_OPEN) {
+            if (++probesSucceeded >= halfOpenCalls) {
+                close();
+            }
+            return;
+        }
+        record(false);
+    }
+
+    public synchronized void onFailure() {
+        if (!enabled) {
+            return;
+        }
+        if (state == State.HALF_OPEN) {
+            open();
+            return;
+        }
+        record(true);
+        if (state == State.CLOSED && windowCount >= minimumCalls
+                && (double) windowFailures / windowCount >= failureRateThreshold) {
+            open();
+        }
+    }
+
+    /** Gives back a probe slot for a call that ended without an outcome, e.g. a cancelled hedge. */
+    public synchronized void onIgnored() {
+        if (enabled && state == State.HALF_OPEN && probesStarted > probesSucceeded) {
+            probesStarted--;
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public synchronized Duration remainingOpen() {
+        return state == State.OPEN
+                ? Duration.ofNanos(Math.max(0, openUntilNanos - System.nanoTime()))
+                : Duration.ZERO;
+    }
+
+    private void record(boolean failure) {
+        if (windowCount == window.length) {
+            if (window[windowIndex]) {
+                windowFailures--;
+            }
+        } else {
+            windowCount++;
+        }
+        window[windowIndex] = failure;
+        if (failure) {
+            windowFailures++;
+        }
+        windowIndex = (windowIndex + 1) % window.length;
+    }
+
+    private void open() {
+        log.warn("Anthropic circuit opened for {}", openDuration);
+        state = State.OPEN;
+        openUntilNanos = System.nanoTime() + openDuration.toNanos();
+    }
+
+    private void close() {
+        log.info("Anthropic circuit closed");
+        state = State.CLOSED;
+        windowIndex = 0;
+        windowCount = 0;
+        windowFailures = 0;
+    }
+}
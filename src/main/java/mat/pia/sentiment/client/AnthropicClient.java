@@ -0,0 +1,82 @@
+package mat.pia.sentiment.client;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.micrometer.common.KeyValues;
+import mat.pia.sentiment.diagnostics.PipelineObservations;
+import mat.pia.sentiment.model.SentimentResponse;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Outbound calls to the Anthropic Messages API.
+ */
+@Component
+public class AnthropicClient {
+
+    private static final ParameterizedTypeReference<ServerSentEvent<String>> SERVER_SENT_EVENTS =
+            new ParameterizedTypeReference<>() {};
+
+    private final WebClient webClient;
+    private final AnthropicMessageCodec messageCodec;
+    private final ResilientCallExecutor callExecutor;
+    private final PipelineObservations observations;
+
+    public AnthropicClient(
+            @Qualifier("anthropicWebClient") WebClient webClient,
+            AnthropicMessageCodec messageCodec,
+            ResilientCallExecutor callExecutor,
+            PipelineObservations observations) {
+        this.webClient = webClient;
+        this.messageCodec = messageCodec;
+        this.callExecutor = callExecutor;
+        this.observations = observations;
+    }
+
+    /**
+     * Sends the request with retries, hedging and the circuit breaker. Observed as
+     * anthropic.call, with one http.client.requests child per attempt.
+     */
+    public Mono<String> createMessage(ObjectNode requestBody) {
+        long estimatedTokens = messageCodec.estimateTokens(requestBody);
+        // Serialized once here so the build time is measured and retries reuse the bytes
+        byte[] body = messageCodec.serialize(requestBody);
+        return observations.observe("anthropic.call", KeyValues.of("kind", callKind(requestBody)),
+                callExecutor.execute(() -> webClient.post()
+                        .attribute(AnthropicRateLimiter.ESTIMATED_TOKENS_ATTRIBUTE, estimatedTokens)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .bodyValue(body)
+                        .retrieve()
+                        .bodyToMono(String.class)));
+    }
+
+    /**
+     * Streams the text deltas of a {@code stream: true} request as they arrive. Not retried:
+     * the rate and concurrency limits still apply, but part of a reply may already have been consumed.
+     */
+    public Flux<String> streamMessage(ObjectNode requestBody) {
+        byte[] body = messageCodec.serialize(requestBody);
+        return observations.observe("anthropic.call", KeyValues.of("kind", "stream"), webClient.post()
+                .attribute(AnthropicRateLimiter.ESTIMATED_TOKENS_ATTRIBUTE, messageCodec.estimateTokens(requestBody))
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .bodyValue(body)
+                .retrieve()
+                .bodyToFlux(SERVER_SENT_EVENTS)
+                .concatMap(event -> Mono.justOrEmpty(messageCodec.textDelta(event.event(), event.data()))));
+    }
+
+    public Mono<SentimentResponse> analyze(String text) {
+        return createMessage(messageCodec.buildRequestBody(text))
+                .map(responseJson -> messageCodec.decode(text, responseJson));
+    }
+
+    private static String callKind(ObjectNode requestBody) {
+        return AnthropicMessageCodec.PACKED_SYSTEM_PROMPT.equals(requestBody.path("system").asText()) ? "packed" : "single";
+    }
+}
@@ -0,0 +1,63 @@
+package mat.pia.sentiment.client;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+
+import java.time.Duration;
+
+/**
+ * Opens pooled connections to the Anthropic API before the application reports ready, so the
+ * first real requests after a deploy or scale-up don't pay for DNS, TCP and TLS handshakes.
+ * The probes are unauthenticated HEAD requests; their status code is irrelevant.
+ */
+@Component
+@ConditionalOnProperty(value = "anthropic.http.warm-up.enabled", havingValue = "true", matchIfMissing = true)
+@Slf4j
+public class AnthropicConnectionWarmer implements ApplicationRunner {
+
+    private final HttpClient httpClient;
+    private final String apiUrl;
+    private final int connections;
+    private final Duration timeout;
+
+    public AnthropicConnectionWarmer(
+            HttpClient anthropicHttpClient,
+            @Value("${anthropic.api.url:https://api.anthropic.com/v1/messages}") String apiUrl,
+            @Value("${anthropic.http.warm-up.connections:4}") int connections,
+            @Value("${anthropic.http.warm-up.timeout:PT10S}") Duration timeout) {
+        this.httpClient = anthropicHttpClient;
+        this.apiUrl = apiUrl;
+        this.connections = connections;
+        this.timeout = timeout;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        long start = System.nanoTime();
+        try {
+            Long opened = Flux.range(0, connections)
+                    .flatMap(i -> httpClient.head()
+                            .uri(apiUrl)
+                            // Draining the (empty) body lets the connection go back to the pool
+                            .responseSingle((response, body) -> body.then(Mono.just(response.status().code())))
+                            .onErrorResume(e -> {
+                                log.debug("Anthropic warm-up probe failed: {}", e.getMessage());
+                                return Mono.empty();
+                            }), connections)
+                    .count()
+                    .block(timeout);
+            log.info("Warmed up {} of {} Anthropic connections in {} ms",
+                    opened, connections, Duration.ofNanos(System.nanoTime() - start).toMillis());
+        } catch (RuntimeException e) {
+            // Never block startup on the provider being reachable
+            log.warn("Anthropic connection warm-up did not finish: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,309 @@
+package mat.pia.sentiment.client;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import mat.pia.sentiment.cache.ContentHash;
+import mat.pia.sentiment.exception.ApiException;
+import mat.pia.sentiment.exception.MalformedResponseException;
+import mat.pia.sentiment.model.SentimentResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Builds Messages API request bodies for sentiment analysis and turns Claude's replies back
+ * into {@link SentimentResponse}s. Shared by the synchronous and the Message Batches paths.
+ */
+@Component
+@Slf4j
+public class AnthropicMessageCodec {
+
+    public static final String SYSTEM_PROMPT =
+            "You are a sentiment and emotion analysis expert. Analyze the text and provide:\n" +
+            "1. Overall sentiment (POSITIVE, NEGATIVE, or NEUTRAL)\n" +
+            "2. Primary emotion (choose one: JOY, SADNESS, ANGER, FEAR, SURPRISE, DISGUST, TRUST, ANTICIPATION, or NONE)\n" +
+            "3. Emotion scores - rate each emotion (JOY, SADNESS, ANGER, FEAR, SURPRISE, DISGUST, TRUST, ANTICIPATION) from 0-1\n" +
+            "4. Confidence score for overall sentiment (0-1)\n" +
+            "5. Brief analysis explaining the emotional tone\n\n" +
+            "Format response as JSON with fields: sentiment, primaryEmotion, emotionScores, confidence, analysis.";
+
+    public static final String PACKED_SYSTEM_PROMPT =
+            "You are a sentiment and emotion analysis expert. You will receive several independent texts, " +
+            "each on its own line and prefixed with its index in square brackets, e.g. [0]. For every text provide:\n" +
+            "1. Overall sentiment (POSITIVE, NEGATIVE, or NEUTRAL)\n" +
+            "2. Primary emotion (choose one: JOY, SADNESS, ANGER, FEAR, SURPRISE, DISGUST, TRUST, ANTICIPATION, or NONE)\n" +
+            "3. Emotion scores - rate each emotion (JOY, SADNESS, ANGER, FEAR, SURPRISE, DISGUST, TRUST, ANTICIPATION) from 0-1\n" +
+            "4. Confidence score for overall sentiment (0-1)\n" +
+            "5. One short sentence explaining the emotional tone\n\n" +
+            "Respond with a JSON array only, one object per text, with fields: index, sentiment, primaryEmotion, " +
+            "emotionScores, confidence, analysis.";
+
+    private static final String PACKED_INSTRUCTION = "Analyze each of the following texts:\n";
+
+    private final ObjectMapper objectMapper;
+    private final AnthropicReplyDecoder replyDecoder;
+    private final MeterRegistry meterRegistry;
+    private final Timer buildTimer;
+    private final Counter inputTokens;
+    private final Counter outputTokens;
+
+    @Getter
+    @Value("${anthropic.model:claude-3-haiku-20240307}")
+    private String model;
+
+    @Getter
+    @Value("${anthropic.max-tokens:1000}")
+    private int maxTokens;
+
+    public AnthropicMessageCodec(ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.objectMapper = objectMapper;
+        this.replyDecoder = new AnthropicReplyDecoder(objectMapper.getFactory());
+        this.meterRegistry = meterRegistry;
+        this.buildTimer = Timer.builder("anthropic.request.build")
+                .description("Time to serialize a Messages API request body")
+                .register(meterRegistry);
+        this.inputTokens = Counter.builder("anthropic.tokens").tag("type", "input")
+                .description("Tokens billed by the provider, from the usage field of its replies")
+                .register(meterRegistry);
+        this.outputTokens = Counter.builder("anthropic.tokens").tag("type", "output")
+                .description("Tokens billed by the provider, from the usage field of its replies")
+                .register(meterRegistry);
+    }
+
+    public ObjectNode buildRequestBody(String text) {
+        ObjectNode requestBody = objectMapper.createObjectNode();
+        requestBody.put("model", model);
+        requestBody.put("max_tokens", maxTokens);
+        requestBody.put("system", SYSTEM_PROMPT);
+
+        ObjectNode userNode = objectMapper.createObjectNode();
+        userNode.put("role", "user");
+        userNode.put("content", text);
+
+        // Add only the user message to the messages array
+        requestBody.set("messages", objectMapper.createArrayNode().add(userNode));
+        return requestBody;
+    }
+
+    /** Same request as {@link #buildRequestBody} but answered as a server-sent event stream. */
+    public ObjectNode buildStreamingRequestBody(String text) {
+        ObjectNode requestBody = buildRequestBody(text);
+        requestBody.put("stream", true);
+        return requestBody;
+    }
+
+    public byte[] serialize(ObjectNode requestBody) {
+        return buildTimer.record(() -> {
+            try {
+                return objectMapper.writeValueAsBytes(requestBody);
+            } catch (JsonProcessingException e) {
+                throw new ApiException("Failed to serialize request for Anthropic Claude", e);
+            }
+        });
+    }
+
+    /**
+     * Text carried by one event of a streamed reply, or empty for events without text
+     * (message_start, ping, content_block_stop, ...).
+     *
+     * @throws ApiException if the provider reports an error mid-stream
+     */
+    public Optional<String> textDelta(String eventType, String data) {
+        boolean usage = "message_start".equals(eventType) || "message_delta".equals(eventType);
+        if (!usage && !"content_block_delta".equals(eventType) && !"error".equals(eventType)) {
+            return Optional.empty();
+        }
+        try {
+            JsonNode event = objectMapper.readTree(data);
+            if (usage) {
+                // Input tokens arrive with message_start, the cumulative output count with message_delta
+                if ("message_start".equals(eventType)) {
+                    recordInputTokens(event.path("message").path("usage"));
+                } else {
+                    recordOutputTokens(event.path("usage"));
+                }
+                return Optional.empty();
+            }
+            if ("error".equals(eventType)) {
+                throw new ApiException("Anthropic stream failed: " + event.path("error").path("message").asText("unknown error"));
+            }
+            JsonNode delta = event.path("delta");
+            return "text_delta".equals(delta.path("type").asText())
+                    ? Optional.of(delta.path("text").asText())
+                    : Optional.empty();
+        } catch (JsonProcessingException e) {
+            throw new ApiException("Failed to parse streamed event from Anthropic Claude", e);
+        }
+    }
+
+    public StreamingSentimentParser newStreamingParser() {
+        return new StreamingSentimentParser(objectMapper.getFactory());
+    }
+
+    public ObjectNode buildPackedRequestBody(List<String> texts) {
+        StringBuilder content = new StringBuilder(PACKED_INSTRUCTION);
+        for (int i = 0; i < texts.size(); i++) {
+            // One entry per line, so line breaks inside a text must not start a new entry
+            content.append('[').append(i).append("] ").append(ContentHash.normalize(texts.get(i))).append('\n');
+        }
+
+        ObjectNode requestBody = objectMapper.createObjectNode();
+        requestBody.put("model", model);
+        requestBody.put("max_tokens", maxTokens);
+        requestBody.put("system", PACKED_SYSTEM_PROMPT);
+
+        ObjectNode userNode = objectMapper.createObjectNode();
+        userNode.put("role", "user");
+        userNode.put("content", content.toString());
+
+        requestBody.set("messages", objectMapper.createArrayNode().add(userNode));
+        return requestBody;
+    }
+
+    /**
+     * Decodes a packed reply into one response per text, in the order of {@code texts}.
+     *
+     * @throws MalformedResponseException if the reply is not an array covering every index
+     */
+    public List<SentimentResponse> decodePacked(List<String> texts, String responseJson) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "ok";
+        try {
+            return decodePackedEntries(texts, responseJson);
+        } catch (MalformedResponseException e) {
+            outcome = "malformed";
+            throw e;
+        } finally {
+            sample.stop(parseTimer("packed", outcome));
+        }
+    }
+
+    private List<SentimentResponse> decodePackedEntries(List<String> texts, String responseJson) {
+        AnthropicReplyDecoder.Reply<List<AnthropicReplyDecoder.Result>> reply;
+        try {
+            reply = replyDecoder.readMessage(responseJson, replyDecoder::readPackedResults);
+        } catch (IOException e) {
+            throw new MalformedResponseException("Packed response is not valid JSON", e);
+        }
+        recordUsage(reply);
+
+        AnthropicReplyDecoder.Result[] byIndex = new AnthropicReplyDecoder.Result[texts.size()];
+        for (AnthropicReplyDecoder.Result entry : reply.content()) {
+            int index = entry.index();
+            if (index >= 0 && index < byIndex.length) {
+                byIndex[index] = entry;
+            }
+        }
+
+        List<SentimentResponse> responses = new ArrayList<>(texts.size());
+        for (int i = 0; i < byIndex.length; i++) {
+            if (byIndex[i] == null) {
+                throw new MalformedResponseException("Packed response is missing index " + i);
+            }
+            responses.add(byIndex[i].toResponse(texts.get(i)));
+        }
+        return responses;
+    }
+
+    /** Rough input plus maximum output token count of a request, for client-side rate limiting. */
+    public long estimateTokens(ObjectNode requestBody) {
+        long chars = requestBody.path("system").asText().length();
+        for (JsonNode message : requestBody.path("messages")) {
+            chars += message.path("content").asText().length();
+        }
+        return chars / 4 + requestBody.path("max_tokens").asLong();
+    }
+
+    public String contentKey(String text) {
+        return contentKey(text, SYSTEM_PROMPT, maxTokens);
+    }
+
+    /** Key of a text answered with another system prompt or output budget, such as a packed prompt. */
+    public String contentKey(String text, String systemPrompt, int maxTokens) {
+        return ContentHash.of(text, model, systemPrompt, maxTokens);
+    }
+
+    /**
+     * Decodes a complete Messages API reply in one streaming pass over the envelope and the JSON
+     * Claude generated. Timed as anthropic.response.parse; replies without a JSON object are
+     * tagged fallback.
+     */
+    public SentimentResponse decode(String text, String responseJson) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "malformed";
+        try {
+            AnthropicReplyDecoder.Reply<AnthropicReplyDecoder.Result> reply =
+                    replyDecoder.readMessage(responseJson, replyDecoder::readResult);
+            recordUsage(reply);
+            outcome = reply.content().isFallback() ? "fallback" : "ok";
+            return reply.content().toResponse(text);
+        } catch (IOException e) {
+            throw new ApiException("Failed to parse response from Anthropic Claude", e);
+        } finally {
+            sample.stop(parseTimer("single", outcome));
+        }
+    }
+
+    /** Decodes a reply that has already been read as a tree, e.g. one Message Batches result. */
+    public SentimentResponse decodeMessage(String text, JsonNode message) {
+        recordUsage(message.path("usage"));
+        return decodeContent(text, message.path("content").path(0).path("text").asText());
+    }
+
+    /**
+     * Decodes the text Claude generated, e.g. the concatenated deltas of a streamed reply.
+     * Timed as anthropic.response.parse; replies without a JSON object are tagged fallback.
+     */
+    public SentimentResponse decodeContent(String text, String content) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "malformed";
+        try {
+            AnthropicReplyDecoder.Result result = replyDecoder.readResult(content);
+            outcome = result.isFallback() ? "fallback" : "ok";
+            return result.toResponse(text);
+        } catch (IOException e) {
+            throw new ApiException("Failed to parse response from Anthropic Claude", e);
+        } finally {
+            sample.stop(parseTimer("single", outcome));
+        }
+    }
+
+    private Timer parseTimer(String kind, String outcome) {
+        return Timer.builder("anthropic.response.parse")
+                .description("Time to turn Claude's reply into analysis results")
+                .tag("kind", kind)
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    private void recordUsage(JsonNode usage) {
+        recordInputTokens(usage);
+        recordOutputTokens(usage);
+    }
+
+    private void recordInputTokens(JsonNode usage) {
+        inputTokens.increment(usage.path("input_tokens").asLong()
+                + usage.path("cache_creation_input_tokens").asLong()
+                + usage.path("cache_read_input_tokens").asLong());
+    }
+
+    private void recordOutputTokens(JsonNode usage) {
+        outputTokens.increment(usage.path("output_tokens").asLong());
+    }
+
+    private void recordUsage(AnthropicReplyDecoder.Reply<?> reply) {
+        inputTokens.increment(reply.inputTokens());
+        outputTokens.increment(reply.outputTokens());
+    }
+}
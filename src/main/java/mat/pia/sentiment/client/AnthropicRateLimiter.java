@@ -0,0 +1,170 @@
+package mat.pia.sentiment.client;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Optional;
+
+/**
+ * Client-side token buckets for requests per minute and tokens per minute. The buckets start
+ * from configured limits and are resized from the provider's anthropic-ratelimit-* response
+ * headers, so the client slows down before the provider starts answering 429.
+ */
+@Component
+@Slf4j
+public class AnthropicRateLimiter {
+
+    /** Request attribute carrying the estimated input + output tokens of a call. */
+    public static final String ESTIMATED_TOKENS_ATTRIBUTE = AnthropicRateLimiter.class.getName() + ".estimatedTokens";
+
+    private final boolean enabled;
+    private final Bucket requests;
+    private final Bucket tokens;
+
+    public AnthropicRateLimiter(
+            @Value("${anthropic.rate-limit.enabled:true}") boolean enabled,
+            @Value("${anthropic.rate-limit.requests-per-minute:50}") double requestsPerMinute,
+            @Value("${anthropic.rate-limit.tokens-per-minute:50000}") double tokensPerMinute,
+            MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.requests = new Bucket(requestsPerMinute);
+        this.tokens = new Bucket(tokensPerMinute);
+        Gauge.builder("anthropic.ratelimit.available", requests, Bucket::available)
+                .tag("bucket", "requests")
+                .register(meterRegistry);
+        Gauge.builder("anthropic.ratelimit.available", tokens, Bucket::available)
+                .tag("bucket", "tokens")
+                .register(meterRegistry);
+    }
+
+    public ExchangeFilterFunction filter() {
+        return (request, next) -> {
+            if (!enabled) {
+                return next.exchange(request);
+            }
+            long estimatedTokens = request.attribute(ESTIMATED_TOKENS_ATTRIBUTE)
+                    .map(value -> ((Number) value).longValue())
+                    .orElse(0L);
+            Duration wait = max(requests.reserve(1), tokens.reserve(estimatedTokens));
+            Mono<Void> delay = wait.isZero() ? Mono.empty() : Mono.delay(wait).then();
+            if (!wait.isZero()) {
+                log.debug("Rate limiter delaying Anthropic call by {} ms", wait.toMillis());
+            }
+            return delay.then(Mono.defer(() -> next.exchange(request)))
+                    .doOnNext(response -> observe(response.statusCode(), response.headers().asHttpHeaders()));
+        };
+    }
+
+    void observe(HttpStatusCode status, HttpHeaders headers) {
+        requests.observe(
+                headers.getFirst("anthropic-ratelimit-requests-limit"),
+                headers.getFirst("anthropic-ratelimit-requests-remaining"));
+        tokens.observe(
+                headers.getFirst("anthropic-ratelimit-tokens-limit"),
+                headers.getFirst("anthropic-ratelimit-tokens-remaining"));
+
+        if (status.value() == 429) {
+            Instant resumeAt = Instant.now().plus(retryAfter(headers).orElse(Duration.ofSeconds(1)));
+            log.warn("Anthropic rate limit hit, pausing outbound calls until {}", resumeAt);
+            requests.pauseUntil(resumeAt);
+            tokens.pauseUntil(resumeAt);
+        }
+    }
+
+    static Optional<Duration> retryAfter(HttpHeaders headers) {
+        String retryAfter = headers.getFirst(HttpHeaders.RETRY_AFTER);
+        if (retryAfter != null) {
+            try {
+                return Optional.of(Duration.ofMillis((long) (Double.parseDouble(retryAfter) * 1000)));
+            } catch (NumberFormatException e) {
+                log.debug("Ignoring non-numeric retry-after header: {}", retryAfter);
+            }
+        }
+        String reset = headers.getFirst("anthropic-ratelimit-requests-reset");
+        if (reset != null) {
+            try {
+                Duration untilReset = Duration.between(Instant.now(), Instant.parse(reset));
+                return Optional.of(untilReset.isNegative() ? Duration.ZERO : untilReset);
+            } catch (DateTimeParseException e) {
+                log.debug("Ignoring unparsable rate limit reset header: {}", reset);
+            }
+        }
+        return Optional.empty();
+    }
+
+    private static Duration max(Duration a, Duration b) {
+        return a.compareTo(b) >= 0 ? a : b;
+    }
+
+    /**
+     * Token bucket that allows reservations beyond the current balance: the caller is told
+     * how long to wait until the debt has been refilled.
+     */
+    private static final class Bucket {
+
+        private double perMinute;
+        private double available;
+        private long lastRefillNanos;
+
+        Bucket(double perMinute) {
+            this.perMinute = perMinute;
+            this.available = perMinute;
+            this.lastRefillNanos = System.nanoTime();
+        }
+
+        synchronized Duration reserve(double amount) {
+            refill();
+            available -= amount;
+            if (available >= 0) {
+                return Duration.ZERO;
+            }
+            return Duration.ofNanos((long) (-available / perMinute * 60_000_000_000L));
+        }
+
+        synchronized void observe(String limit, String remaining) {
+            refill();
+            if (limit != null) {
+                try {
+                    perMinute = Math.max(1, Double.parseDouble(limit));
+                } catch (NumberFormatException ignored) {
+                    // keep the current size
+                }
+            }
+            if (remaining != null) {
+                try {
+                    // The provider's view wins when it is stricter than ours
+                    available = Math.min(available, Double.parseDouble(remaining));
+                } catch (NumberFormatException ignored) {
+                    // keep the current balance
+                }
+            }
+        }
+
+        synchronized void pauseUntil(Instant resumeAt) {
+            refill();
+            double seconds = Math.max(0, Duration.between(Instant.now(), resumeAt).toMillis() / 1000.0);
+            available = Math.min(available, -seconds * perMinute / 60);
+        }
+
+        synchronized double available() {
+            refill();
+            return available;
+        }
+
+        private void refill() {
+            long now = System.nanoTime();
+            available = Math.min(perMinute, available + (now - lastRefillNanos) / 60_000_000_000.0 * perMinute);
+            lastRefillNanos = now;
+        }
+    }
+}
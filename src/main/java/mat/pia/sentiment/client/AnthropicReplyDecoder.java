@@ -0,0 +1,331 @@
+package mat.pia.sentiment.client;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import lombok.extern.slf4j.Slf4j;
+import mat.pia.sentiment.exception.MalformedResponseException;
+import mat.pia.sentiment.model.SentimentResponse;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decodes Messages API replies with Jackson's streaming parser instead of building JsonNode
+ * trees. The envelope is read token by token, skipping everything but the first content block's
+ * text and the usage counts, and the JSON Claude generated is parsed in place from the parser's
+ * character buffer, without a content string or substring. Emotion scores are collected in a
+ * {@code double[]} indexed by {@link SentimentResponse.EmotionType#ordinal()}.
+ */
+@Slf4j
+final class AnthropicReplyDecoder {
+
+    private static final SentimentResponse.SentimentType[] SENTIMENTS = SentimentResponse.SentimentType.values();
+    private static final SentimentResponse.EmotionType[] EMOTIONS = SentimentResponse.EmotionType.values();
+    /** Every emotion but NONE, which is never scored. */
+    private static final int SCORED_EMOTIONS = EMOTIONS.length - 1;
+
+    private final JsonFactory jsonFactory;
+
+    AnthropicReplyDecoder(JsonFactory jsonFactory) {
+        this.jsonFactory = jsonFactory;
+    }
+
+    /** Reads the text of the first content block, handed over as a region of a char buffer. */
+    @FunctionalInterface
+    interface ContentReader<T> {
+        T read(char[] chars, int offset, int length) throws IOException;
+    }
+
+    record Reply<T>(T content, long inputTokens, long outputTokens) {
+    }
+
+    <T> Reply<T> readMessage(String responseJson, ContentReader<T> contentReader) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(responseJson)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException(parser, "Reply is not a JSON object");
+            }
+            T content = null;
+            boolean contentRead = false;
+            long inputTokens = 0;
+            long outputTokens = 0;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("content".equals(field) && value == JsonToken.START_ARRAY) {
+                    content = readFirstText(parser, contentReader);
+                    contentRead = true;
+                } else if ("usage".equals(field) && value == JsonToken.START_OBJECT) {
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        String counter = parser.currentName();
+                        parser.nextToken();
+                        switch (counter) {
+                            case "input_tokens", "cache_creation_input_tokens", "cache_read_input_tokens" ->
+                                    inputTokens += parser.getValueAsLong();
+                            case "output_tokens" -> outputTokens = parser.getValueAsLong();
+                            default -> parser.skipChildren();
+                        }
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            if (!contentRead) {
+                content = contentReader.read(new char[0], 0, 0);
+            }
+            return new Reply<>(content, inputTokens, outputTokens);
+        }
+    }
+
+    /** The analysis in a reply's text, or the fallback result if the text holds no JSON object. */
+    Result readResult(char[] chars, int offset, int length) throws IOException {
+        int end = offset + length;
+        int objectStart = indexOf(chars, offset, end, '{');
+        int objectEnd = lastIndexOf(chars, offset, end, '}');
+        if (objectStart < 0 || objectEnd < objectStart) {
+            return Result.fallback();
+        }
+        try (JsonParser parser = jsonFactory.createParser(chars, objectStart, objectEnd - objectStart + 1)) {
+            parser.nextToken();
+            return readResult(parser);
+        }
+    }
+
+    /** Same as {@link #readResult(char[], int, int)} for text that is already a string. */
+    Result readResult(String content) throws IOException {
+        int objectStart = content.indexOf('{');
+        int objectEnd = content.lastIndexOf('}');
+        if (objectStart < 0 || objectEnd < objectStart) {
+            return Result.fallback();
+        }
+        // Parsing stops at the end of the object, so the reader can run on past it
+        Reader reader = new StringReader(content);
+        reader.skip(objectStart);
+        try (JsonParser parser = jsonFactory.createParser(reader)) {
+            parser.nextToken();
+            return readResult(parser);
+        }
+    }
+
+    /**
+     * The results in a packed reply's text, in the order Claude wrote them.
+     *
+     * @throws MalformedResponseException if the text holds no JSON array
+     */
+    List<Result> readPackedResults(char[] chars, int offset, int length) throws IOException {
+        int end = offset + length;
+        int arrayStart = indexOf(chars, offset, end, '[');
+        int arrayEnd = lastIndexOf(chars, offset, end, ']');
+        if (arrayStart < 0 || arrayEnd <= arrayStart) {
+            throw new MalformedResponseException("Packed response does not contain a JSON array");
+        }
+        List<Result> results = new ArrayList<>();
+        try (JsonParser parser = jsonFactory.createParser(chars, arrayStart, arrayEnd - arrayStart + 1)) {
+            parser.nextToken();
+            JsonToken token;
+            while ((token = parser.nextToken()) != null && token != JsonToken.END_ARRAY) {
+                if (token == JsonToken.START_OBJECT) {
+                    results.add(readResult(parser));
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        return results;
+    }
+
+    private <T> T readFirstText(JsonParser parser, ContentReader<T> contentReader) throws IOException {
+        T content = null;
+        boolean first = true;
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY && token != null) {
+            if (first && token == JsonToken.START_OBJECT) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.currentName();
+                    if (parser.nextToken() == JsonToken.VALUE_STRING && "text".equals(field)) {
+                        // The parser's buffer is only valid until the next token, so read it now
+                        content = contentReader.read(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            } else {
+                parser.skipChildren();
+            }
+            first = false;
+        }
+        return content != null ? content : contentReader.read(new char[0], 0, 0);
+    }
+
+    /** Reads one result object; the parser must be positioned on its START_OBJECT. */
+    private Result readResult(JsonParser parser) throws IOException {
+        Result result = new Result();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if (value == JsonToken.VALUE_NULL) {
+                // A null field keeps its default, as with a JsonNode tree
+                continue;
+            }
+            if (!value.isScalarValue()) {
+                if ("emotionScores".equals(field) && value == JsonToken.START_OBJECT) {
+                    result.emotionScores = readEmotionScores(parser);
+                } else {
+                    if ("analysis".equals(field)) {
+                        // The tree decoder read a nested analysis as empty text
+                        result.analysis = "";
+                    }
+                    parser.skipChildren();
+                }
+                continue;
+            }
+            switch (field) {
+                case "sentiment" -> {
+                    SentimentResponse.SentimentType sentiment = matchIgnoreCase(parser, SENTIMENTS);
+                    if (sentiment == null) {
+                        log.warn("Invalid sentiment type received: {}, defaulting to NEUTRAL", parser.getText());
+                    } else {
+                        result.sentiment = sentiment;
+                    }
+                }
+                case "primaryEmotion" -> {
+                    SentimentResponse.EmotionType emotion = matchIgnoreCase(parser, EMOTIONS);
+                    if (emotion == null) {
+                        log.warn("Invalid emotion type received: {}, defaulting to NONE", parser.getText());
+                    } else {
+                        result.primaryEmotion = emotion;
+                    }
+                }
+                case "confidence" -> result.confidence = parser.getValueAsDouble(0.5);
+                case "analysis" -> result.analysis = parser.getText();
+                case "index" -> result.index = parser.getValueAsInt(-1);
+                default -> {
+                    // other scalar fields are not part of the result
+                }
+            }
+        }
+        return result;
+    }
+
+    private static double[] readEmotionScores(JsonParser parser) throws IOException {
+        double[] scores = new double[SCORED_EMOTIONS];
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            // Field names are canonicalized by the parser, so this lookup does not allocate
+            SentimentResponse.EmotionType emotion = emotionNamed(parser.currentName());
+            JsonToken value = parser.nextToken();
+            if (emotion != null && value.isNumeric()) {
+                scores[emotion.ordinal()] = parser.getDoubleValue();
+            } else if (emotion != null && value.isScalarValue()) {
+                scores[emotion.ordinal()] = parser.getValueAsDouble(0.0);
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return scores;
+    }
+
+    private static SentimentResponse.EmotionType emotionNamed(String name) {
+        for (int i = 0; i < SCORED_EMOTIONS; i++) {
+            if (EMOTIONS[i].name().equals(name)) {
+                return EMOTIONS[i];
+            }
+        }
+        return null;
+    }
+
+    /** Case-insensitive enum lookup on the parser's current text, without creating a string. */
+    private static <E extends Enum<E>> E matchIgnoreCase(JsonParser parser, E[] values) throws IOException {
+        char[] chars = parser.getTextCharacters();
+        int offset = parser.getTextOffset();
+        int length = parser.getTextLength();
+        for (E value : values) {
+            String name = value.name();
+            if (name.length() == length && regionMatchesIgnoreCase(name, chars, offset)) {
+                return value;
+            }
+        }
+        return null;
+    }
+
+    private static boolean regionMatchesIgnoreCase(String name, char[] chars, int offset) {
+        for (int i = 0; i < name.length(); i++) {
+            if (Character.toUpperCase(chars[offset + i]) != name.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int indexOf(char[] chars, int from, int to, char wanted) {
+        for (int i = from; i < to; i++) {
+            if (chars[i] == wanted) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int lastIndexOf(char[] chars, int from, int to, char wanted) {
+        for (int i = to - 1; i >= from; i--) {
+            if (chars[i] == wanted) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /** One decoded analysis; fields keep the defaults Claude's reply leaves out. */
+    static final class Result {
+
+        private SentimentResponse.SentimentType sentiment = SentimentResponse.SentimentType.NEUTRAL;
+        private SentimentResponse.EmotionType primaryEmotion = SentimentResponse.EmotionType.NONE;
+        private double confidence = 0.5;
+        private String analysis = "No analysis provided";
+        private double[] emotionScores;
+        private int index = -1;
+        private boolean fallback;
+
+        /** Used when the reply holds no JSON object. */
+        static Result fallback() {
+            Result result = new Result();
+            result.analysis = "Could not extract valid JSON from Claude response";
+            result.emotionScores = new double[SCORED_EMOTIONS];
+            result.fallback = true;
+            return result;
+        }
+
+        int index() {
+            return index;
+        }
+
+        boolean isFallback() {
+            return fallback;
+        }
+
+        SentimentResponse toResponse(String text) {
+            // Scores are only present when Claude sent an emotionScores object, as with the tree decoder
+            Map<SentimentResponse.EmotionType, Double> scores = new EnumMap<>(SentimentResponse.EmotionType.class);
+            if (emotionScores != null) {
+                for (int i = 0; i < SCORED_EMOTIONS; i++) {
+                    scores.put(EMOTIONS[i], emotionScores[i]);
+                }
+            }
+            return SentimentResponse.builder()
+                    .text(text)
+                    .sentiment(sentiment)
+                    .primaryEmotion(primaryEmotion)
+                    .emotionScores(scores)
+                    .confidence(confidence)
+                    .analysis(analysis)
+                    .timestamp(LocalDateTime.now())
+                    .build();
+        }
+    }
+}
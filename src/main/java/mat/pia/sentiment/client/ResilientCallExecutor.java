@@ -0,0 +1,210 @@
+package mat.pia.sentiment.client;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import mat.pia.sentiment.exception.ApiException;
+import mat.pia.sentiment.exception.CircuitOpenException;
+import mat.pia.sentiment.exception.ServiceBusyException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Wraps outbound Anthropic calls with a per-attempt timeout, an overall deadline, retries
+ * with jittered exponential backoff for 429/5xx/connection errors (honoring retry-after),
+ * an optional hedged second request once an attempt runs past the observed p95 latency,
+ * and the circuit breaker.
+ */
+@Component
+@Slf4j
+public class ResilientCallExecutor {
+
+    private final AnthropicCircuitBreaker circuitBreaker;
+    private final LatencyWindow latencies = new LatencyWindow(256);
+    private final Counter retries;
+    private final Counter hedges;
+
+    @Value("${anthropic.resilience.attempt-timeout:PT30S}")
+    private Duration attemptTimeout;
+
+    @Value("${anthropic.resilience.deadline:PT90S}")
+    private Duration deadline;
+
+    @Value("${anthropic.resilience.max-retries:3}")
+    private int maxRetries;
+
+    @Value("${anthropic.resilience.backoff.initial:PT0.5S}")
+    private Duration initialBackoff;
+
+    @Value("${anthropic.resilience.backoff.max:PT10S}")
+    private Duration maxBackoff;
+
+    @Value("${anthropic.resilience.hedge.enabled:false}")
+    private boolean hedgeEnabled;
+
+    @Value("${anthropic.resilience.hedge.min-delay:PT1S}")
+    private Duration hedgeMinDelay;
+
+    @Value("${anthropic.resilience.hedge.min-samples:20}")
+    private int hedgeMinSamples;
+
+    public ResilientCallExecutor(AnthropicCircuitBreaker circuitBreaker, MeterRegistry meterRegistry) {
+        this.circuitBreaker = circuitBreaker;
+        this.retries = meterRegistry.counter("anthropic.calls.retries");
+        this.hedges = meterRegistry.counter("anthropic.calls.hedges");
+    }
+
+    public <T> Mono<T> execute(Supplier<Mono<T>> call) {
+        return Mono.defer(() -> {
+            long startNanos = System.nanoTime();
+            Mono<T> attempt = Mono.defer(() -> attempt(call));
+            return hedged(attempt)
+                    .retryWhen(retryPolicy(startNanos))
+                    .timeout(deadline)
+                    .onErrorMap(TimeoutException.class,
+                            e -> new ApiException("Anthropic API did not respond in time", e));
+        });
+    }
+
+    private <T> Mono<T> attempt(Supplier<Mono<T>> call) {
+        if (!circuitBreaker.tryAcquire()) {
+            return Mono.error(new CircuitOpenException("Anthropic API is unavailable, retry in "
+                    + circuitBreaker.remainingOpen().toSeconds() + "s"));
+        }
+        long startNanos = System.nanoTime();
+        return call.get()
+                .timeout(attemptTimeout)
+                .doOnSuccess(value -> {
+                    circuitBreaker.onSuccess();
+                    latencies.record(System.nanoTime() - startNanos);
+                })
+                .doOnError(e -> {
+                    // Client errors mean the provider answered; only degradation trips the breaker
+                    if (e instanceof ServiceBusyException) {
+                        // Shed locally before reaching the provider
+                        circuitBreaker.onIgnored();
+                    } else if (isRetryable(e)) {
+                        circuitBreaker.onFailure();
+                    } else {
+                        circuitBreaker.onSuccess();
+                    }
+                })
+                .doOnCancel(circuitBreaker::onIgnored);
+    }
+
+    /**
+     * Races a second attempt against the first once it has run longer than the p95 latency.
+     * The hedge is only started while the first attempt is still pending, and the loser is cancelled.
+     */
+    private <T> Mono<T> hedged(Mono<T> attempt) {
+        if (!hedgeEnabled || latencies.size() < hedgeMinSamples) {
+            return attempt;
+        }
+        Duration hedgeDelay = Duration.ofNanos(Math.max(hedgeMinDelay.toNanos(), latencies.percentile(0.95)));
+        if (hedgeDelay.compareTo(attemptTimeout) >= 0) {
+            return attempt;
+        }
+        return Mono.defer(() -> {
+            Sinks.Empty<Void> primaryDone = Sinks.empty();
+            Mono<T> primary = attempt.doFinally(signal -> primaryDone.tryEmitEmpty());
+            Mono<T> hedge = Mono.delay(hedgeDelay)
+                    .takeUntilOther(primaryDone.asMono())
+                    .flatMap(tick -> {
+                        hedges.increment();
+                        log.debug("Hedging Anthropic call after {} ms", hedgeDelay.toMillis());
+                        return attempt;
+                    });
+            return Mono.firstWithValue(primary, hedge)
+                    .onErrorMap(NoSuchElementException.class, ResilientCallExecutor::firstFailure);
+        });
+    }
+
+    private Retry retryPolicy(long startNanos) {
+        return Retry.from(signals -> signals.concatMap(signal -> {
+            Throwable failure = signal.failure();
+            if (signal.totalRetries() >= maxRetries || !isRetryable(failure)) {
+                return Mono.error(failure);
+            }
+            Duration delay = backoff(signal.totalRetries(), failure);
+            Duration remaining = deadline.minusNanos(System.nanoTime() - startNanos);
+            if (delay.compareTo(remaining) >= 0) {
+                return Mono.error(failure);
+            }
+            retries.increment();
+            log.warn("Anthropic call failed ({}), retry {} of {} in {} ms",
+                    failure.getMessage(), signal.totalRetries() + 1, maxRetries, delay.toMillis());
+            return Mono.delay(delay);
+        }));
+    }
+
+    private Duration backoff(long retry, Throwable failure) {
+        long ceiling = Math.min(maxBackoff.toMillis(), initialBackoff.toMillis() << Math.min(retry, 20));
+        // Equal jitter: at least half the exponential step, so retries never collapse to zero
+        long jittered = ceiling / 2 + ThreadLocalRandom.current().nextLong(ceiling / 2 + 1);
+        Duration delay = Duration.ofMillis(jittered);
+        if (failure instanceof WebClientResponseException responseException) {
+            Duration retryAfter = AnthropicRateLimiter.retryAfter(responseException.getHeaders())
+                    .orElse(Duration.ZERO);
+            if (retryAfter.compareTo(delay) > 0) {
+                delay = retryAfter;
+            }
+        }
+        return delay;
+    }
+
+    static boolean isRetryable(Throwable e) {
+        if (e instanceof WebClientResponseException responseException) {
+            int status = responseException.getStatusCode().value();
+            return status == 429 || status == 529 || status >= 500;
+        }
+        return e instanceof WebClientRequestException || AdaptiveConcurrencyLimiter.isTimeout(e);
+    }
+
+    private static Throwable firstFailure(NoSuchElementException e) {
+        return Exceptions.unwrapMultiple(e.getCause()).stream()
+                .filter(cause -> !(cause instanceof NoSuchElementException))
+                .findFirst()
+                .orElse(e);
+    }
+
+    /** Ring buffer of recent successful attempt latencies in nanoseconds. */
+    private static final class LatencyWindow {
+
+        private final long[] samples;
+        private int next;
+        private int size;
+
+        LatencyWindow(int capacity) {
+            this.samples = new long[capacity];
+        }
+
+        synchronized void record(long nanos) {
+            samples[next] = nanos;
+            next = (next + 1) % samples.length;
+            size = Math.min(size + 1, samples.length);
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        synchronized long percentile(double percentile) {
+            long[] sorted = Arrays.copyOf(samples, size);
+            Arrays.sort(sorted);
+            return sorted[Math.min(size - 1, (int) Math.ceil(percentile * size) - 1)];
+        }
+    }
+}
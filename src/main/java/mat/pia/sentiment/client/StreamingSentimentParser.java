@@ -0,0 +1,127 @@
+package mat.pia.sentiment.client;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import lombok.extern.slf4j.Slf4j;
+import mat.pia.sentiment.model.SentimentResponse;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+
+/**
+ * Incrementally parses the JSON object Claude is streaming, one text delta at a time, with
+ * Jackson's non-blocking parser. It only picks out the top-level sentiment and primaryEmotion
+ * values so they can be shown before the rest of the reply has been generated; the complete
+ * reply is still decoded by {@link AnthropicMessageCodec#decodeContent}. One instance per stream.
+ */
+@Slf4j
+public class StreamingSentimentParser {
+
+    private final JsonParser parser;
+    private final ByteArrayFeeder feeder;
+
+    private boolean started;
+    private boolean finished;
+    private int depth;
+    private String currentField;
+
+    private SentimentResponse.SentimentType sentiment;
+    private SentimentResponse.EmotionType primaryEmotion;
+
+    StreamingSentimentParser(JsonFactory jsonFactory) {
+        try {
+            this.parser = jsonFactory.createNonBlockingByteArrayParser();
+        } catch (IOException e) {
+            throw new IllegalStateException("Non-blocking JSON parsing is not available", e);
+        }
+        this.feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+    }
+
+    /**
+     * Feeds the next text delta.
+     *
+     * @return true if sentiment or primaryEmotion became known with this delta
+     */
+    public boolean feed(String delta) {
+        if (finished) {
+            return false;
+        }
+        String input = delta;
+        if (!started) {
+            // Skip any preamble Claude writes before the object
+            int objectStart = input.indexOf('{');
+            if (objectStart < 0) {
+                return false;
+            }
+            input = input.substring(objectStart);
+            started = true;
+        }
+
+        boolean changed = false;
+        try {
+            byte[] bytes = input.getBytes(StandardCharsets.UTF_8);
+            feeder.feedInput(bytes, 0, bytes.length);
+            JsonToken token;
+            while (!finished && (token = parser.nextToken()) != JsonToken.NOT_AVAILABLE && token != null) {
+                changed |= onToken(token);
+            }
+        } catch (IOException e) {
+            // The final decode has its own fallback; just stop looking for early fields
+            log.debug("Giving up on incremental parsing of the streamed reply: {}", e.getMessage());
+            finished = true;
+        }
+        return changed;
+    }
+
+    public Optional<SentimentResponse.SentimentType> getSentiment() {
+        return Optional.ofNullable(sentiment);
+    }
+
+    public Optional<SentimentResponse.EmotionType> getPrimaryEmotion() {
+        return Optional.ofNullable(primaryEmotion);
+    }
+
+    private boolean onToken(JsonToken token) throws IOException {
+        switch (token) {
+            case START_OBJECT, START_ARRAY -> depth++;
+            case END_OBJECT, END_ARRAY -> {
+                if (--depth == 0) {
+                    finished = true;
+                }
+            }
+            case FIELD_NAME -> {
+                if (depth == 1) {
+                    currentField = parser.currentName();
+                }
+            }
+            case VALUE_STRING -> {
+                if (depth == 1) {
+                    return onTopLevelString(currentField, parser.getText());
+                }
+            }
+            default -> {
+                // numbers, booleans and nulls are not needed early
+            }
+        }
+        return false;
+    }
+
+    private boolean onTopLevelString(String field, String value) {
+        try {
+            if ("sentiment".equals(field) && sentiment == null) {
+                sentiment = SentimentResponse.SentimentType.valueOf(value.toUpperCase());
+                return true;
+            }
+            if ("primaryEmotion".equals(field) && primaryEmotion == null) {
+                primaryEmotion = SentimentResponse.EmotionType.valueOf(value.toUpperCase());
+                return true;
+            }
+        } catch (IllegalArgumentException e) {
+            log.debug("Ignoring unexpected early {} value: {}", field, value);
+        }
+        return false;
+    }
+}
@@ -0,0 +1,90 @@
+package mat.pia.sentiment.config;
+
+import io.netty.channel.ChannelOption;
+import io.netty.handler.timeout.WriteTimeoutHandler;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reactor Netty connector behind the Anthropic WebClient: a dedicated connection pool with
+ * idle eviction and Micrometer metrics (reactor.netty.connection.provider.*), explicit
+ * connect/read/write timeouts, HTTP/2 negotiated over TLS and gzip responses.
+ */
+@Configuration
+public class AnthropicConnectorConfig {
+
+    @Value("${anthropic.api.url:https://api.anthropic.com/v1/messages}")
+    private String apiUrl;
+
+    @Value("${anthropic.http.max-connections:50}")
+    private int maxConnections;
+
+    @Value("${anthropic.http.pending-acquire-max-count:500}")
+    private int pendingAcquireMaxCount;
+
+    @Value("${anthropic.http.pending-acquire-timeout:PT10S}")
+    private Duration pendingAcquireTimeout;
+
+    @Value("${anthropic.http.max-idle-time:PT30S}")
+    private Duration maxIdleTime;
+
+    @Value("${anthropic.http.max-life-time:PT5M}")
+    private Duration maxLifeTime;
+
+    @Value("${anthropic.http.evict-interval:PT15S}")
+    private Duration evictInterval;
+
+    @Value("${anthropic.http.connect-timeout:PT5S}")
+    private Duration connectTimeout;
+
+    @Value("${anthropic.http.read-timeout:PT30S}")
+    private Duration readTimeout;
+
+    @Value("${anthropic.http.write-timeout:PT10S}")
+    private Duration writeTimeout;
+
+    @Value("${anthropic.http.compression:true}")
+    private boolean compression;
+
+    @Value("${anthropic.http.http2:true}")
+    private boolean http2;
+
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider anthropicConnectionProvider() {
+        return ConnectionProvider.builder("anthropic")
+                .maxConnections(maxConnections)
+                .pendingAcquireMaxCount(pendingAcquireMaxCount)
+                .pendingAcquireTimeout(pendingAcquireTimeout)
+                // Idle connections are dropped before the provider's keep-alive closes them
+                .maxIdleTime(maxIdleTime)
+                .maxLifeTime(maxLifeTime)
+                .evictInBackground(evictInterval)
+                .metrics(true)
+                .build();
+    }
+
+    @Bean
+    public HttpClient anthropicHttpClient(ConnectionProvider anthropicConnectionProvider) {
+        HttpClient httpClient = HttpClient.create(anthropicConnectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) connectTimeout.toMillis())
+                .option(ChannelOption.SO_KEEPALIVE, true)
+                .responseTimeout(readTimeout)
+                .doOnConnected(connection -> connection.addHandlerLast(
+                        new WriteTimeoutHandler(writeTimeout.toMillis(), TimeUnit.MILLISECONDS)))
+                .compress(compression);
+
+        // HTTP/2 is negotiated through ALPN, so it only applies to TLS endpoints
+        if (http2 && "https".equalsIgnoreCase(URI.create(apiUrl).getScheme())) {
+            httpClient = httpClient.protocol(HttpProtocol.H2, HttpProtocol.HTTP11);
+        }
+        return httpClient;
+    }
+}
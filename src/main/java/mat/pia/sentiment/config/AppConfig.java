@@ -3,17 +3,24 @@ package mat.pia.sentiment.config;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.micrometer.observation.ObservationRegistry;
+import mat.pia.sentiment.client.AdaptiveConcurrencyLimiter;
+import mat.pia.sentiment.client.AnthropicRateLimiter;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import reactor.netty.http.client.HttpClient;
 
 import java.text.SimpleDateFormat;
 
 @Configuration
+@EnableScheduling
 public class AppConfig {
 
     @Value("${anthropic.api.url:https://api.anthropic.com/v1/messages}")
@@ -23,12 +30,22 @@ public class AppConfig {
     private String apiKey;
 
     @Bean
-    public WebClient anthropicWebClient() {
+    public WebClient anthropicWebClient(
+            HttpClient anthropicHttpClient,
+            AnthropicRateLimiter rateLimiter,
+            AdaptiveConcurrencyLimiter concurrencyLimiter,
+            ObservationRegistry observationRegistry) {
         return WebClient.builder()
+                .clientConnector(new ReactorClientHttpConnector(anthropicHttpClient))
                 .baseUrl(apiUrl)
                 .defaultHeader("x-api-key", apiKey)
                 .defaultHeader("anthropic-version", "2023-06-01")
                 .defaultHeader("content-type", "application/json")
+                // Rate limiting first so queued calls don't occupy concurrency slots
+                .filter(rateLimiter.filter())
+                .filter(concurrencyLimiter.filter())
+                // http.client.requests per attempt, tagged with the response status
+                .observationRegistry(observationRegistry)
                 .build();
     }
 
@@ -0,0 +1,56 @@
+package mat.pia.sentiment.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import mat.pia.sentiment.controller.AnalysisConcurrencyInterceptor;
+import mat.pia.sentiment.diagnostics.VirtualThreadPinningMonitor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.time.Duration;
+
+/**
+ * Virtual-thread execution mode (sentiment.execution.mode=virtual-threads, see the
+ * virtual-threads profile). Tomcat handles each request on its own virtual thread and the
+ * analyze endpoints run the blocking service, so concurrency is bounded by the cap below
+ * instead of the platform thread pool.
+ */
+@Configuration
+@ConditionalOnProperty(value = "sentiment.execution.mode", havingValue = "virtual-threads")
+@Slf4j
+public class VirtualThreadConfig implements WebMvcConfigurer {
+
+    private final AnalysisConcurrencyInterceptor concurrencyInterceptor;
+
+    public VirtualThreadConfig(
+            @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreadsEnabled,
+            @Value("${sentiment.execution.max-concurrent-analyses:2000}") int maxConcurrentAnalyses,
+            @Value("${sentiment.execution.acquire-timeout:PT2S}") Duration acquireTimeout,
+            MeterRegistry meterRegistry) {
+        if (!virtualThreadsEnabled) {
+            log.warn("sentiment.execution.mode=virtual-threads without spring.threads.virtual.enabled=true; "
+                    + "requests will block platform threads");
+        }
+        this.concurrencyInterceptor = new AnalysisConcurrencyInterceptor(maxConcurrentAnalyses, acquireTimeout);
+        Gauge.builder("sentiment.analyses.in-flight", concurrencyInterceptor, AnalysisConcurrencyInterceptor::inUse)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(concurrencyInterceptor).addPathPatterns("/api/sentiment/analyze/**");
+    }
+
+    @Bean
+    @ConditionalOnProperty(value = "sentiment.execution.pinning-monitor.enabled", havingValue = "true", matchIfMissing = true)
+    public VirtualThreadPinningMonitor virtualThreadPinningMonitor(
+            MeterRegistry meterRegistry,
+            @Value("${sentiment.execution.pinning-monitor.threshold:PT0.02S}") Duration threshold) {
+        return new VirtualThreadPinningMonitor(meterRegistry, threshold);
+    }
+}
@@ -0,0 +1,57 @@
+package mat.pia.sentiment.controller;
+
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import mat.pia.sentiment.exception.ServiceBusyException;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caps the number of analysis requests being handled at once. Requests over the cap wait up
+ * to the acquire timeout for a slot and are then rejected with 503. The permit is held until
+ * the request completes, including its async dispatch when the handler returned a Mono.
+ */
+public class AnalysisConcurrencyInterceptor implements AsyncHandlerInterceptor {
+
+    private static final String PERMIT_ATTRIBUTE = AnalysisConcurrencyInterceptor.class.getName() + ".permit";
+
+    private final Semaphore permits;
+    private final int maxConcurrent;
+    private final Duration acquireTimeout;
+
+    public AnalysisConcurrencyInterceptor(int maxConcurrent, Duration acquireTimeout) {
+        this.permits = new Semaphore(maxConcurrent, true);
+        this.maxConcurrent = maxConcurrent;
+        this.acquireTimeout = acquireTimeout;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler)
+            throws InterruptedException {
+        if (request.getDispatcherType() == DispatcherType.ASYNC) {
+            // The permit taken on the initial dispatch is still held
+            return true;
+        }
+        if (!permits.tryAcquire(acquireTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+            throw new ServiceBusyException("Too many concurrent analyses (limit " + maxConcurrent + "), try again later");
+        }
+        request.setAttribute(PERMIT_ATTRIBUTE, Boolean.TRUE);
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        if (request.getAttribute(PERMIT_ATTRIBUTE) != null) {
+            request.removeAttribute(PERMIT_ATTRIBUTE);
+            permits.release();
+        }
+    }
+
+    public int inUse() {
+        return maxConcurrent - permits.availablePermits();
+    }
+}
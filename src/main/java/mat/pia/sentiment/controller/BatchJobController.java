@@ -0,0 +1,48 @@
+package mat.pia.sentiment.controller;
+
+import jakarta.validation.Valid;
+import lombok.extern.slf4j.Slf4j;
+import mat.pia.sentiment.dto.BatchJobRequest;
+import mat.pia.sentiment.dto.BatchJobResultPage;
+import mat.pia.sentiment.dto.BatchJobStatus;
+import mat.pia.sentiment.service.BatchJobService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/sentiment/jobs")
+@Slf4j
+@CrossOrigin(origins = "*")
+public class BatchJobController {
+
+    private final BatchJobService batchJobService;
+
+    @Autowired
+    public BatchJobController(BatchJobService batchJobService) {
+        this.batchJobService = batchJobService;
+    }
+
+    @PostMapping
+    public ResponseEntity<BatchJobStatus> createJob(@Valid @RequestBody BatchJobRequest request) {
+        log.info("Received batch job with {} texts", request.getRequests().size());
+        BatchJobStatus status = batchJobService.createJob(request);
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(status);
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<BatchJobStatus> getJobStatus(@PathVariable String id) {
+        log.info("Retrieving status of batch job {}", id);
+        return ResponseEntity.ok(batchJobService.getStatus(id));
+    }
+
+    @GetMapping("/{id}/results")
+    public ResponseEntity<BatchJobResultPage> getJobResults(
+            @PathVariable String id,
+            @RequestParam(required = false) Integer cursor,
+            @RequestParam(defaultValue = "50") int size) {
+        log.info("Retrieving results of batch job {} after index {}", id, cursor);
+        return ResponseEntity.ok(batchJobService.getResults(id, cursor, size));
+    }
+}
@@ -0,0 +1,53 @@
+package mat.pia.sentiment.controller;
+
+import lombok.extern.slf4j.Slf4j;
+import mat.pia.sentiment.dto.AnalyticsSummary;
+import mat.pia.sentiment.dto.SourceAnalytics;
+import mat.pia.sentiment.dto.TimeBucketAnalytics;
+import mat.pia.sentiment.service.SentimentAnalyticsService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/sentiment/analytics")
+@Slf4j
+@CrossOrigin(origins = "*")
+public class SentimentAnalyticsController {
+
+    private final SentimentAnalyticsService analyticsService;
+
+    @Autowired
+    public SentimentAnalyticsController(SentimentAnalyticsService analyticsService) {
+        this.analyticsService = analyticsService;
+    }
+
+    @GetMapping("/summary")
+    public ResponseEntity<AnalyticsSummary> getSummary(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        log.info("Retrieving sentiment analytics summary (from: {}, to: {})", from, to);
+        return ResponseEntity.ok(analyticsService.summarize(from, to));
+    }
+
+    @GetMapping("/sources")
+    public ResponseEntity<List<SourceAnalytics>> getBySource(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        log.info("Retrieving sentiment analytics by source (from: {}, to: {})", from, to);
+        return ResponseEntity.ok(analyticsService.bySource(from, to));
+    }
+
+    @GetMapping("/timeline")
+    public ResponseEntity<List<TimeBucketAnalytics>> getTimeline(
+            @RequestParam(defaultValue = "day") String bucket,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        log.info("Retrieving sentiment analytics timeline (bucket: {}, from: {}, to: {})", bucket, from, to);
+        return ResponseEntity.ok(analyticsService.timeline(bucket, from, to));
+    }
+}
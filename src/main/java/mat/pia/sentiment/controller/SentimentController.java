@@ -1,20 +1,37 @@
 package mat.pia.sentiment.controller;
 
+import mat.pia.sentiment.dto.AnalysisStreamEvent;
 import mat.pia.sentiment.dto.BatchSentimentRequest;
 import mat.pia.sentiment.dto.BatchSentimentResponse;
+import mat.pia.sentiment.dto.BatchStreamEvent;
+import mat.pia.sentiment.dto.HistoryPage;
 import mat.pia.sentiment.dto.SentimentDTO;
 import mat.pia.sentiment.exception.ResourceNotFoundException;
 import mat.pia.sentiment.model.SentimentEntity;
 import mat.pia.sentiment.model.SentimentRequest;
 import mat.pia.sentiment.model.SentimentResponse;
+import mat.pia.sentiment.service.ReactiveSentimentService;
 import mat.pia.sentiment.service.SentimentService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/sentiment")
@@ -23,17 +40,51 @@ import java.util.List;
 public class SentimentController {
 
     private final SentimentService sentimentService;
+    private final ReactiveSentimentService reactiveSentimentService;
+    private final ObjectMapper objectMapper;
+    private final boolean blockingHandlers;
     
     @Autowired
-    public SentimentController(SentimentService sentimentService) {
+    public SentimentController(
+            SentimentService sentimentService,
+            ReactiveSentimentService reactiveSentimentService,
+            ObjectMapper objectMapper,
+            @Value("${sentiment.execution.mode:reactive}") String executionMode) {
         this.sentimentService = sentimentService;
+        this.reactiveSentimentService = reactiveSentimentService;
+        // On virtual threads blocking is cheap, so the straight-line service is used instead
+        this.blockingHandlers = "virtual-threads".equals(executionMode);
+        // The export writes one document per line, so the stream must stay open between writes,
+        // and is left to the servlet buffer instead of being flushed after every row
+        this.objectMapper = objectMapper.copy()
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET, JsonGenerator.Feature.FLUSH_PASSED_TO_STREAM)
+                .disable(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
     }
     
     @PostMapping("/analyze")
-    public ResponseEntity<SentimentResponse> analyzeSentiment(@Valid @RequestBody SentimentRequest request) {
+    public Mono<ResponseEntity<SentimentResponse>> analyzeSentiment(@Valid @RequestBody SentimentRequest request) {
         log.info("Received sentiment analysis request for text: {}", request.getText());
-        SentimentResponse response = sentimentService.analyzeSentiment(request);
-        return ResponseEntity.ok(response);
+        if (blockingHandlers) {
+            return Mono.just(ResponseEntity.ok(sentimentService.analyzeSentiment(request)));
+        }
+        // Returned unblocked: the servlet thread is released while Claude is working
+        return reactiveSentimentService.analyzeAsync(request)
+                .map(ResponseEntity::ok);
+    }
+
+    @PostMapping(value = "/analyze/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<AnalysisStreamEvent>> streamSentiment(@Valid @RequestBody SentimentRequest request) {
+        log.info("Received streaming sentiment analysis request for text: {}", request.getText());
+        return reactiveSentimentService.analyzeStreamAsync(request)
+                .map(event -> ServerSentEvent.builder(event)
+                        .event(event.getType().name().toLowerCase())
+                        .build());
+    }
+
+    @PostMapping(value = "/analyze/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<AnalysisStreamEvent> streamSentimentNdjson(@Valid @RequestBody SentimentRequest request) {
+        log.info("Received streaming sentiment analysis request for text: {} (NDJSON)", request.getText());
+        return reactiveSentimentService.analyzeStreamAsync(request);
     }
 
     @GetMapping("/history")
@@ -43,6 +94,55 @@ public class SentimentController {
         return ResponseEntity.ok(history);
     }
 
+    @GetMapping("/history/page")
+    public ResponseEntity<HistoryPage> getSentimentHistoryPage(
+            @RequestParam(required = false) SentimentResponse.SentimentType type,
+            @RequestParam(required = false) SentimentResponse.EmotionType emotion,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int size) {
+        log.info("Retrieving sentiment history page (type: {}, emotion: {}, size: {})", type, emotion, size);
+        HistoryPage page = sentimentService.findPage(type, emotion, cursor, size);
+        return ResponseEntity.ok(page);
+    }
+
+    @GetMapping(value = "/history/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public void exportSentimentHistory(
+            @RequestParam(required = false) SentimentResponse.SentimentType type,
+            @RequestParam(required = false) SentimentResponse.EmotionType emotion,
+            HttpServletResponse response) throws IOException {
+        log.info("Exporting sentiment history as NDJSON (type: {}, emotion: {})", type, emotion);
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        OutputStream out = response.getOutputStream();
+        long[] exported = {0};
+        try {
+            sentimentService.streamHistory(type, emotion, dto -> {
+                try {
+                    objectMapper.writeValue(out, dto);
+                    out.write('\n');
+                    exported[0]++;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            // The client went away; there is nobody left to tell
+            throw e.getCause();
+        } catch (RuntimeException e) {
+            if (!response.isCommitted()) {
+                // Nothing has reached the client yet: drop the buffered rows and fail normally
+                response.reset();
+                throw e;
+            }
+            // The 200 status has already been sent, so the failure is reported in-band
+            log.error("History export failed after {} rows", exported[0], e);
+            objectMapper.writeValue(out, Map.of(
+                    "error", "Export failed after " + exported[0] + " rows",
+                    "exported", exported[0]));
+            out.write('\n');
+        }
+        out.flush();
+    }
+
     @GetMapping("/history/{id}")
     public ResponseEntity<SentimentDTO> getSentimentById(@PathVariable Long id) {
         log.info("Retrieving sentiment analysis with ID: {}", id);
@@ -76,17 +176,38 @@ public class SentimentController {
     }
     
     @PostMapping("/analyze/batch")
-    public ResponseEntity<BatchSentimentResponse> analyzeBatchSentiment(
+    public Mono<ResponseEntity<BatchSentimentResponse>> analyzeBatchSentiment(
             @Valid @RequestBody BatchSentimentRequest batchRequest) {
         log.info("Received batch sentiment analysis request with {} texts", 
                 batchRequest.getRequests().size());
         
-        BatchSentimentResponse response = sentimentService.analyzeBatch(batchRequest);
-        
-        log.info("Completed batch sentiment analysis. Dominant sentiment: {}, Dominant emotion: {}", 
-                response.getSummary().getDominantSentiment(), 
-                response.getSummary().getDominantEmotion());
-        
-        return ResponseEntity.ok(response);
+        Mono<BatchSentimentResponse> result = blockingHandlers
+                ? Mono.just(sentimentService.analyzeBatch(batchRequest))
+                : reactiveSentimentService.analyzeBatchAsync(batchRequest);
+        return result
+                .doOnNext(response -> log.info(
+                        "Completed batch sentiment analysis. Dominant sentiment: {}, Dominant emotion: {}",
+                        response.getSummary().getDominantSentiment(),
+                        response.getSummary().getDominantEmotion()))
+                .map(ResponseEntity::ok);
+    }
+
+    @PostMapping(value = "/analyze/batch/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<BatchStreamEvent>> streamBatchSentiment(
+            @Valid @RequestBody BatchSentimentRequest batchRequest) {
+        log.info("Received streaming batch sentiment analysis request with {} texts (SSE)",
+                batchRequest.getRequests().size());
+        return reactiveSentimentService.streamBatchAsync(batchRequest)
+                .map(event -> ServerSentEvent.builder(event)
+                        .event(event.getType().name().toLowerCase())
+                        .build());
+    }
+
+    @PostMapping(value = "/analyze/batch/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<BatchStreamEvent> streamBatchSentimentNdjson(
+            @Valid @RequestBody BatchSentimentRequest batchRequest) {
+        log.info("Received streaming batch sentiment analysis request with {} texts (NDJSON)",
+                batchRequest.getRequests().size());
+        return reactiveSentimentService.streamBatchAsync(batchRequest);
     }
 }
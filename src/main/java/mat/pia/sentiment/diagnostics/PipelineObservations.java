@@ -0,0 +1,81 @@
+package mat.pia.sentiment.diagnostics;
+
+import io.micrometer.common.KeyValues;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import io.micrometer.observation.contextpropagation.ObservationThreadLocalAccessor;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Wraps pipeline stages in Micrometer observations. Each observation becomes a timer (and a
+ * span when a tracing bridge is on the classpath) and is handed to upstream operators through
+ * the Reactor context under the same key WebClient uses, so nested stages and outbound HTTP
+ * calls are recorded as its children. Outside a reactive chain the parent is the observation
+ * current on the calling thread, normally the MVC request.
+ */
+@Component
+public class PipelineObservations {
+
+    private final ObservationRegistry observationRegistry;
+
+    public PipelineObservations(ObservationRegistry observationRegistry) {
+        this.observationRegistry = observationRegistry;
+    }
+
+    public <T> Mono<T> observe(String name, KeyValues lowCardinalityKeyValues, Mono<T> source) {
+        Observation assemblyParent = observationRegistry.getCurrentObservation();
+        return Mono.deferContextual(context -> {
+            Observation observation = start(name, lowCardinalityKeyValues,
+                    context.getOrDefault(ObservationThreadLocalAccessor.KEY, assemblyParent));
+            Runnable stop = stopOnce(observation);
+            return source
+                    .doOnSuccess(value -> stop.run())
+                    .doOnError(error -> stop(observation, error, stop))
+                    .doOnCancel(stop)
+                    .contextWrite(upstream -> upstream.put(ObservationThreadLocalAccessor.KEY, observation));
+        });
+    }
+
+    public <T> Flux<T> observe(String name, KeyValues lowCardinalityKeyValues, Flux<T> source) {
+        Observation assemblyParent = observationRegistry.getCurrentObservation();
+        return Flux.deferContextual(context -> {
+            Observation observation = start(name, lowCardinalityKeyValues,
+                    context.getOrDefault(ObservationThreadLocalAccessor.KEY, assemblyParent));
+            Runnable stop = stopOnce(observation);
+            return source
+                    .doOnComplete(stop)
+                    .doOnError(error -> stop(observation, error, stop))
+                    .doOnCancel(stop)
+                    .contextWrite(upstream -> upstream.put(ObservationThreadLocalAccessor.KEY, observation));
+        });
+    }
+
+    /*
+     * Stopped on the terminal signal rather than in doFinally, which runs only after the signal
+     * has travelled downstream, so nested stages would otherwise stop after their parent.
+     */
+    private static Runnable stopOnce(Observation observation) {
+        AtomicBoolean stopped = new AtomicBoolean();
+        return () -> {
+            if (stopped.compareAndSet(false, true)) {
+                observation.stop();
+            }
+        };
+    }
+
+    private static void stop(Observation observation, Throwable error, Runnable stop) {
+        observation.error(error);
+        stop.run();
+    }
+
+    private Observation start(String name, KeyValues lowCardinalityKeyValues, Observation parent) {
+        return Observation.createNotStarted(name, observationRegistry)
+                .parentObservation(parent)
+                .lowCardinalityKeyValues(lowCardinalityKeyValues)
+                .start();
+    }
+}
@@ -0,0 +1,109 @@
+package mat.pia.sentiment.diagnostics;
+
+import io.micrometer.common.KeyValue;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationHandler;
+import io.micrometer.observation.ObservationView;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.Collectors;
+
+/**
+ * Logs a stage-by-stage breakdown of analyses and batches that take longer than the threshold,
+ * built from the observations nested under them (cache lookup, Claude call and its HTTP
+ * attempts, persistence). Works without a tracing backend.
+ */
+@Component
+@Slf4j
+public class SlowAnalysisLogger implements ObservationHandler<Observation.Context> {
+
+    private static final Set<String> ROOTS = Set.of("sentiment.analyze", "sentiment.batch");
+
+    private final long thresholdNanos;
+
+    public SlowAnalysisLogger(@Value("${sentiment.observability.slow-analysis-threshold:PT2S}") Duration threshold) {
+        this.thresholdNanos = threshold.toNanos();
+    }
+
+    @Override
+    public void onStart(Observation.Context context) {
+        context.put(Timing.class, new Timing(System.nanoTime()));
+    }
+
+    @Override
+    public void onStop(Observation.Context context) {
+        Timing timing = context.get(Timing.class);
+        if (timing == null) {
+            return;
+        }
+        long elapsed = System.nanoTime() - timing.started;
+
+        if (ROOTS.contains(context.getName())) {
+            if (elapsed >= thresholdNanos) {
+                log.warn("Slow {} took {} ms: {}", context.getName(), elapsed / 1_000_000, breakdown(timing));
+            }
+            return;
+        }
+
+        int depth = 1;
+        ObservationView parent = context.getParentObservation();
+        while (parent != null && !ROOTS.contains(parent.getContextView().getName())) {
+            parent = parent.getContextView().getParentObservation();
+            depth++;
+        }
+        if (parent == null) {
+            return;
+        }
+        Timing root = parent.getContextView().get(Timing.class);
+        if (root != null) {
+            root.stages.add(new Stage(depth, describe(context), timing.started - root.started, elapsed));
+        }
+    }
+
+    @Override
+    public boolean supportsContext(Observation.Context context) {
+        return true;
+    }
+
+    private static String describe(Observation.Context context) {
+        StringBuilder description = new StringBuilder(context.getName());
+        KeyValue status = context.getLowCardinalityKeyValue("status");
+        if (status != null) {
+            description.append(" status=").append(status.getValue());
+        }
+        if (context.getError() != null) {
+            description.append(" error=").append(context.getError().getClass().getSimpleName());
+        }
+        return description.toString();
+    }
+
+    private static String breakdown(Timing timing) {
+        if (timing.stages.isEmpty()) {
+            return "no nested stages recorded";
+        }
+        return timing.stages.stream()
+                .sorted(Comparator.comparingLong(Stage::offset))
+                .map(stage -> "  ".repeat(stage.depth()) + stage.description()
+                        + " at +" + stage.offset() / 1_000_000 + " ms took " + stage.duration() / 1_000_000 + " ms")
+                .collect(Collectors.joining("\n", "\n", ""));
+    }
+
+    private static final class Timing {
+        private final long started;
+        private final Queue<Stage> stages = new ConcurrentLinkedQueue<>();
+
+        private Timing(long started) {
+            this.started = started;
+        }
+    }
+
+    private record Stage(int depth, String description, long offset, long duration) {
+    }
+}
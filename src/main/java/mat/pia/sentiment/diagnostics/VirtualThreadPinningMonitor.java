@@ -0,0 +1,93 @@
+package mat.pia.sentiment.diagnostics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Streams jdk.VirtualThreadPinned JFR events in-process. Each pin longer than the threshold
+ * is counted under jvm.threads.virtual.pinned, tagged with the section it happened in
+ * (transaction, jdbc or other), and logged with the first application frame.
+ */
+@Slf4j
+public class VirtualThreadPinningMonitor implements SmartLifecycle {
+
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+
+    private final MeterRegistry meterRegistry;
+    private final Duration threshold;
+
+    private RecordingStream stream;
+
+    public VirtualThreadPinningMonitor(MeterRegistry meterRegistry, Duration threshold) {
+        this.meterRegistry = meterRegistry;
+        this.threshold = threshold;
+    }
+
+    @Override
+    public synchronized void start() {
+        stream = new RecordingStream();
+        stream.enable(PINNED_EVENT).withThreshold(threshold).withStackTrace();
+        stream.onEvent(PINNED_EVENT, this::onPinned);
+        stream.startAsync();
+        log.info("Watching for virtual thread pinning longer than {} ms", threshold.toMillis());
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (stream != null) {
+            stream.close();
+            stream = null;
+        }
+    }
+
+    @Override
+    public synchronized boolean isRunning() {
+        return stream != null;
+    }
+
+    private void onPinned(RecordedEvent event) {
+        List<RecordedFrame> frames = event.getStackTrace() != null
+                ? event.getStackTrace().getFrames()
+                : List.of();
+        String section = section(frames);
+        meterRegistry.counter("jvm.threads.virtual.pinned", "section", section).increment();
+        log.warn("Virtual thread pinned for {} ms in {} section at {}",
+                event.getDuration().toMillis(), section, pinningSite(event.getStackTrace()));
+    }
+
+    private static String section(List<RecordedFrame> frames) {
+        boolean jdbc = false;
+        for (RecordedFrame frame : frames) {
+            String type = frame.getMethod().getType().getName();
+            if (type.startsWith("org.springframework.transaction.")) {
+                return "transaction";
+            }
+            jdbc |= type.startsWith("java.sql.")
+                    || type.startsWith("org.postgresql.")
+                    || type.startsWith("com.zaxxer.hikari.")
+                    || type.startsWith("org.hibernate.");
+        }
+        return jdbc ? "jdbc" : "other";
+    }
+
+    private static String pinningSite(RecordedStackTrace stackTrace) {
+        if (stackTrace == null) {
+            return "unknown";
+        }
+        return stackTrace.getFrames().stream()
+                .filter(frame -> frame.isJavaFrame())
+                .map(frame -> frame.getMethod().getType().getName() + "." + frame.getMethod().getName()
+                        + ":" + frame.getLineNumber())
+                .filter(site -> !site.startsWith("java.") && !site.startsWith("jdk."))
+                .findFirst()
+                .orElse("unknown");
+    }
+}
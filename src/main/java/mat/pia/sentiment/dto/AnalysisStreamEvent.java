@@ -0,0 +1,46 @@
+package mat.pia.sentiment.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import mat.pia.sentiment.model.SentimentResponse;
+
+/**
+ * One event of a streamed single analysis: PARTIAL events as soon as the sentiment and primary
+ * emotion labels are known, then a COMPLETE event with the full result.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class AnalysisStreamEvent {
+
+    public enum Type { PARTIAL, COMPLETE }
+
+    private Type type;
+    private SentimentResponse.SentimentType sentiment;
+    private SentimentResponse.EmotionType primaryEmotion;
+    private SentimentResponse result;
+
+    public static AnalysisStreamEvent partial(
+            SentimentResponse.SentimentType sentiment,
+            SentimentResponse.EmotionType primaryEmotion) {
+        return AnalysisStreamEvent.builder()
+                .type(Type.PARTIAL)
+                .sentiment(sentiment)
+                .primaryEmotion(primaryEmotion)
+                .build();
+    }
+
+    public static AnalysisStreamEvent complete(SentimentResponse result) {
+        return AnalysisStreamEvent.builder()
+                .type(Type.COMPLETE)
+                .sentiment(result.getSentiment())
+                .primaryEmotion(result.getPrimaryEmotion())
+                .result(result)
+                .build();
+    }
+}
@@ -0,0 +1,28 @@
+package mat.pia.sentiment.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import mat.pia.sentiment.model.SentimentResponse;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AnalyticsSummary {
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime from;
+
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime to;
+
+    private long total;
+    private double averageConfidence;
+    private Map<SentimentResponse.SentimentType, Long> sentimentCounts;
+    private Map<SentimentResponse.EmotionType, Long> emotionCounts;
+}
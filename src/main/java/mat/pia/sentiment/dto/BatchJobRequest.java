@@ -0,0 +1,23 @@
+package mat.pia.sentiment.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import mat.pia.sentiment.model.SentimentRequest;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchJobRequest {
+
+    @NotEmpty(message = "Batch job must contain at least one text entry")
+    @Size(max = 500000, message = "Batch job cannot exceed 500000 entries")
+    private List<@Valid SentimentRequest> requests;
+}
@@ -0,0 +1,32 @@
+package mat.pia.sentiment.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import mat.pia.sentiment.model.BatchJobItemEntity;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchJobResultPage {
+
+    private List<ItemResult> items;
+    private Integer nextCursor;
+    private boolean hasMore;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ItemResult {
+        private int index;
+        private String text;
+        private BatchJobItemEntity.Status status;
+        private String errorMessage;
+        private SentimentDTO result;
+    }
+}
@@ -0,0 +1,29 @@
+package mat.pia.sentiment.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import mat.pia.sentiment.model.BatchJobEntity;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchJobStatus {
+    private String id;
+    private BatchJobEntity.Status status;
+    private int totalItems;
+    private int succeededItems;
+    private int failedItems;
+    private String errorMessage;
+    
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime createdAt;
+    
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime completedAt;
+}
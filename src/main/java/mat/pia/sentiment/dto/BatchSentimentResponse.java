@@ -15,9 +15,21 @@ import java.util.List;
 @AllArgsConstructor
 public class BatchSentimentResponse {
 
+    /** Successful results, in request order. */
     private List<SentimentResponse> results;
+    /** Entries that produced no result, with their position in the request. */
+    private List<Failure> failures;
     private LocalDateTime timestamp;
     private BatchSummary summary;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Failure {
+        private int index;
+        private String error;
+    }
     
     @Data
     @Builder
@@ -26,6 +38,7 @@ public class BatchSentimentResponse {
     public static class BatchSummary {
         private int totalRequests;
         private int processedRequests;
+        private int failedRequests;
         private int positiveCount;
         private int negativeCount;
         private int neutralCount;
@@ -0,0 +1,41 @@
+package mat.pia.sentiment.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import mat.pia.sentiment.model.SentimentResponse;
+
+/**
+ * One event of a streamed batch: a RESULT or FAILED for each entry as soon as it completes, in
+ * completion order and tagged with the entry's position in the request, then a single closing
+ * SUMMARY.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BatchStreamEvent {
+
+    public enum Type { RESULT, FAILED, SUMMARY }
+
+    private Type type;
+    private Integer index;
+    private SentimentResponse result;
+    private String error;
+    private BatchSentimentResponse.BatchSummary summary;
+
+    public static BatchStreamEvent result(int index, SentimentResponse result) {
+        return BatchStreamEvent.builder().type(Type.RESULT).index(index).result(result).build();
+    }
+
+    public static BatchStreamEvent failed(int index, String error) {
+        return BatchStreamEvent.builder().type(Type.FAILED).index(index).error(error).build();
+    }
+
+    public static BatchStreamEvent summary(BatchSentimentResponse.BatchSummary summary) {
+        return BatchStreamEvent.builder().type(Type.SUMMARY).summary(summary).build();
+    }
+}
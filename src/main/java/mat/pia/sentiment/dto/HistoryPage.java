@@ -0,0 +1,18 @@
+package mat.pia.sentiment.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class HistoryPage {
+    private List<SentimentDTO> items;
+    private String nextCursor;
+    private boolean hasMore;
+}
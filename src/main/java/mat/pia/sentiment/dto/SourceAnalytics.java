@@ -0,0 +1,20 @@
+package mat.pia.sentiment.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import mat.pia.sentiment.model.SentimentResponse;
+
+import java.util.Map;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SourceAnalytics {
+    private String source;
+    private long total;
+    private double averageConfidence;
+    private Map<SentimentResponse.SentimentType, Long> sentimentCounts;
+}
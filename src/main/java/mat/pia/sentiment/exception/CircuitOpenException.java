@@ -0,0 +1,8 @@
+package mat.pia.sentiment.exception;
+
+public class CircuitOpenException extends ApiException {
+
+    public CircuitOpenException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,12 @@
+package mat.pia.sentiment.exception;
+
+public class MalformedResponseException extends ApiException {
+    
+    public MalformedResponseException(String message) {
+        super(message);
+    }
+    
+    public MalformedResponseException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,8 @@
+package mat.pia.sentiment.exception;
+
+public class ServiceBusyException extends RuntimeException {
+
+    public ServiceBusyException(String message) {
+        super(message);
+    }
+}
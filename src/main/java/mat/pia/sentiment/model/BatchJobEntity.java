@@ -0,0 +1,56 @@
+package mat.pia.sentiment.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "batch_jobs", indexes = {
+        @Index(name = "idx_batch_jobs_status", columnList = "status")
+})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchJobEntity {
+    
+    @Id
+    @Column(length = 36)
+    private String id;
+    
+    @Column(nullable = false, length = 20)
+    @Enumerated(EnumType.STRING)
+    private Status status;
+    
+    @Column(nullable = false)
+    private int totalItems;
+    
+    @Column(nullable = false)
+    private int succeededItems;
+    
+    @Column(nullable = false)
+    private int failedItems;
+    
+    @Column(length = 500)
+    private String errorMessage;
+    
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+    
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+    
+    @Column(name = "completed_at")
+    private LocalDateTime completedAt;
+    
+    public enum Status {
+        QUEUED,
+        SUBMITTED,
+        COMPLETED,
+        FAILED
+    }
+}
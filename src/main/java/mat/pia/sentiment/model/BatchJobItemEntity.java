@@ -0,0 +1,63 @@
+package mat.pia.sentiment.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "batch_job_items", indexes = {
+        @Index(name = "idx_batch_job_items_job", columnList = "job_id, item_index"),
+        @Index(name = "idx_batch_job_items_provider_batch", columnList = "provider_batch_id")
+})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchJobItemEntity {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "job_id", nullable = false, length = 36)
+    private String jobId;
+    
+    @Column(name = "item_index", nullable = false)
+    private int itemIndex;
+    
+    /** Same limit as sentiment_analyses.text, which the result is stored with. */
+    @Column(nullable = false, length = 2000)
+    private String text;
+    
+    @Column(length = 100)
+    private String source;
+    
+    @Column(nullable = false, length = 20)
+    @Enumerated(EnumType.STRING)
+    private Status status;
+    
+    @Column(name = "provider_batch_id", length = 100)
+    private String providerBatchId;
+    
+    /** When the item was handed to the provider; set together with SUBMITTING. */
+    @Column(name = "submitted_at")
+    private LocalDateTime submittedAt;
+    
+    @Column(name = "analysis_id")
+    private Long analysisId;
+    
+    @Column(length = 500)
+    private String errorMessage;
+    
+    public enum Status {
+        PENDING,
+        SUBMITTING,
+        SUBMITTED,
+        SUCCEEDED,
+        FAILED
+    }
+}
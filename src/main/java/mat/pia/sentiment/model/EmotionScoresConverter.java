@@ -0,0 +1,85 @@
+package mat.pia.sentiment.model;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Stores emotion scores as a packed byte array instead of a JSON string: a 16-bit mask of the
+ * emotions present, by ordinal, followed by one big-endian 16-bit fixed-point score in
+ * 1/10000ths for each set bit. Eight scores take 18 bytes; an empty map is stored as NULL.
+ * Reading a row is a few shifts per emotion, with no parsing or name lookups.
+ */
+@Converter
+public class EmotionScoresConverter implements AttributeConverter<Map<SentimentResponse.EmotionType, Double>, byte[]> {
+
+    private static final SentimentResponse.EmotionType[] EMOTIONS = SentimentResponse.EmotionType.values();
+    private static final double SCALE = 10_000;
+
+    @Override
+    public byte[] convertToDatabaseColumn(Map<SentimentResponse.EmotionType, Double> scores) {
+        return encode(scores);
+    }
+
+    @Override
+    public Map<SentimentResponse.EmotionType, Double> convertToEntityAttribute(byte[] column) {
+        return decode(column);
+    }
+
+    public static byte[] encode(Map<SentimentResponse.EmotionType, Double> scores) {
+        if (scores == null || scores.isEmpty()) {
+            return null;
+        }
+        int mask = 0;
+        for (SentimentResponse.EmotionType emotion : scores.keySet()) {
+            mask |= 1 << emotion.ordinal();
+        }
+        byte[] column = new byte[2 + 2 * Integer.bitCount(mask)];
+        column[0] = (byte) (mask >>> 8);
+        column[1] = (byte) mask;
+        int position = 2;
+        for (SentimentResponse.EmotionType emotion : EMOTIONS) {
+            if ((mask & 1 << emotion.ordinal()) != 0) {
+                short score = toFixedPoint(scores.get(emotion));
+                column[position++] = (byte) (score >>> 8);
+                column[position++] = (byte) score;
+            }
+        }
+        return column;
+    }
+
+    /**
+     * A zero mask with no scores. It decodes to an empty map like NULL does, but marks a row
+     * the legacy migration has already handled.
+     */
+    public static byte[] emptyMarker() {
+        return new byte[2];
+    }
+
+    public static Map<SentimentResponse.EmotionType, Double> decode(byte[] column) {
+        Map<SentimentResponse.EmotionType, Double> scores = new EnumMap<>(SentimentResponse.EmotionType.class);
+        if (column == null || column.length < 2) {
+            return scores;
+        }
+        int mask = (column[0] & 0xFF) << 8 | column[1] & 0xFF;
+        int position = 2;
+        for (int ordinal = 0; ordinal < EMOTIONS.length && position + 1 < column.length; ordinal++) {
+            if ((mask & 1 << ordinal) != 0) {
+                short score = (short) ((column[position] & 0xFF) << 8 | column[position + 1] & 0xFF);
+                scores.put(EMOTIONS[ordinal], score / SCALE);
+                position += 2;
+            }
+        }
+        return scores;
+    }
+
+    private static short toFixedPoint(Double score) {
+        if (score == null || score.isNaN()) {
+            return 0;
+        }
+        long scaled = Math.round(score * SCALE);
+        return (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, scaled));
+    }
+}
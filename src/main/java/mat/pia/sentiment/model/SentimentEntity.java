@@ -7,9 +7,19 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.time.LocalDateTime;
+import java.util.Map;
 
 @Entity
-@Table(name = "sentiment_analyses")
+@Table(name = "sentiment_analyses", indexes = {
+        @Index(name = "idx_sentiment_analyses_content_hash", columnList = "content_hash, created_at"),
+        @Index(name = "idx_sentiment_analyses_created_at", columnList = "created_at, id"),
+        @Index(name = "idx_sentiment_analyses_sentiment_emotion", columnList = "sentiment, primary_emotion, created_at"),
+        @Index(name = "idx_sentiment_analyses_emotion", columnList = "primary_emotion, created_at"),
+        @Index(name = "idx_sentiment_analyses_source", columnList = "source, created_at"),
+        // Covers the analytics aggregations over a time range, so they can be answered from the index alone
+        @Index(name = "idx_sentiment_analyses_analytics",
+                columnList = "created_at, sentiment, primary_emotion, source, confidence")
+})
 @Data
 @Builder
 @NoArgsConstructor
@@ -37,10 +47,11 @@ public class SentimentEntity {
     @Enumerated(EnumType.STRING)
     private SentimentResponse.EmotionType primaryEmotion;
     
-    @Column(length = 1000)
-    private String emotionDetails;
+    @Column(name = "emotion_scores")
+    @Convert(converter = EmotionScoresConverter.class)
+    private Map<SentimentResponse.EmotionType, Double> emotionScores;
     
-    @Column(nullable = false)
+    @Column(name = "created_at", nullable = false)
     private LocalDateTime createdAt;
     
     @Column(length = 100)
@@ -48,4 +59,7 @@ public class SentimentEntity {
     
     @Column(length = 50)
     private String apiProvider;
+    
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
 }
@@ -1,6 +1,8 @@
 package mat.pia.sentiment.model;
 
 import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.Size;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -11,7 +13,12 @@ import lombok.NoArgsConstructor;
 public class SentimentRequest {
     
     @NotBlank(message = "Text cannot be empty")
+    @Size(max = 2000, message = "Text cannot exceed 2000 characters")
     private String text;
     
     private String source;
+
+    /** Optional engine for this text (anthropic, lexicon, onnx or routing); defaults to sentiment.api.provider. */
+    @Pattern(regexp = "(?i)anthropic|lexicon|onnx|routing", message = "Engine must be one of anthropic, lexicon, onnx, routing")
+    private String engine;
 }
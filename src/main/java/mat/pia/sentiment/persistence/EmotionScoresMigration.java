@@ -0,0 +1,132 @@
+package mat.pia.sentiment.persistence;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import mat.pia.sentiment.model.EmotionScoresConverter;
+import mat.pia.sentiment.model.SentimentResponse;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Moves emotion scores of rows written before the packed emotion_scores column existed out of
+ * the legacy emotion_details JSON column. Runs once at startup when that column is still
+ * present, in keyset-ordered chunks, and optionally drops the column afterwards. Rows that
+ * already have packed scores are left alone, so an interrupted run simply resumes; rows with
+ * no readable scores get the empty marker so they are not scanned again. Runs once all beans
+ * exist, before the web server starts taking requests.
+ */
+@Component
+@ConditionalOnProperty(value = "sentiment.persistence.emotion-scores-migration.enabled", havingValue = "true", matchIfMissing = true)
+@Slf4j
+public class EmotionScoresMigration implements SmartInitializingSingleton {
+
+    private static final String TABLE = "sentiment_analyses";
+    private static final String LEGACY_COLUMN = "emotion_details";
+
+    private static final String SELECT_SQL =
+            "SELECT id, emotion_details FROM sentiment_analyses " +
+            "WHERE id > ? AND emotion_scores IS NULL AND emotion_details IS NOT NULL ORDER BY id LIMIT ?";
+    private static final String UPDATE_SQL = "UPDATE sentiment_analyses SET emotion_scores = ? WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final int chunkSize;
+    private final boolean dropLegacyColumn;
+
+    public EmotionScoresMigration(
+            JdbcTemplate jdbcTemplate,
+            ObjectMapper objectMapper,
+            @Value("${sentiment.persistence.emotion-scores-migration.chunk-size:1000}") int chunkSize,
+            @Value("${sentiment.persistence.emotion-scores-migration.drop-legacy-column:false}") boolean dropLegacyColumn) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.chunkSize = chunkSize;
+        this.dropLegacyColumn = dropLegacyColumn;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        try {
+            if (!legacyColumnExists()) {
+                return;
+            }
+            long start = System.nanoTime();
+            long migrated = 0;
+            long lastId = 0;
+            List<LegacyRow> rows;
+            while (!(rows = jdbcTemplate.query(SELECT_SQL,
+                    (rs, rowNum) -> new LegacyRow(rs.getLong(1), rs.getString(2)), lastId, chunkSize)).isEmpty()) {
+                jdbcTemplate.batchUpdate(UPDATE_SQL, rows, rows.size(), (ps, row) -> {
+                    byte[] packed = EmotionScoresConverter.encode(parseLegacy(row.emotionDetails()));
+                    ps.setBytes(1, packed != null ? packed : EmotionScoresConverter.emptyMarker());
+                    ps.setLong(2, row.id());
+                });
+                lastId = rows.get(rows.size() - 1).id();
+                migrated += rows.size();
+            }
+            log.info("Migrated emotion scores of {} rows to the packed column in {} ms",
+                    migrated, (System.nanoTime() - start) / 1_000_000);
+
+            if (dropLegacyColumn) {
+                jdbcTemplate.execute("ALTER TABLE " + TABLE + " DROP COLUMN " + LEGACY_COLUMN);
+                log.info("Dropped legacy column {}.{}", TABLE, LEGACY_COLUMN);
+            }
+        } catch (RuntimeException e) {
+            // Unmigrated rows read back with empty scores; never block startup on it
+            log.error("Emotion scores migration did not finish", e);
+        }
+    }
+
+    private boolean legacyColumnExists() {
+        return Boolean.TRUE.equals(jdbcTemplate.execute((ConnectionCallback<Boolean>) connection -> {
+            DatabaseMetaData metaData = connection.getMetaData();
+            // Unquoted identifiers are stored lower case by PostgreSQL and upper case by H2
+            for (String table : List.of(TABLE, TABLE.toUpperCase())) {
+                try (ResultSet columns = metaData.getColumns(null, null, table, null)) {
+                    while (columns.next()) {
+                        if (LEGACY_COLUMN.equalsIgnoreCase(columns.getString("COLUMN_NAME"))) {
+                            return true;
+                        }
+                    }
+                }
+            }
+            return false;
+        }));
+    }
+
+    private Map<SentimentResponse.EmotionType, Double> parseLegacy(String emotionDetails) {
+        Map<SentimentResponse.EmotionType, Double> scores = new EnumMap<>(SentimentResponse.EmotionType.class);
+        try {
+            Map<String, Double> rawMap = objectMapper.readValue(emotionDetails, new TypeReference<>() {
+            });
+            if (rawMap == null) {
+                return scores;
+            }
+            rawMap.forEach((key, value) -> {
+                try {
+                    scores.put(SentimentResponse.EmotionType.valueOf(key), value);
+                } catch (IllegalArgumentException e) {
+                    log.warn("Unknown emotion type in stored data: {}", key);
+                }
+            });
+        } catch (JsonProcessingException e) {
+            log.warn("Skipping unreadable emotion details: {}", e.getOriginalMessage());
+        }
+        return scores;
+    }
+
+    private record LegacyRow(long id, String emotionDetails) {
+    }
+}
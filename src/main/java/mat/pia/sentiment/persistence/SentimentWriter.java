@@ -0,0 +1,291 @@
+package mat.pia.sentiment.persistence;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import mat.pia.sentiment.exception.ServiceBusyException;
+import mat.pia.sentiment.model.EmotionScoresConverter;
+import mat.pia.sentiment.model.SentimentEntity;
+import mat.pia.sentiment.repository.SentimentRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Persists analysis results off the request path. Entities are queued and a single flusher
+ * thread writes them to sentiment_analyses in JDBC batches. When the queue stays full for
+ * longer than the offer timeout the caller writes the row itself, which throttles producers
+ * to the speed of the database instead of dropping results. Queued rows can be looked up by
+ * content hash until they are written. Remaining rows are drained on shutdown, and writes
+ * after that are rejected.
+ */
+@Component
+@Slf4j
+public class SentimentWriter implements SmartLifecycle {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO sentiment_analyses (text, sentiment, confidence, analysis, primary_emotion, " +
+            "emotion_scores, created_at, source, api_provider, content_hash) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final SentimentRepository sentimentRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean writeBehind;
+    private final int batchSize;
+    private final Duration flushInterval;
+    private final Duration offerTimeout;
+    private final BlockingQueue<SentimentEntity> queue;
+    private final Timer flushTimer;
+    private final DistributionSummary flushSizes;
+    private final Timer directWriteTimer;
+    /** Latest queued row per content hash, so dedup lookups see rows that are not written yet. */
+    private final Map<String, SentimentEntity> pending = new ConcurrentHashMap<>();
+
+    private volatile boolean running;
+    private volatile boolean stopped;
+    private Thread flusher;
+
+    public SentimentWriter(
+            SentimentRepository sentimentRepository,
+            JdbcTemplate jdbcTemplate,
+            MeterRegistry meterRegistry,
+            @Value("${sentiment.persistence.write-behind.enabled:true}") boolean writeBehind,
+            @Value("${sentiment.persistence.write-behind.queue-capacity:10000}") int queueCapacity,
+            @Value("${sentiment.persistence.write-behind.batch-size:200}") int batchSize,
+            @Value("${sentiment.persistence.write-behind.flush-interval:PT0.2S}") Duration flushInterval,
+            @Value("${sentiment.persistence.write-behind.offer-timeout:PT1S}") Duration offerTimeout) {
+        this.sentimentRepository = sentimentRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.writeBehind = writeBehind;
+        this.batchSize = batchSize;
+        this.flushInterval = flushInterval;
+        this.offerTimeout = offerTimeout;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        Gauge.builder("sentiment.persistence.queue.size", queue, BlockingQueue::size)
+                .description("Analysis results waiting to be written")
+                .register(meterRegistry);
+        this.flushTimer = Timer.builder("sentiment.persistence.flush")
+                .description("Time to write one write-behind batch")
+                .register(meterRegistry);
+        this.flushSizes = DistributionSummary.builder("sentiment.persistence.flush.size")
+                .description("Analysis results per write-behind batch")
+                .register(meterRegistry);
+        this.directWriteTimer = Timer.builder("sentiment.persistence.direct")
+                .description("Time to persist results on the caller thread")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Queues the entity, waiting up to the offer timeout for room, and writes it on the caller
+     * thread when the queue stays full.
+     *
+     * @throws ServiceBusyException if the writer has been stopped
+     */
+    public void write(SentimentEntity entity) {
+        checkNotStopped();
+        if (!writeBehind || !running) {
+            directWriteTimer.record(() -> sentimentRepository.save(entity));
+            return;
+        }
+        try {
+            if (!enqueue(entity, offerTimeout.toMillis())) {
+                log.warn("Write-behind queue is full, persisting on the caller thread");
+                directWriteTimer.record(() -> sentimentRepository.save(entity));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            directWriteTimer.record(() -> sentimentRepository.save(entity));
+        }
+    }
+
+    public void writeAll(List<SentimentEntity> entities) {
+        checkNotStopped();
+        if (!writeBehind || !running) {
+            directWriteTimer.record(() -> sentimentRepository.saveAll(entities));
+            return;
+        }
+        entities.forEach(this::write);
+    }
+
+    /**
+     * Non-blocking variant for reactive callers: queues the entity when there is room and
+     * otherwise saves it directly on a bounded elastic thread, without waiting for the queue.
+     * Fails with {@link ServiceBusyException} once the writer has been stopped.
+     */
+    public Mono<Void> writeAsync(SentimentEntity entity) {
+        return writeAllAsync(List.of(entity));
+    }
+
+    public Mono<Void> writeAllAsync(List<SentimentEntity> entities) {
+        return Mono.defer(() -> {
+            checkNotStopped();
+            List<SentimentEntity> overflow = new ArrayList<>();
+            for (SentimentEntity entity : entities) {
+                if (!writeBehind || !running || !enqueueNow(entity)) {
+                    overflow.add(entity);
+                }
+            }
+            if (overflow.isEmpty()) {
+                return Mono.empty();
+            }
+            return Mono.fromRunnable(() -> directWriteTimer.record(() -> sentimentRepository.saveAll(overflow)))
+                    .subscribeOn(Schedulers.boundedElastic())
+                    .then();
+        });
+    }
+
+    /** The most recent row for the content hash that is queued but not yet written. */
+    public Optional<SentimentEntity> findPending(String contentHash) {
+        return contentHash == null ? Optional.empty() : Optional.ofNullable(pending.get(contentHash));
+    }
+
+    private boolean enqueueNow(SentimentEntity entity) {
+        try {
+            return enqueue(entity, 0);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private boolean enqueue(SentimentEntity entity, long timeoutMillis) throws InterruptedException {
+        if (entity.getContentHash() != null) {
+            pending.put(entity.getContentHash(), entity);
+        }
+        if (!queue.offer(entity, timeoutMillis, TimeUnit.MILLISECONDS)) {
+            unindex(entity);
+            return false;
+        }
+        // stop() may have drained the queue between the check and the offer; take the row back
+        if (stopped && queue.remove(entity)) {
+            unindex(entity);
+            throw stoppedException();
+        }
+        return true;
+    }
+
+    private void unindex(SentimentEntity entity) {
+        if (entity.getContentHash() != null) {
+            pending.remove(entity.getContentHash(), entity);
+        }
+    }
+
+    private void checkNotStopped() {
+        if (stopped) {
+            throw stoppedException();
+        }
+    }
+
+    private static ServiceBusyException stoppedException() {
+        return new ServiceBusyException("Analysis results can no longer be stored, the application is shutting down");
+    }
+
+    @Override
+    public void start() {
+        if (!writeBehind) {
+            return;
+        }
+        running = true;
+        flusher = new Thread(this::flushLoop, "sentiment-write-behind");
+        flusher.start();
+        log.info("Write-behind persistence started (batchSize={}, flushInterval={})", batchSize, flushInterval);
+    }
+
+    @Override
+    public void stop() {
+        if (flusher == null) {
+            return;
+        }
+        stopped = true;
+        running = false;
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Anything offered after the flusher saw running=false
+        flushRemaining();
+        log.info("Write-behind persistence stopped");
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void flushLoop() {
+        List<SentimentEntity> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                SentimentEntity first = queue.poll(flushInterval.toMillis(), TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                flush(batch);
+                batch.clear();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        flushRemaining();
+    }
+
+    private void flushRemaining() {
+        List<SentimentEntity> batch = new ArrayList<>(batchSize);
+        while (queue.drainTo(batch, batchSize) > 0) {
+            flush(batch);
+            batch.clear();
+        }
+    }
+
+    private void flush(List<SentimentEntity> batch) {
+        flushSizes.record(batch.size());
+        Timer.Sample sample = Timer.start();
+        try {
+            jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(), (ps, entity) -> {
+                ps.setString(1, entity.getText());
+                ps.setString(2, entity.getSentiment().name());
+                ps.setDouble(3, entity.getConfidence());
+                ps.setString(4, entity.getAnalysis());
+                ps.setString(5, entity.getPrimaryEmotion() != null ? entity.getPrimaryEmotion().name() : null);
+                ps.setBytes(6, EmotionScoresConverter.encode(entity.getEmotionScores()));
+                ps.setTimestamp(7, Timestamp.valueOf(entity.getCreatedAt()));
+                ps.setString(8, entity.getSource());
+                ps.setString(9, entity.getApiProvider());
+                ps.setString(10, entity.getContentHash());
+            });
+            log.debug("Flushed {} analysis results", batch.size());
+        } catch (Exception e) {
+            log.error("Batch insert of {} analysis results failed, retrying row by row", batch.size(), e);
+            for (SentimentEntity entity : batch) {
+                try {
+                    sentimentRepository.save(entity);
+                } catch (Exception rowError) {
+                    log.error("Dropping analysis result that could not be persisted: {}", rowError.getMessage());
+                }
+            }
+        } finally {
+            batch.forEach(this::unindex);
+            sample.stop(flushTimer);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package mat.pia.sentiment.repository;
+
+import mat.pia.sentiment.model.BatchJobItemEntity;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface BatchJobItemRepository extends JpaRepository<BatchJobItemEntity, Long> {
+    
+    List<BatchJobItemEntity> findByJobIdAndStatusOrderByItemIndex(
+        String jobId, 
+        BatchJobItemEntity.Status status, 
+        Limit limit);
+    
+    List<BatchJobItemEntity> findByJobIdAndItemIndexGreaterThanOrderByItemIndex(
+        String jobId, 
+        int itemIndex, 
+        Limit limit);
+    
+    List<BatchJobItemEntity> findByJobIdAndStatusAndSubmittedAtBefore(
+        String jobId, 
+        BatchJobItemEntity.Status status, 
+        LocalDateTime submittedBefore);
+    
+    long countByJobIdAndStatus(String jobId, BatchJobItemEntity.Status status);
+    
+    @Query("SELECT DISTINCT i.providerBatchId FROM BatchJobItemEntity i " +
+           "WHERE i.jobId = :jobId AND i.status = :status AND i.providerBatchId IS NOT NULL")
+    List<String> findProviderBatchIds(
+        @Param("jobId") String jobId, 
+        @Param("status") BatchJobItemEntity.Status status);
+}
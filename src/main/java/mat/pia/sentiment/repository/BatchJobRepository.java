@@ -0,0 +1,13 @@
+package mat.pia.sentiment.repository;
+
+import mat.pia.sentiment.model.BatchJobEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface BatchJobRepository extends JpaRepository<BatchJobEntity, String> {
+    
+    List<BatchJobEntity> findByStatusOrderByCreatedAt(BatchJobEntity.Status status);
+}
@@ -3,19 +3,78 @@ package mat.pia.sentiment.repository;
 import mat.pia.sentiment.model.SentimentEntity;
 import mat.pia.sentiment.model.SentimentResponse;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
-public interface SentimentRepository extends JpaRepository<SentimentEntity, Long> {
+public interface SentimentRepository extends JpaRepository<SentimentEntity, Long>, JpaSpecificationExecutor<SentimentEntity> {
     
-    List<SentimentEntity> findBySentiment(SentimentResponse.SentimentType sentiment);
-    
-    List<SentimentEntity> findByPrimaryEmotion(SentimentResponse.EmotionType primaryEmotion);
-    
-    List<SentimentEntity> findBySentimentAndPrimaryEmotion(
-        SentimentResponse.SentimentType sentiment, 
-        SentimentResponse.EmotionType primaryEmotion);
+    Optional<SentimentEntity> findFirstByContentHashAndCreatedAtAfterOrderByCreatedAtDesc(
+        String contentHash, 
+        LocalDateTime createdAfter);
+
+    @Query("SELECT e.sentiment AS sentiment, COUNT(e) AS count, AVG(e.confidence) AS averageConfidence " +
+           "FROM SentimentEntity e WHERE e.createdAt >= :from AND e.createdAt < :to GROUP BY e.sentiment")
+    List<SentimentAggregate> aggregateBySentiment(
+        @Param("from") LocalDateTime from,
+        @Param("to") LocalDateTime to);
+
+    @Query("SELECT e.primaryEmotion AS emotion, COUNT(e) AS count " +
+           "FROM SentimentEntity e WHERE e.createdAt >= :from AND e.createdAt < :to GROUP BY e.primaryEmotion")
+    List<EmotionCount> countByPrimaryEmotion(
+        @Param("from") LocalDateTime from,
+        @Param("to") LocalDateTime to);
+
+    @Query("SELECT e.source AS source, e.sentiment AS sentiment, COUNT(e) AS count, AVG(e.confidence) AS averageConfidence " +
+           "FROM SentimentEntity e WHERE e.createdAt >= :from AND e.createdAt < :to GROUP BY e.source, e.sentiment")
+    List<SourceAggregate> aggregateBySourceAndSentiment(
+        @Param("from") LocalDateTime from,
+        @Param("to") LocalDateTime to);
+
+    // DATE_TRUNC is understood by both PostgreSQL and H2; aliases are quoted to keep their case
+    @Query(value = "SELECT DATE_TRUNC('hour', created_at) AS \"bucket\", sentiment AS \"sentiment\", " +
+                   "COUNT(*) AS \"count\", AVG(confidence) AS \"averageConfidence\" FROM sentiment_analyses " +
+                   "WHERE created_at >= :from AND created_at < :to " +
+                   "GROUP BY DATE_TRUNC('hour', created_at), sentiment ORDER BY \"bucket\"",
+           nativeQuery = true)
+    List<BucketAggregate> aggregateByHourAndSentiment(
+        @Param("from") LocalDateTime from,
+        @Param("to") LocalDateTime to);
+
+    @Query(value = "SELECT DATE_TRUNC('day', created_at) AS \"bucket\", sentiment AS \"sentiment\", " +
+                   "COUNT(*) AS \"count\", AVG(confidence) AS \"averageConfidence\" FROM sentiment_analyses " +
+                   "WHERE created_at >= :from AND created_at < :to " +
+                   "GROUP BY DATE_TRUNC('day', created_at), sentiment ORDER BY \"bucket\"",
+           nativeQuery = true)
+    List<BucketAggregate> aggregateByDayAndSentiment(
+        @Param("from") LocalDateTime from,
+        @Param("to") LocalDateTime to);
+
+    interface SentimentAggregate {
+        SentimentResponse.SentimentType getSentiment();
+
+        long getCount();
+
+        double getAverageConfidence();
+    }
+
+    interface EmotionCount {
+        SentimentResponse.EmotionType getEmotion();
+
+        long getCount();
+    }
+
+    interface SourceAggregate extends SentimentAggregate {
+        String getSource();
+    }
+
+    interface BucketAggregate extends SentimentAggregate {
+        LocalDateTime getBucket();
+    }
 }
@@ -0,0 +1,35 @@
+package mat.pia.sentiment.repository;
+
+import mat.pia.sentiment.model.SentimentEntity;
+import mat.pia.sentiment.model.SentimentResponse;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.LocalDateTime;
+
+public final class SentimentSpecifications {
+
+    /** History is read newest first; id breaks ties between rows created in the same instant. */
+    public static final Sort HISTORY_ORDER = Sort.by(Sort.Direction.DESC, "createdAt", "id");
+
+    private SentimentSpecifications() {
+    }
+
+    public static Specification<SentimentEntity> hasSentiment(SentimentResponse.SentimentType sentiment) {
+        return sentiment == null ? null : (root, query, cb) -> cb.equal(root.get("sentiment"), sentiment);
+    }
+
+    public static Specification<SentimentEntity> hasPrimaryEmotion(SentimentResponse.EmotionType emotion) {
+        return emotion == null ? null : (root, query, cb) -> cb.equal(root.get("primaryEmotion"), emotion);
+    }
+
+    /** Keyset predicate: rows strictly after (createdAt, id) in {@link #HISTORY_ORDER}. */
+    public static Specification<SentimentEntity> after(LocalDateTime createdAt, Long id) {
+        if (createdAt == null || id == null) {
+            return null;
+        }
+        return (root, query, cb) -> cb.or(
+                cb.lessThan(root.get("createdAt"), createdAt),
+                cb.and(cb.equal(root.get("createdAt"), createdAt), cb.lessThan(root.get("id"), id)));
+    }
+}
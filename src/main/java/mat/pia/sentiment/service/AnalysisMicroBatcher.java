@@ -0,0 +1,151 @@
+package mat.pia.sentiment.service;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import mat.pia.sentiment.exception.ServiceBusyException;
+import mat.pia.sentiment.model.SentimentResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.util.concurrent.Queues;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Collects single analyses that need a Claude call for up to max-wait or max-items, whichever
+ * comes first, and sends them together through {@link PromptPacker}. Each caller gets its own
+ * result or error. Opt-in with sentiment.microbatch.enabled; the max-wait is the latency a
+ * request can pay in exchange for sharing a call.
+ */
+@Component
+@Slf4j
+public class AnalysisMicroBatcher implements SmartLifecycle {
+
+    private final PromptPacker promptPacker;
+    @Getter
+    private final boolean enabled;
+    private final int maxItems;
+    private final Duration maxWait;
+    private final int concurrency;
+    private final Sinks.Many<Pending> sink;
+    private final AtomicInteger queued = new AtomicInteger();
+    private final DistributionSummary batchSizes;
+    private final Timer waitTimer;
+
+    private Disposable subscription;
+
+    public AnalysisMicroBatcher(
+            PromptPacker promptPacker,
+            MeterRegistry meterRegistry,
+            @Value("${sentiment.microbatch.enabled:false}") boolean enabled,
+            @Value("${sentiment.microbatch.max-items:20}") int maxItems,
+            @Value("${sentiment.microbatch.max-wait:PT0.025S}") Duration maxWait,
+            @Value("${sentiment.microbatch.queue-capacity:10000}") int queueCapacity,
+            @Value("${sentiment.microbatch.concurrency:4}") int concurrency) {
+        this.promptPacker = promptPacker;
+        this.enabled = enabled;
+        this.maxItems = maxItems;
+        this.maxWait = maxWait;
+        this.concurrency = concurrency;
+        this.sink = Sinks.many().unicast().onBackpressureBuffer(Queues.<Pending>get(queueCapacity).get());
+
+        Gauge.builder("sentiment.microbatch.queue.depth", queued, AtomicInteger::get)
+                .description("Analyses waiting to be dispatched in a micro-batch")
+                .register(meterRegistry);
+        this.batchSizes = DistributionSummary.builder("sentiment.microbatch.size")
+                .description("Analyses dispatched per micro-batch")
+                .register(meterRegistry);
+        this.waitTimer = Timer.builder("sentiment.microbatch.wait")
+                .description("Time an analysis waited for its micro-batch")
+                .register(meterRegistry);
+    }
+
+    /** Queues the text for the next micro-batch; the answer says whether it came from a packed prompt. */
+    public Mono<Answer> submit(String text) {
+        return Mono.defer(() -> {
+            Pending pending = new Pending(text, System.nanoTime(), Sinks.one());
+            Sinks.EmitResult result;
+            // Concurrent callers race for the sink; retry until this emission is serialized
+            while ((result = sink.tryEmitNext(pending)) == Sinks.EmitResult.FAIL_NON_SERIALIZED) {
+                Thread.onSpinWait();
+            }
+            if (result.isFailure()) {
+                return Mono.error(new ServiceBusyException("Micro-batch queue is full"));
+            }
+            queued.incrementAndGet();
+            return pending.result().asMono();
+        });
+    }
+
+    @Override
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        // Fair backpressure holds batches back while all dispatch slots are busy
+        subscription = sink.asFlux()
+                .bufferTimeout(maxItems, maxWait, true)
+                .flatMap(this::dispatch, concurrency)
+                .subscribe();
+        log.info("Micro-batching single analyses (maxItems={}, maxWait={} ms, concurrency={})",
+                maxItems, maxWait.toMillis(), concurrency);
+    }
+
+    @Override
+    public void stop() {
+        if (subscription != null) {
+            sink.tryEmitComplete();
+            subscription = null;
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return subscription != null;
+    }
+
+    private Mono<Void> dispatch(List<Pending> batch) {
+        queued.addAndGet(-batch.size());
+        batchSizes.record(batch.size());
+        long now = System.nanoTime();
+        batch.forEach(pending -> waitTimer.record(now - pending.enqueuedAt(), TimeUnit.NANOSECONDS));
+
+        List<String> texts = batch.stream().map(Pending::text).collect(Collectors.toList());
+        return Flux.fromIterable(promptPacker.plan(texts))
+                .flatMap(unit -> {
+                    List<Pending> members = unit.stream().map(batch::get).collect(Collectors.toList());
+                    return promptPacker.analyze(members.stream().map(Pending::text).collect(Collectors.toList()))
+                            .doOnNext(responses -> {
+                                boolean packed = members.size() > 1;
+                                for (int i = 0; i < members.size(); i++) {
+                                    members.get(i).result().tryEmitValue(new Answer(responses.get(i), packed));
+                                }
+                            })
+                            .doOnError(e -> members.forEach(pending -> pending.result().tryEmitError(e)))
+                            .onErrorResume(e -> Mono.empty());
+                })
+                .then();
+    }
+
+    /**
+     * A caller's result. Packed answers were produced by the packed prompt and must not be cached
+     * or stored as answers to the single-text prompt.
+     */
+    public record Answer(SentimentResponse response, boolean packed) {
+    }
+
+    private record Pending(String text, long enqueuedAt, Sinks.One<Answer> result) {
+    }
+}
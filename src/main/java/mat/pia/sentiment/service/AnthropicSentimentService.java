@@ -1,323 +1,501 @@
 package mat.pia.sentiment.service;
 
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ObjectNode;
+import mat.pia.sentiment.cache.SemanticSentimentCache;
+import mat.pia.sentiment.cache.SentimentResultCache;
+import mat.pia.sentiment.client.AnthropicClient;
+import mat.pia.sentiment.client.AnthropicMessageCodec;
+import mat.pia.sentiment.client.StreamingSentimentParser;
+import mat.pia.sentiment.diagnostics.PipelineObservations;
+import mat.pia.sentiment.dto.AnalysisStreamEvent;
 import mat.pia.sentiment.dto.BatchSentimentRequest;
 import mat.pia.sentiment.dto.BatchSentimentResponse;
+import mat.pia.sentiment.dto.BatchStreamEvent;
+import mat.pia.sentiment.dto.HistoryPage;
 import mat.pia.sentiment.dto.SentimentDTO;
 import mat.pia.sentiment.exception.ApiException;
 import mat.pia.sentiment.exception.ResourceNotFoundException;
+import mat.pia.sentiment.exception.ServiceBusyException;
 import mat.pia.sentiment.model.SentimentEntity;
 import mat.pia.sentiment.model.SentimentRequest;
 import mat.pia.sentiment.model.SentimentResponse;
+import mat.pia.sentiment.persistence.SentimentWriter;
 import mat.pia.sentiment.repository.SentimentRepository;
+import mat.pia.sentiment.repository.SentimentSpecifications;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import io.micrometer.common.KeyValues;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.MediaType;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 @Service
 @Slf4j
-public class AnthropicSentimentService implements SentimentService {
+public class AnthropicSentimentService implements SentimentService, ReactiveSentimentService {
 
-    private final WebClient webClient;
+    private final AnthropicClient anthropicClient;
+    private final PromptPacker promptPacker;
+    private final AnalysisMicroBatcher microBatcher;
     private final SentimentRepository sentimentRepository;
-    private final ObjectMapper objectMapper;
+    private final AnthropicMessageCodec messageCodec;
+    private final SentimentMapper sentimentMapper;
+    private final SentimentResultCache resultCache;
+    private final SemanticSentimentCache semanticCache;
+    private final SentimentWriter sentimentWriter;
+    private final Counter coalescedCalls;
+    private final PipelineObservations observations;
 
-    @Value("${anthropic.model:claude-3-haiku-20240307}")
-    private String model;
+    /** Claude calls in progress by content key, shared by concurrent requests for the same text. */
+    private final Map<String, Mono<SentimentResponse>> inFlight = new ConcurrentHashMap<>();
 
-    @Value("${anthropic.max-tokens:1000}")
-    private int maxTokens;
+    @Value("${anthropic.batch.concurrency:4}")
+    private int batchConcurrency;
+
+    @Value("${sentiment.dedup.enabled:true}")
+    private boolean dedupEnabled;
+
+    @Value("${sentiment.dedup.freshness:P30D}")
+    private Duration dedupFreshness;
+
+    @Value("${sentiment.coalescing.enabled:true}")
+    private boolean coalescingEnabled;
+
+    @Value("${sentiment.history.max-page-size:200}")
+    private int maxPageSize;
+
+    @Value("${sentiment.history.list-limit:1000}")
+    private int listLimit;
+
+    @PersistenceContext
+    private EntityManager entityManager;
 
     @Autowired
     public AnthropicSentimentService(
-            @Qualifier("anthropicWebClient") WebClient webClient,
+            AnthropicClient anthropicClient,
+            PromptPacker promptPacker,
+            AnalysisMicroBatcher microBatcher,
             SentimentRepository sentimentRepository,
-            ObjectMapper objectMapper) {
-        this.webClient = webClient;
+            AnthropicMessageCodec messageCodec,
+            SentimentMapper sentimentMapper,
+            SentimentResultCache resultCache,
+            SemanticSentimentCache semanticCache,
+            SentimentWriter sentimentWriter,
+            MeterRegistry meterRegistry,
+            PipelineObservations observations) {
+        this.anthropicClient = anthropicClient;
+        this.promptPacker = promptPacker;
+        this.microBatcher = microBatcher;
         this.sentimentRepository = sentimentRepository;
-        this.objectMapper = objectMapper;
+        this.messageCodec = messageCodec;
+        this.sentimentMapper = sentimentMapper;
+        this.resultCache = resultCache;
+        this.semanticCache = semanticCache;
+        this.sentimentWriter = sentimentWriter;
+        this.coalescedCalls = meterRegistry.counter("anthropic.calls.coalesced");
+        this.observations = observations;
     }
 
-    @Transactional
     @Override
     public SentimentResponse analyzeSentiment(SentimentRequest request) {
+        return analyzeAsync(request).block();
+    }
+
+    @Override
+    public Mono<SentimentResponse> analyzeAsync(SentimentRequest request) {
         log.info("Analyzing sentiment using Anthropic Claude for text: {}",
             request.getText().substring(0, Math.min(50, request.getText().length())));
 
-        try {
-            ObjectNode requestBody = objectMapper.createObjectNode();
-            requestBody.put("model", model);
-            requestBody.put("max_tokens", maxTokens);
-            
-            requestBody.put("system",
-                "You are a sentiment and emotion analysis expert. Analyze the text and provide:\n" +
-                "1. Overall sentiment (POSITIVE, NEGATIVE, or NEUTRAL)\n" +
-                "2. Primary emotion (choose one: JOY, SADNESS, ANGER, FEAR, SURPRISE, DISGUST, TRUST, ANTICIPATION, or NONE)\n" +
-                "3. Emotion scores - rate each emotion (JOY, SADNESS, ANGER, FEAR, SURPRISE, DISGUST, TRUST, ANTICIPATION) from 0-1\n" +
-                "4. Confidence score for overall sentiment (0-1)\n" +
-                "5. Brief analysis explaining the emotional tone\n\n" +
-                "Format response as JSON with fields: sentiment, primaryEmotion, emotionScores, confidence, analysis.");
-
-            ObjectNode userNode = objectMapper.createObjectNode();
-            userNode.put("role", "user");
-            userNode.put("content", request.getText());
-
-            // Add only the user message to the messages array
-            requestBody.set("messages", objectMapper.createArrayNode().add(userNode));
-
-            String responseJson = webClient.post()
-                    .contentType(MediaType.APPLICATION_JSON)
-                    .bodyValue(requestBody)
-                    .retrieve()
-                    .bodyToMono(String.class)
-                    .block();
-
-            JsonNode responseNode = objectMapper.readTree(responseJson);
-            String content = responseNode.path("content").path(0).path("text").asText();
-
-            String jsonContent = extractJsonFromContent(content);
-            JsonNode contentNode = objectMapper.readTree(jsonContent);
-
-            String sentimentStr = contentNode.path("sentiment").asText("NEUTRAL");
-            String primaryEmotionStr = contentNode.path("primaryEmotion").asText("NONE");
-            double confidence = contentNode.path("confidence").asDouble(0.5);
-            String analysis = contentNode.path("analysis").asText("No analysis provided");
-            
-            Map<SentimentResponse.EmotionType, Double> emotionScores = new HashMap<>();
-            JsonNode emotionScoresNode = contentNode.path("emotionScores");
-            
-            if (emotionScoresNode.isObject()) {
-                for (SentimentResponse.EmotionType emotion : SentimentResponse.EmotionType.values()) {
-                    if (emotion != SentimentResponse.EmotionType.NONE) {
-                        double score = emotionScoresNode.path(emotion.name()).asDouble(0.0);
-                        emotionScores.put(emotion, score);
-                    }
-                }
-            }
+        // A hit reuses an analysis that is already stored, so only Claude answers add a row
+        return observations.observe("sentiment.cache.lookup", KeyValues.empty(), lookupCached(request))
+                .switchIfEmpty(Mono.defer(() -> analyzeOnce(request)))
+                .onErrorMap(AnthropicSentimentService::isUnmapped, this::toApiException);
+    }
 
-            SentimentResponse.SentimentType sentimentType;
-            try {
-                sentimentType = SentimentResponse.SentimentType.valueOf(sentimentStr.toUpperCase());
-            } catch (IllegalArgumentException e) {
-                log.warn("Invalid sentiment type received: {}, defaulting to NEUTRAL", sentimentStr);
-                sentimentType = SentimentResponse.SentimentType.NEUTRAL;
-            }
-            
-            SentimentResponse.EmotionType primaryEmotion;
-            try {
-                primaryEmotion = SentimentResponse.EmotionType.valueOf(primaryEmotionStr.toUpperCase());
-            } catch (IllegalArgumentException e) {
-                log.warn("Invalid emotion type received: {}, defaulting to NONE", primaryEmotionStr);
-                primaryEmotion = SentimentResponse.EmotionType.NONE;
-            }
+    @Override
+    public Flux<AnalysisStreamEvent> analyzeStreamAsync(SentimentRequest request) {
+        log.info("Streaming sentiment analysis using Anthropic Claude for text: {}",
+            request.getText().substring(0, Math.min(50, request.getText().length())));
 
-            SentimentResponse response = SentimentResponse.builder()
-                    .text(request.getText())
-                    .sentiment(sentimentType)
-                    .primaryEmotion(primaryEmotion)
-                    .emotionScores(emotionScores)
-                    .confidence(confidence)
-                    .analysis(analysis)
-                    .timestamp(LocalDateTime.now())
-                    .build();
-
-            String emotionDetailsJson = objectMapper.writeValueAsString(emotionScores);
-            
-            SentimentEntity entity = SentimentEntity.builder()
-                    .text(request.getText())
-                    .sentiment(sentimentType)
-                    .primaryEmotion(primaryEmotion)
-                    .emotionDetails(emotionDetailsJson)
-                    .confidence(confidence)
-                    .analysis(analysis)
-                    .createdAt(LocalDateTime.now())
-                    .source(request.getSource())
-                    .apiProvider("ANTHROPIC")
-                    .build();
-
-            sentimentRepository.save(entity);
-
-            return response;
-
-        } catch (WebClientResponseException e) {
-            log.error("Error from Anthropic API: {} - {}", e.getStatusCode(), e.getResponseBodyAsString());
-            throw new ApiException("Failed to get response from Anthropic API: " + e.getStatusText(), e);
-        } catch (Exception e) {
-            log.error("Error while analyzing sentiment with Anthropic Claude", e);
-            throw new ApiException("Failed to analyze sentiment with Anthropic Claude", e);
-        }
+        Flux<AnalysisStreamEvent> cachedEvents = lookupCached(request)
+                .flatMapMany(cached -> Flux.just(
+                        AnalysisStreamEvent.partial(cached.getSentiment(), cached.getPrimaryEmotion()),
+                        AnalysisStreamEvent.complete(cached)));
+
+        return cachedEvents
+                .switchIfEmpty(Flux.defer(() -> streamAnalysis(request)))
+                .onErrorMap(AnthropicSentimentService::isUnmapped, this::toApiException);
+    }
+
+    private Flux<AnalysisStreamEvent> streamAnalysis(SentimentRequest request) {
+        StreamingSentimentParser parser = messageCodec.newStreamingParser();
+        StringBuilder content = new StringBuilder();
+
+        Flux<AnalysisStreamEvent> partials = anthropicClient
+                .streamMessage(messageCodec.buildStreamingRequestBody(request.getText()))
+                .concatMap(delta -> {
+                    content.append(delta);
+                    return parser.feed(delta)
+                            ? Mono.just(AnalysisStreamEvent.partial(
+                                    parser.getSentiment().orElse(null), parser.getPrimaryEmotion().orElse(null)))
+                            : Mono.empty();
+                });
+
+        Mono<AnalysisStreamEvent> completion = Mono.defer(() -> {
+            SentimentResponse response = messageCodec.decodeContent(request.getText(), content.toString());
+            cacheResult(request, response);
+            return sentimentWriter.writeAsync(toEntity(request, response))
+                    .thenReturn(AnalysisStreamEvent.complete(response));
+        });
+
+        return partials.concatWith(completion);
     }
 
-    private String extractJsonFromContent(String content) {
-        int jsonStart = content.indexOf("{");
-        int jsonEnd = content.lastIndexOf("}");
+    /** Load shedding keeps its own type so callers see a 503 rather than a provider failure. */
+    private static boolean isUnmapped(Throwable e) {
+        return !(e instanceof ApiException || e instanceof ServiceBusyException);
+    }
 
-        if (jsonStart >= 0 && jsonEnd >= 0 && jsonEnd > jsonStart) {
-            return content.substring(jsonStart, jsonEnd + 1);
+    private ApiException toApiException(Throwable e) {
+        if (e instanceof WebClientResponseException responseException) {
+            log.error("Error from Anthropic API: {} - {}",
+                    responseException.getStatusCode(), responseException.getResponseBodyAsString());
+            return new ApiException("Failed to get response from Anthropic API: " + responseException.getStatusText(), e);
+        }
+        log.error("Error while analyzing sentiment with Anthropic Claude", e);
+        return new ApiException("Failed to analyze sentiment with Anthropic Claude", e);
+    }
+
+    /**
+     * Calls Claude for the request's content unless a call for the same content is already in
+     * flight, in which case the request waits for that call. Only the request that made the
+     * call persists a row, so a burst of identical texts costs one call and one row.
+     */
+    private Mono<SentimentResponse> analyzeOnce(SentimentRequest request) {
+        // Deferred so requests that join an in-flight call never build a request body of their own
+        Mono<SentimentResponse> call = Mono.defer(() -> requestAnalysis(request))
+                .flatMap(answer -> answer.packed()
+                        ? persist(toPackedEntity(request, answer.response()), answer.response())
+                        : persist(request, answer.response()));
+        if (!coalescingEnabled) {
+            return call;
         }
 
-        return "{\"sentiment\":\"NEUTRAL\",\"confidence\":0.5,\"analysis\":\"Could not extract valid JSON from Claude response\",\"primaryEmotion\":\"NONE\",\"emotionScores\":{}}";
+        String key = messageCodec.contentKey(request.getText());
+        // cache() so late joiners get the result; the entry is removed as soon as the call ends
+        Mono<SentimentResponse> shared = call
+                .doFinally(signal -> inFlight.remove(key))
+                .cache();
+        Mono<SentimentResponse> existing = inFlight.putIfAbsent(key, shared);
+        if (existing == null) {
+            return shared;
+        }
+        log.debug("Joining in-flight Claude call for content hash {}", key);
+        coalescedCalls.increment();
+        return existing.map(response -> reuse(response, request));
     }
 
-    private SentimentDTO mapToDto(SentimentEntity entity) {
-        Map<SentimentResponse.EmotionType, Double> emotionScores = new HashMap<>();
-        try {
-            if (entity.getEmotionDetails() != null && !entity.getEmotionDetails().isEmpty()) {
-                // Convert from string-based map to enum-based map
-                Map<String, Double> rawMap = objectMapper.readValue(
-                    entity.getEmotionDetails(),
-                        new TypeReference<>() {
-                        }
-                );
-                
-                rawMap.forEach((key, value) -> {
-                    try {
-                        SentimentResponse.EmotionType emotion = SentimentResponse.EmotionType.valueOf(key);
-                        emotionScores.put(emotion, value);
-                    } catch (IllegalArgumentException e) {
-                        log.warn("Unknown emotion type in stored data: {}", key);
-                    }
-                });
+    /**
+     * Result for the request's content from the in-memory cache, the database, or failing both,
+     * a near-duplicate from the semantic cache. A near-duplicate is an approximation for a
+     * different text, so it is never put in the exact cache or stored under this content hash,
+     * where it would later be served as an exact match.
+     */
+    private Mono<SentimentResponse> lookupCached(SentimentRequest request) {
+        return Mono.defer(() -> {
+            String key = messageCodec.contentKey(request.getText());
+            Optional<SentimentResponse> cached = resultCache.get(key);
+            if (cached.isPresent()) {
+                log.debug("Result cache hit for content hash {}", key);
+                return Mono.just(reuse(cached.get(), request));
             }
-        } catch (Exception e) {
-            log.error("Error parsing emotion details JSON", e);
+            return findStored(key)
+                    .doOnNext(stored -> {
+                        log.debug("Reusing stored analysis for content hash {}", key);
+                        resultCache.put(key, stored);
+                        semanticCache.put(request.getText(), stored);
+                    })
+                    .switchIfEmpty(Mono.fromSupplier(() -> semanticCache.lookup(request.getText()).orElse(null)))
+                    .map(stored -> reuse(stored, request));
+        });
+    }
+
+    private void cacheResult(SentimentRequest request, SentimentResponse response) {
+        resultCache.put(messageCodec.contentKey(request.getText()), response);
+        semanticCache.put(request.getText(), response);
+    }
+
+    private Mono<SentimentResponse> findStored(String key) {
+        if (!dedupEnabled) {
+            return Mono.empty();
+        }
+        // Rows still in the write-behind queue are not visible to the query yet
+        Optional<SentimentEntity> pending = sentimentWriter.findPending(key);
+        if (pending.isPresent()) {
+            return Mono.just(sentimentMapper.toResponse(pending.get()));
         }
-        
-        return SentimentDTO.builder()
-                .id(entity.getId())
-                .text(entity.getText())
-                .sentiment(entity.getSentiment())
-                .primaryEmotion(entity.getPrimaryEmotion())
-                .emotionScores(emotionScores)
-                .confidence(entity.getConfidence())
-                .analysis(entity.getAnalysis())
-                .createdAt(entity.getCreatedAt())
-                .source(entity.getSource())
-                .apiProvider(entity.getApiProvider())
+        return Mono.fromCallable(() -> sentimentRepository
+                        .findFirstByContentHashAndCreatedAtAfterOrderByCreatedAtDesc(
+                                key, LocalDateTime.now().minus(dedupFreshness)))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(Mono::justOrEmpty)
+                .map(sentimentMapper::toResponse);
+    }
+
+    private SentimentResponse reuse(SentimentResponse previous, SentimentRequest request) {
+        return previous.toBuilder()
+                .text(request.getText())
+                .timestamp(LocalDateTime.now())
                 .build();
     }
 
+    private Mono<AnalysisMicroBatcher.Answer> requestAnalysis(SentimentRequest request) {
+        if (microBatcher.isEnabled()) {
+            return microBatcher.submit(request.getText());
+        }
+        return anthropicClient.analyze(request.getText()).map(response -> new AnalysisMicroBatcher.Answer(response, false));
+    }
+
+    /** Caches and stores an answer to the single-text prompt. */
+    private Mono<SentimentResponse> persist(SentimentRequest request, SentimentResponse response) {
+        cacheResult(request, response);
+        return persist(toEntity(request, response), response);
+    }
+
+    private Mono<SentimentResponse> persist(SentimentEntity entity, SentimentResponse response) {
+        return observations.observe("sentiment.persist", KeyValues.empty(),
+                sentimentWriter.writeAsync(entity)).thenReturn(response);
+    }
+
+    private SentimentEntity toEntity(SentimentRequest request, SentimentResponse response) {
+        return sentimentMapper.toEntity(request, response, "ANTHROPIC", messageCodec.contentKey(request.getText()));
+    }
+
+    /**
+     * Row for an answer that came from a packed prompt. It is stored under the packed prompt's
+     * content hash and kept out of the caches, so it is never served as a single-prompt result.
+     */
+    private SentimentEntity toPackedEntity(SentimentRequest request, SentimentResponse response) {
+        return sentimentMapper.toEntity(request, response, "ANTHROPIC", promptPacker.packedContentKey(request.getText()));
+    }
+
     @Override
     public SentimentDTO findById(Long id) {
         return sentimentRepository.findById(id)
-                .map(this::mapToDto)
+                .map(sentimentMapper::toDto)
                 .orElseThrow(() -> new ResourceNotFoundException("Sentiment", "id", id));
     }
 
     @Override
+    @Transactional(readOnly = true)
     public List<SentimentDTO> findAll() {
-        return sentimentRepository.findAll().stream()
-                .map(this::mapToDto)
-                .collect(Collectors.toList());
+        return findRecent(null, null);
     }
 
     @Override
+    @Transactional(readOnly = true)
     public List<SentimentDTO> findBySentimentType(SentimentResponse.SentimentType sentimentType) {
-        return sentimentRepository.findBySentiment(sentimentType).stream()
-                .map(this::mapToDto)
-                .collect(Collectors.toList());
+        return findRecent(sentimentType, null);
     }
-    
+
     @Override
+    @Transactional(readOnly = true)
     public List<SentimentDTO> findByPrimaryEmotion(SentimentResponse.EmotionType emotionType) {
-        return sentimentRepository.findByPrimaryEmotion(emotionType)
-                .stream()
-                .map(this::mapToDto)
-                .collect(Collectors.toList());
+        return findRecent(null, emotionType);
     }
-    
+
     @Override
+    @Transactional(readOnly = true)
     public List<SentimentDTO> findBySentimentAndEmotion(
-            SentimentResponse.SentimentType sentimentType, 
+            SentimentResponse.SentimentType sentimentType,
+            SentimentResponse.EmotionType emotionType) {
+        return findRecent(sentimentType, emotionType);
+    }
+
+    /** The newest matching analyses, at most list-limit of them; older rows are reached through findPage. */
+    private List<SentimentDTO> findRecent(
+            SentimentResponse.SentimentType sentimentType,
             SentimentResponse.EmotionType emotionType) {
-        return sentimentRepository.findBySentimentAndPrimaryEmotion(sentimentType, emotionType)
+        return sentimentRepository.findBy(historyFilter(sentimentType, emotionType), query -> query
+                        .sortBy(SentimentSpecifications.HISTORY_ORDER)
+                        .limit(listLimit)
+                        .all())
                 .stream()
-                .map(this::mapToDto)
+                .map(sentimentMapper::toDto)
                 .collect(Collectors.toList());
     }
 
     @Override
-    @Transactional
-    public BatchSentimentResponse analyzeBatch(BatchSentimentRequest batchRequest) {
-        log.info("Processing batch sentiment analysis with {} requests", batchRequest.getRequests().size());
-        
-        List<SentimentResponse> results = batchRequest.getRequests().stream()
-                .map(this::analyzeSentiment)
-                .collect(Collectors.toList());
-        
-        int totalRequests = batchRequest.getRequests().size();
-        int processedRequests = results.size();
-        
-        int positiveCount = 0;
-        int negativeCount = 0;
-        int neutralCount = 0;
-        
-        Map<SentimentResponse.SentimentType, Integer> sentimentCounts = new HashMap<>();
-        Map<SentimentResponse.EmotionType, Integer> emotionCounts = new HashMap<>();
-        double totalConfidence = 0;
-        
-        for (SentimentResponse response : results) {
-            switch (response.getSentiment()) {
-                case POSITIVE:
-                    positiveCount++;
-                    break;
-                case NEGATIVE:
-                    negativeCount++;
-                    break;
-                case NEUTRAL:
-                    neutralCount++;
-                    break;
-            }
-            
-            sentimentCounts.merge(response.getSentiment(), 1, Integer::sum);
-            
-            emotionCounts.merge(response.getPrimaryEmotion(), 1, Integer::sum);
-            
-            totalConfidence += response.getConfidence();
+    @Transactional(readOnly = true)
+    public HistoryPage findPage(
+            SentimentResponse.SentimentType sentimentType,
+            SentimentResponse.EmotionType emotionType,
+            String cursor,
+            int size) {
+        int pageSize = Math.max(1, Math.min(size, maxPageSize));
+
+        Specification<SentimentEntity> spec = historyFilter(sentimentType, emotionType);
+        if (cursor != null && !cursor.isBlank()) {
+            HistoryCursor position = HistoryCursor.decode(cursor);
+            spec = spec.and(SentimentSpecifications.after(position.createdAt(), position.id()));
         }
-        
-        SentimentResponse.SentimentType dominantSentiment = sentimentCounts.entrySet().stream()
-                .max(Map.Entry.comparingByValue())
-                .map(Map.Entry::getKey)
-                .orElse(SentimentResponse.SentimentType.NEUTRAL);
-        
-        SentimentResponse.EmotionType dominantEmotion = emotionCounts.entrySet().stream()
-                .max(Map.Entry.comparingByValue())
-                .map(Map.Entry::getKey)
-                .orElse(SentimentResponse.EmotionType.NONE);
-        
-        double averageConfidence = processedRequests > 0 ? totalConfidence / processedRequests : 0;
-        
-        BatchSentimentResponse.BatchSummary summary = BatchSentimentResponse.BatchSummary.builder()
-                .totalRequests(totalRequests)
-                .processedRequests(processedRequests)
-                .positiveCount(positiveCount)
-                .negativeCount(negativeCount)
-                .neutralCount(neutralCount)
-                .dominantSentiment(dominantSentiment)
-                .dominantEmotion(dominantEmotion)
-                .averageConfidence(averageConfidence)
-                .build();
-        
-        return BatchSentimentResponse.builder()
-                .results(results)
-                .timestamp(LocalDateTime.now())
-                .summary(summary)
+
+        // One extra row tells us whether another page exists without a count query
+        List<SentimentEntity> rows = sentimentRepository.findBy(spec, query -> query
+                .sortBy(SentimentSpecifications.HISTORY_ORDER)
+                .limit(pageSize + 1)
+                .all());
+
+        boolean hasMore = rows.size() > pageSize;
+        List<SentimentEntity> pageRows = hasMore ? rows.subList(0, pageSize) : rows;
+        SentimentEntity last = pageRows.isEmpty() ? null : pageRows.get(pageRows.size() - 1);
+
+        return HistoryPage.builder()
+                .items(pageRows.stream().map(sentimentMapper::toDto).collect(Collectors.toList()))
+                .nextCursor(hasMore ? HistoryCursor.of(last).encode() : null)
+                .hasMore(hasMore)
                 .build();
     }
-}
\ No newline at end of file
+
+    @Override
+    @Transactional(readOnly = true)
+    public void streamHistory(
+            SentimentResponse.SentimentType sentimentType,
+            SentimentResponse.EmotionType emotionType,
+            Consumer<SentimentDTO> consumer) {
+        try (Stream<SentimentEntity> rows = sentimentRepository.findBy(
+                historyFilter(sentimentType, emotionType),
+                query -> query.sortBy(SentimentSpecifications.HISTORY_ORDER).stream())) {
+            rows.forEach(entity -> {
+                consumer.accept(sentimentMapper.toDto(entity));
+                // Keep the persistence context from growing with the export
+                entityManager.detach(entity);
+            });
+        }
+    }
+
+    private Specification<SentimentEntity> historyFilter(
+            SentimentResponse.SentimentType sentimentType,
+            SentimentResponse.EmotionType emotionType) {
+        return Specification.where(SentimentSpecifications.hasSentiment(sentimentType))
+                .and(SentimentSpecifications.hasPrimaryEmotion(emotionType));
+    }
+
+    @Override
+    public BatchSentimentResponse analyzeBatch(BatchSentimentRequest batchRequest) {
+        return analyzeBatchAsync(batchRequest).block();
+    }
+
+    @Override
+    public Mono<BatchSentimentResponse> analyzeBatchAsync(BatchSentimentRequest batchRequest) {
+        List<SentimentRequest> requests = batchRequest.getRequests();
+        log.info("Processing batch sentiment analysis with {} requests (concurrency {})",
+                requests.size(), batchConcurrency);
+
+        return analyzeEntries(requests)
+                .collectList()
+                .map(events -> BatchSummaries.toResponse(requests.size(), events));
+    }
+
+    @Override
+    public Flux<BatchStreamEvent> streamBatchAsync(BatchSentimentRequest batchRequest) {
+        List<SentimentRequest> requests = batchRequest.getRequests();
+        log.info("Streaming batch sentiment analysis with {} requests (concurrency {})",
+                requests.size(), batchConcurrency);
+
+        return Flux.defer(() -> {
+            List<SentimentResponse> completed = new ArrayList<>();
+            return analyzeEntries(requests)
+                    .doOnNext(event -> {
+                        if (event.getType() == BatchStreamEvent.Type.RESULT) {
+                            completed.add(event.getResult());
+                        }
+                    })
+                    .concatWith(Mono.fromSupplier(() -> BatchStreamEvent.summary(BatchSummaries.summarize(requests.size(), completed))))
+                    .doOnCancel(() -> log.info("Batch stream cancelled by the client after {} of {} results",
+                            completed.size(), requests.size()));
+        });
+    }
+
+    /**
+     * Emits one RESULT or FAILED event per request position as entries complete: cache hits
+     * first, then Claude results in completion order. Only Claude results are stored.
+     */
+    private Flux<BatchStreamEvent> analyzeEntries(List<SentimentRequest> requests) {
+        return Flux.fromIterable(requests)
+                .flatMapSequential(request -> lookupCached(request)
+                        .map(Optional::of)
+                        .defaultIfEmpty(Optional.empty()), batchConcurrency)
+                .collectList()
+                .flatMapMany(cached -> {
+                    List<BatchStreamEvent> hits = new ArrayList<>();
+                    List<SentimentRequest> misses = new ArrayList<>();
+                    List<Integer> missIndexes = new ArrayList<>();
+                    for (int i = 0; i < requests.size(); i++) {
+                        if (cached.get(i).isPresent()) {
+                            hits.add(BatchStreamEvent.result(i, cached.get(i).get()));
+                        } else {
+                            misses.add(requests.get(i));
+                            missIndexes.add(i);
+                        }
+                    }
+                    return Flux.fromIterable(hits).concatWith(analyzeMisses(misses, missIndexes));
+                });
+    }
+
+    private Flux<BatchStreamEvent> analyzeMisses(
+            List<SentimentRequest> misses,
+            List<Integer> missIndexes) {
+        // Each unit is one Claude call: a pack of short texts or a single text
+        List<List<Integer>> units = promptPacker.isEnabled()
+                ? promptPacker.plan(misses.stream().map(SentimentRequest::getText).collect(Collectors.toList()))
+                : IntStream.range(0, misses.size()).mapToObj(List::of).collect(Collectors.toList());
+
+        // Calls run concurrently up to the cap; a failed unit reports its own entries as failed
+        return Flux.fromIterable(units)
+                .flatMap(unit -> {
+                    List<SentimentRequest> unitRequests = unit.stream().map(misses::get).collect(Collectors.toList());
+                    return promptPacker.analyze(unitRequests.stream().map(SentimentRequest::getText).collect(Collectors.toList()))
+                            .flatMapMany(responses -> {
+                                List<SentimentEntity> entities = new ArrayList<>(responses.size());
+                                List<BatchStreamEvent> events = new ArrayList<>(responses.size());
+                                for (int j = 0; j < responses.size(); j++) {
+                                    SentimentRequest request = unitRequests.get(j);
+                                    if (unit.size() == 1) {
+                                        cacheResult(request, responses.get(j));
+                                        entities.add(toEntity(request, responses.get(j)));
+                                    } else {
+                                        entities.add(toPackedEntity(request, responses.get(j)));
+                                    }
+                                    events.add(BatchStreamEvent.result(missIndexes.get(unit.get(j)), responses.get(j)));
+                                }
+                                return sentimentWriter.writeAllAsync(entities).thenMany(Flux.fromIterable(events));
+                            })
+                            .onErrorResume(e -> {
+                                log.warn("Batch unit of {} entries failed: {}", unit.size(), e.getMessage());
+                                return Flux.fromIterable(unit)
+                                        .map(j -> BatchStreamEvent.failed(missIndexes.get(j), e.getMessage()));
+                            });
+                }, batchConcurrency);
+    }
+}
@@ -0,0 +1,44 @@
+package mat.pia.sentiment.service;
+
+import lombok.extern.slf4j.Slf4j;
+import mat.pia.sentiment.model.BatchJobEntity;
+import mat.pia.sentiment.repository.BatchJobRepository;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Drives batch jobs forward: submits queued jobs and collects results of submitted ones.
+ * Only one node in a cluster should run it (anthropic.batches.poller.enabled).
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "anthropic.batches.poller.enabled", havingValue = "true", matchIfMissing = true)
+public class BatchJobPoller {
+
+    private final BatchJobRepository jobRepository;
+    private final BatchJobService batchJobService;
+
+    public BatchJobPoller(BatchJobRepository jobRepository, BatchJobService batchJobService) {
+        this.jobRepository = jobRepository;
+        this.batchJobService = batchJobService;
+    }
+
+    @Scheduled(fixedDelayString = "${anthropic.batches.poll-interval:PT30S}")
+    public void poll() {
+        for (BatchJobEntity job : jobRepository.findByStatusOrderByCreatedAt(BatchJobEntity.Status.QUEUED)) {
+            runSafely(job, () -> batchJobService.submitPending(job));
+        }
+        for (BatchJobEntity job : jobRepository.findByStatusOrderByCreatedAt(BatchJobEntity.Status.SUBMITTED)) {
+            runSafely(job, () -> batchJobService.collectResults(job));
+        }
+    }
+
+    private void runSafely(BatchJobEntity job, Runnable step) {
+        try {
+            step.run();
+        } catch (Exception e) {
+            log.error("Error while processing batch job {}, will retry on the next poll", job.getId(), e);
+        }
+    }
+}
@@ -0,0 +1,406 @@
+package mat.pia.sentiment.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import mat.pia.sentiment.client.AnthropicBatchClient;
+import mat.pia.sentiment.client.AnthropicMessageCodec;
+import mat.pia.sentiment.dto.BatchJobRequest;
+import mat.pia.sentiment.dto.BatchJobResultPage;
+import mat.pia.sentiment.dto.BatchJobStatus;
+import mat.pia.sentiment.exception.ApiException;
+import mat.pia.sentiment.exception.ResourceNotFoundException;
+import mat.pia.sentiment.model.BatchJobEntity;
+import mat.pia.sentiment.model.BatchJobItemEntity;
+import mat.pia.sentiment.model.SentimentEntity;
+import mat.pia.sentiment.model.SentimentRequest;
+import mat.pia.sentiment.model.SentimentResponse;
+import mat.pia.sentiment.repository.BatchJobItemRepository;
+import mat.pia.sentiment.repository.BatchJobRepository;
+import mat.pia.sentiment.repository.SentimentRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Asynchronous analysis jobs backed by the Anthropic Message Batches API. A job's texts are
+ * stored as batch_job_items, packed into provider batches by {@link #submitPending}, and their
+ * results are bulk-persisted into sentiment_analyses by {@link #collectResults} once the
+ * provider reports the batch as ended.
+ */
+@Service
+@Slf4j
+public class BatchJobService {
+
+    private static final String CUSTOM_ID_PREFIX = "item-";
+    private static final String INSERT_ITEM_SQL =
+            "INSERT INTO batch_job_items (job_id, item_index, text, source, status) VALUES (?, ?, ?, ?, ?)";
+
+    private final BatchJobRepository jobRepository;
+    private final BatchJobItemRepository itemRepository;
+    private final SentimentRepository sentimentRepository;
+    private final AnthropicBatchClient batchClient;
+    private final AnthropicMessageCodec messageCodec;
+    private final SentimentMapper sentimentMapper;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+
+    @Value("${anthropic.batches.max-requests-per-batch:10000}")
+    private int maxRequestsPerBatch;
+
+    @Value("${anthropic.batches.persist-chunk-size:500}")
+    private int persistChunkSize;
+
+    @Value("${anthropic.batches.submission-timeout:PT10M}")
+    private Duration submissionTimeout;
+
+    @Value("${sentiment.history.max-page-size:200}")
+    private int maxPageSize;
+
+    public BatchJobService(
+            BatchJobRepository jobRepository,
+            BatchJobItemRepository itemRepository,
+            SentimentRepository sentimentRepository,
+            AnthropicBatchClient batchClient,
+            AnthropicMessageCodec messageCodec,
+            SentimentMapper sentimentMapper,
+            JdbcTemplate jdbcTemplate,
+            TransactionTemplate transactionTemplate,
+            ObjectMapper objectMapper) {
+        this.jobRepository = jobRepository;
+        this.itemRepository = itemRepository;
+        this.sentimentRepository = sentimentRepository;
+        this.batchClient = batchClient;
+        this.messageCodec = messageCodec;
+        this.sentimentMapper = sentimentMapper;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.objectMapper = objectMapper;
+    }
+
+    @Transactional
+    public BatchJobStatus createJob(BatchJobRequest request) {
+        List<SentimentRequest> requests = request.getRequests();
+        LocalDateTime now = LocalDateTime.now();
+
+        BatchJobEntity job = jobRepository.save(BatchJobEntity.builder()
+                .id(UUID.randomUUID().toString())
+                .status(BatchJobEntity.Status.QUEUED)
+                .totalItems(requests.size())
+                .createdAt(now)
+                .updatedAt(now)
+                .build());
+
+        List<Integer> indexes = new ArrayList<>(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            indexes.add(i);
+        }
+        jdbcTemplate.batchUpdate(INSERT_ITEM_SQL, indexes, persistChunkSize, (ps, index) -> {
+            SentimentRequest item = requests.get(index);
+            ps.setString(1, job.getId());
+            ps.setInt(2, index);
+            ps.setString(3, item.getText());
+            ps.setString(4, item.getSource());
+            ps.setString(5, BatchJobItemEntity.Status.PENDING.name());
+        });
+
+        log.info("Created batch job {} with {} items", job.getId(), requests.size());
+        return toStatus(job);
+    }
+
+    public BatchJobStatus getStatus(String jobId) {
+        return toStatus(findJob(jobId));
+    }
+
+    @Transactional(readOnly = true)
+    public BatchJobResultPage getResults(String jobId, Integer cursor, int size) {
+        findJob(jobId);
+        int pageSize = Math.max(1, Math.min(size, maxPageSize));
+
+        List<BatchJobItemEntity> items = itemRepository.findByJobIdAndItemIndexGreaterThanOrderByItemIndex(
+                jobId, cursor != null ? cursor : -1, Limit.of(pageSize + 1));
+        boolean hasMore = items.size() > pageSize;
+        List<BatchJobItemEntity> pageItems = hasMore ? items.subList(0, pageSize) : items;
+
+        List<Long> analysisIds = pageItems.stream()
+                .map(BatchJobItemEntity::getAnalysisId)
+                .filter(id -> id != null)
+                .collect(Collectors.toList());
+        Map<Long, SentimentEntity> analyses = sentimentRepository.findAllById(analysisIds).stream()
+                .collect(Collectors.toMap(SentimentEntity::getId, Function.identity()));
+
+        List<BatchJobResultPage.ItemResult> results = pageItems.stream()
+                .map(item -> BatchJobResultPage.ItemResult.builder()
+                        .index(item.getItemIndex())
+                        .text(item.getText())
+                        .status(item.getStatus())
+                        .errorMessage(item.getErrorMessage())
+                        .result(item.getAnalysisId() != null && analyses.containsKey(item.getAnalysisId())
+                                ? sentimentMapper.toDto(analyses.get(item.getAnalysisId()))
+                                : null)
+                        .build())
+                .collect(Collectors.toList());
+
+        return BatchJobResultPage.builder()
+                .items(results)
+                .nextCursor(hasMore ? pageItems.get(pageItems.size() - 1).getItemIndex() : null)
+                .hasMore(hasMore)
+                .build();
+    }
+
+    /**
+     * Packs the job's pending items into provider batches of at most max-requests-per-batch.
+     * Items are marked SUBMITTING in their own transaction before the provider is called, so a
+     * crash or a failed update after the call leaves them SUBMITTING instead of PENDING and they
+     * are never sent twice. A chunk the provider rejects fails only its own items; batches
+     * already created for the job are still collected.
+     */
+    public void submitPending(BatchJobEntity job) {
+        failStaleSubmissions(job);
+        String rejection = job.getErrorMessage();
+        List<BatchJobItemEntity> items;
+        while (!(items = itemRepository.findByJobIdAndStatusOrderByItemIndex(
+                job.getId(), BatchJobItemEntity.Status.PENDING, Limit.of(maxRequestsPerBatch))).isEmpty()) {
+            Map<String, String> texts = new LinkedHashMap<>();
+            items.forEach(item -> texts.put(CUSTOM_ID_PREFIX + item.getId(), item.getText()));
+
+            LocalDateTime submittedAt = LocalDateTime.now();
+            items.forEach(item -> {
+                item.setStatus(BatchJobItemEntity.Status.SUBMITTING);
+                item.setSubmittedAt(submittedAt);
+            });
+            items = itemRepository.saveAll(items);
+
+            String providerBatchId;
+            try {
+                providerBatchId = batchClient.createBatch(texts).block();
+            } catch (WebClientResponseException e) {
+                // The provider answered with an error, so no batch was created and the items can go again.
+                // Any other failure (timeout, reset connection) leaves them SUBMITTING.
+                if (e.getStatusCode().is4xxClientError() && e.getStatusCode().value() != 429) {
+                    log.error("Provider rejected {} items of batch job {}: {}", items.size(), job.getId(), e.getResponseBodyAsString());
+                    rejection = truncate("Provider rejected batch: " + e.getStatusText());
+                    String errorMessage = rejection;
+                    items.forEach(item -> {
+                        item.setStatus(BatchJobItemEntity.Status.FAILED);
+                        item.setErrorMessage(errorMessage);
+                    });
+                    itemRepository.saveAll(items);
+                    continue;
+                }
+                items.forEach(item -> item.setStatus(BatchJobItemEntity.Status.PENDING));
+                itemRepository.saveAll(items);
+                log.warn("Submitting batch job {} failed, will retry: {}", job.getId(), e.getMessage());
+                return;
+            }
+
+            items.forEach(item -> {
+                item.setStatus(BatchJobItemEntity.Status.SUBMITTED);
+                item.setProviderBatchId(providerBatchId);
+            });
+            try {
+                itemRepository.saveAll(items);
+            } catch (RuntimeException e) {
+                log.error("Provider batch {} was created for {} items of job {} but could not be recorded; "
+                        + "the items will be failed rather than resubmitted", providerBatchId, items.size(), job.getId());
+                throw e;
+            }
+            log.info("Submitted {} items of job {} as provider batch {}", items.size(), job.getId(), providerBatchId);
+        }
+
+        if (outstandingItems(job) > 0) {
+            updateJob(job, BatchJobEntity.Status.SUBMITTED, rejection);
+        } else {
+            // Everything was rejected or failed; the job only counts as failed if nothing succeeded
+            boolean anySucceeded = itemRepository.countByJobIdAndStatus(job.getId(), BatchJobItemEntity.Status.SUCCEEDED) > 0;
+            updateJob(job, rejection != null && !anySucceeded ? BatchJobEntity.Status.FAILED : BatchJobEntity.Status.COMPLETED,
+                    rejection);
+        }
+    }
+
+    /**
+     * Fails items that have been SUBMITTING for longer than the submission timeout. Their
+     * provider call ended without a recorded outcome, so the provider may have accepted them
+     * and sending them again could analyse and bill them twice.
+     */
+    private void failStaleSubmissions(BatchJobEntity job) {
+        List<BatchJobItemEntity> stale = itemRepository.findByJobIdAndStatusAndSubmittedAtBefore(
+                job.getId(), BatchJobItemEntity.Status.SUBMITTING, LocalDateTime.now().minus(submissionTimeout));
+        if (stale.isEmpty()) {
+            return;
+        }
+        stale.forEach(item -> {
+            item.setStatus(BatchJobItemEntity.Status.FAILED);
+            item.setErrorMessage("Submission outcome unknown; not resubmitted to avoid analysing the text twice");
+        });
+        itemRepository.saveAll(stale);
+        log.warn("Failed {} items of job {} whose submission never completed", stale.size(), job.getId());
+    }
+
+    /** Ingests every provider batch of the job that has ended and completes the job when none remain. */
+    public void collectResults(BatchJobEntity job) {
+        failStaleSubmissions(job);
+        for (String providerBatchId : itemRepository.findProviderBatchIds(job.getId(), BatchJobItemEntity.Status.SUBMITTED)) {
+            JsonNode batch = batchClient.getBatch(providerBatchId).block();
+            if (batch == null || !"ended".equals(batch.path("processing_status").asText())) {
+                continue;
+            }
+            log.info("Provider batch {} of job {} ended, collecting results", providerBatchId, job.getId());
+            batchClient.streamResults(batch.path("results_url").asText())
+                    .buffer(persistChunkSize)
+                    .concatMap(lines -> Mono.fromRunnable(() -> persistChunk(parseResults(lines)))
+                            .subscribeOn(Schedulers.boundedElastic()))
+                    .blockLast();
+        }
+
+        updateJob(job, outstandingItems(job) == 0 ? BatchJobEntity.Status.COMPLETED : job.getStatus(), job.getErrorMessage());
+    }
+
+    /** Items that are still waiting to be sent or for their provider batch to end. */
+    private long outstandingItems(BatchJobEntity job) {
+        return itemRepository.countByJobIdAndStatus(job.getId(), BatchJobItemEntity.Status.SUBMITTED)
+                + itemRepository.countByJobIdAndStatus(job.getId(), BatchJobItemEntity.Status.SUBMITTING)
+                + itemRepository.countByJobIdAndStatus(job.getId(), BatchJobItemEntity.Status.PENDING);
+    }
+
+    private Map<Long, JsonNode> parseResults(List<String> lines) {
+        Map<Long, JsonNode> resultsByItemId = new HashMap<>();
+        for (String line : lines) {
+            try {
+                JsonNode node = objectMapper.readTree(line);
+                String customId = node.path("custom_id").asText();
+                if (customId.startsWith(CUSTOM_ID_PREFIX)) {
+                    resultsByItemId.put(Long.valueOf(customId.substring(CUSTOM_ID_PREFIX.length())), node.path("result"));
+                }
+            } catch (Exception e) {
+                log.warn("Skipping unreadable batch result line: {}", e.getMessage());
+            }
+        }
+        return resultsByItemId;
+    }
+
+    /**
+     * Persists a chunk of results in one transaction. If the database rejects a row (a value
+     * too long for its column, say) the chunk is retried row by row and only the rejected items
+     * are failed, so one bad row cannot roll back every poll and hold the job open.
+     */
+    private void persistChunk(Map<Long, JsonNode> resultsByItemId) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> persistResults(resultsByItemId));
+        } catch (DataIntegrityViolationException e) {
+            log.warn("Persisting {} batch results failed, retrying them one by one: {}",
+                    resultsByItemId.size(), e.getMostSpecificCause().getMessage());
+            resultsByItemId.forEach((itemId, result) -> {
+                try {
+                    transactionTemplate.executeWithoutResult(status -> persistResults(Map.of(itemId, result)));
+                } catch (DataIntegrityViolationException rowError) {
+                    log.warn("Failing batch job item {} whose result could not be stored: {}",
+                            itemId, rowError.getMostSpecificCause().getMessage());
+                    transactionTemplate.executeWithoutResult(status -> failItem(itemId,
+                            "Result could not be stored: " + rowError.getMostSpecificCause().getMessage()));
+                }
+            });
+        }
+    }
+
+    private void failItem(Long itemId, String errorMessage) {
+        itemRepository.findById(itemId)
+                .filter(item -> item.getStatus() == BatchJobItemEntity.Status.SUBMITTED)
+                .ifPresent(item -> {
+                    item.setStatus(BatchJobItemEntity.Status.FAILED);
+                    item.setErrorMessage(truncate(errorMessage));
+                    itemRepository.save(item);
+                });
+    }
+
+    private void persistResults(Map<Long, JsonNode> resultsByItemId) {
+        List<BatchJobItemEntity> items = itemRepository.findAllById(resultsByItemId.keySet());
+        List<BatchJobItemEntity> succeeded = new ArrayList<>();
+        List<SentimentEntity> entities = new ArrayList<>();
+
+        for (BatchJobItemEntity item : items) {
+            // Items already resolved by an earlier, interrupted run are left alone
+            if (item.getStatus() != BatchJobItemEntity.Status.SUBMITTED) {
+                continue;
+            }
+            JsonNode result = resultsByItemId.get(item.getId());
+            String type = result.path("type").asText();
+            if ("succeeded".equals(type)) {
+                try {
+                    SentimentResponse response = messageCodec.decodeMessage(item.getText(), result.path("message"));
+                    entities.add(sentimentMapper.toEntity(
+                            new SentimentRequest(item.getText(), item.getSource(), null), response,
+                            "ANTHROPIC_BATCH", messageCodec.contentKey(item.getText())));
+                    succeeded.add(item);
+                } catch (ApiException e) {
+                    item.setStatus(BatchJobItemEntity.Status.FAILED);
+                    item.setErrorMessage(e.getMessage());
+                }
+            } else {
+                item.setStatus(BatchJobItemEntity.Status.FAILED);
+                item.setErrorMessage(truncate(type + ": " + result.path("error").path("error").path("message").asText("")));
+            }
+        }
+
+        sentimentRepository.saveAll(entities);
+        for (int i = 0; i < succeeded.size(); i++) {
+            succeeded.get(i).setStatus(BatchJobItemEntity.Status.SUCCEEDED);
+            succeeded.get(i).setAnalysisId(entities.get(i).getId());
+        }
+        itemRepository.saveAll(items);
+    }
+
+    private void updateJob(BatchJobEntity job, BatchJobEntity.Status status, String errorMessage) {
+        LocalDateTime now = LocalDateTime.now();
+        job.setStatus(status);
+        job.setErrorMessage(errorMessage);
+        job.setSucceededItems((int) itemRepository.countByJobIdAndStatus(job.getId(), BatchJobItemEntity.Status.SUCCEEDED));
+        job.setFailedItems((int) itemRepository.countByJobIdAndStatus(job.getId(), BatchJobItemEntity.Status.FAILED));
+        job.setUpdatedAt(now);
+        if (status == BatchJobEntity.Status.COMPLETED || status == BatchJobEntity.Status.FAILED) {
+            job.setCompletedAt(now);
+        }
+        jobRepository.save(job);
+    }
+
+    private BatchJobEntity findJob(String jobId) {
+        return jobRepository.findById(jobId)
+                .orElseThrow(() -> new ResourceNotFoundException("Batch job", "id", jobId));
+    }
+
+    private BatchJobStatus toStatus(BatchJobEntity job) {
+        return BatchJobStatus.builder()
+                .id(job.getId())
+                .status(job.getStatus())
+                .totalItems(job.getTotalItems())
+                .succeededItems(job.getSucceededItems())
+                .failedItems(job.getFailedItems())
+                .errorMessage(job.getErrorMessage())
+                .createdAt(job.getCreatedAt())
+                .completedAt(job.getCompletedAt())
+                .build();
+    }
+
+    private String truncate(String message) {
+        return message.length() > 500 ? message.substring(0, 500) : message;
+    }
+}
@@ -0,0 +1,118 @@
+package mat.pia.sentiment.service;
+
+import mat.pia.sentiment.dto.BatchSentimentResponse;
+import mat.pia.sentiment.dto.BatchStreamEvent;
+import mat.pia.sentiment.exception.ApiException;
+import mat.pia.sentiment.model.SentimentResponse;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/** Batch summary statistics, shared by every engine that answers batches. */
+final class BatchSummaries {
+
+    private BatchSummaries() {
+    }
+
+    /**
+     * Builds a batch response from the RESULT and FAILED events of a batch: the successful
+     * results in request order, and a failure for every other entry. An entry without an
+     * event is reported as failed.
+     *
+     * @throws ApiException if no entry succeeded
+     */
+    static BatchSentimentResponse toResponse(int totalRequests, Collection<BatchStreamEvent> events) {
+        SentimentResponse[] results = new SentimentResponse[totalRequests];
+        String[] errors = new String[totalRequests];
+        for (BatchStreamEvent event : events) {
+            if (event.getType() == BatchStreamEvent.Type.RESULT) {
+                results[event.getIndex()] = event.getResult();
+            } else if (event.getType() == BatchStreamEvent.Type.FAILED) {
+                errors[event.getIndex()] = event.getError();
+            }
+        }
+
+        List<SentimentResponse> succeeded = new ArrayList<>(totalRequests);
+        List<BatchSentimentResponse.Failure> failures = new ArrayList<>();
+        for (int i = 0; i < totalRequests; i++) {
+            if (results[i] != null) {
+                succeeded.add(results[i]);
+            } else {
+                failures.add(BatchSentimentResponse.Failure.builder()
+                        .index(i)
+                        .error(errors[i] != null ? errors[i] : "No result was produced")
+                        .build());
+            }
+        }
+        if (succeeded.isEmpty()) {
+            throw new ApiException("Failed to analyze any of the " + totalRequests + " batch entries");
+        }
+
+        return BatchSentimentResponse.builder()
+                .results(succeeded)
+                .failures(failures)
+                .timestamp(LocalDateTime.now())
+                .summary(summarize(totalRequests, succeeded))
+                .build();
+    }
+
+    static BatchSentimentResponse.BatchSummary summarize(int totalRequests, List<SentimentResponse> results) {
+        int processedRequests = results.size();
+        
+        int positiveCount = 0;
+        int negativeCount = 0;
+        int neutralCount = 0;
+        
+        Map<SentimentResponse.SentimentType, Integer> sentimentCounts = new HashMap<>();
+        Map<SentimentResponse.EmotionType, Integer> emotionCounts = new HashMap<>();
+        double totalConfidence = 0;
+        
+        for (SentimentResponse response : results) {
+            switch (response.getSentiment()) {
+                case POSITIVE:
+                    positiveCount++;
+                    break;
+                case NEGATIVE:
+                    negativeCount++;
+                    break;
+                case NEUTRAL:
+                    neutralCount++;
+                    break;
+            }
+            
+            sentimentCounts.merge(response.getSentiment(), 1, Integer::sum);
+            
+            emotionCounts.merge(response.getPrimaryEmotion(), 1, Integer::sum);
+            
+            totalConfidence += response.getConfidence();
+        }
+        
+        SentimentResponse.SentimentType dominantSentiment = sentimentCounts.entrySet().stream()
+                .max(Map.Entry.comparingByValue())
+                .map(Map.Entry::getKey)
+                .orElse(SentimentResponse.SentimentType.NEUTRAL);
+        
+        SentimentResponse.EmotionType dominantEmotion = emotionCounts.entrySet().stream()
+                .max(Map.Entry.comparingByValue())
+                .map(Map.Entry::getKey)
+                .orElse(SentimentResponse.EmotionType.NONE);
+        
+        double averageConfidence = processedRequests > 0 ? totalConfidence / processedRequests : 0;
+        
+        return BatchSentimentResponse.BatchSummary.builder()
+                .totalRequests(totalRequests)
+                .processedRequests(processedRequests)
+                .failedRequests(totalRequests - processedRequests)
+                .positiveCount(positiveCount)
+                .negativeCount(negativeCount)
+                .neutralCount(neutralCount)
+                .dominantSentiment(dominantSentiment)
+                .dominantEmotion(dominantEmotion)
+                .averageConfidence(averageConfidence)
+                .build();
+    }
+}
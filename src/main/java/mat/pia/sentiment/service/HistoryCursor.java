@@ -0,0 +1,41 @@
+package mat.pia.sentiment.service;
+
+import mat.pia.sentiment.exception.InvalidRequestException;
+import mat.pia.sentiment.model.SentimentEntity;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Position of the last row of a history page, passed back by clients as an opaque URL-safe
+ * token: Base64 of {@code createdAt|id}.
+ */
+record HistoryCursor(LocalDateTime createdAt, long id) {
+
+    static HistoryCursor of(SentimentEntity entity) {
+        return new HistoryCursor(entity.getCreatedAt(), entity.getId());
+    }
+
+    String encode() {
+        String position = createdAt + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @throws InvalidRequestException if the token was not produced by {@link #encode()}
+     */
+    static HistoryCursor decode(String cursor) {
+        try {
+            String position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = position.split("\\|");
+            if (parts.length != 2) {
+                throw new InvalidRequestException("Invalid history cursor: " + cursor);
+            }
+            return new HistoryCursor(LocalDateTime.parse(parts[0]), Long.parseLong(parts[1]));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new InvalidRequestException("Invalid history cursor: " + cursor, e);
+        }
+    }
+}
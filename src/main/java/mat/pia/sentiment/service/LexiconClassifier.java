@@ -0,0 +1,200 @@
+package mat.pia.sentiment.service;
+
+import lombok.extern.slf4j.Slf4j;
+import mat.pia.sentiment.model.SentimentResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * In-process lexicon and rule based scorer. Cue words carry a valence and optionally an
+ * emotion; negators flip the next few cues, intensifiers and diminishers scale the next one,
+ * and cues after a "but" outweigh the ones before it. The confidence reflects how strong and
+ * how one-sided the evidence is, so mixed or cue-less texts come out with a low confidence.
+ */
+@Component
+@Slf4j
+public class LexiconClassifier {
+
+    private static final Set<String> NEGATORS = Set.of(
+            "not", "no", "never", "nothing", "nobody", "none", "neither", "nor", "without", "hardly",
+            "barely", "cannot", "cant", "dont", "doesnt", "didnt", "isnt", "wasnt", "arent", "werent",
+            "wont", "wouldnt", "shouldnt", "couldnt", "aint");
+    private static final Map<String, Double> MODIFIERS = Map.ofEntries(
+            Map.entry("very", 1.5), Map.entry("really", 1.4), Map.entry("so", 1.3), Map.entry("extremely", 1.8),
+            Map.entry("absolutely", 1.7), Map.entry("totally", 1.5), Map.entry("incredibly", 1.7),
+            Map.entry("super", 1.5), Map.entry("most", 1.3), Map.entry("too", 1.2),
+            Map.entry("slightly", 0.5), Map.entry("somewhat", 0.6), Map.entry("bit", 0.6),
+            Map.entry("little", 0.6), Map.entry("fairly", 0.8), Map.entry("kinda", 0.6));
+    private static final Set<String> CONTRASTS = Set.of("but", "however", "although", "though", "yet");
+
+    private static final int NEGATION_SCOPE = 3;
+    private static final double NEGATED_WEIGHT = 0.75;
+    private static final double BEFORE_CONTRAST_WEIGHT = 0.5;
+    private static final double AFTER_CONTRAST_WEIGHT = 1.5;
+    private static final double NEUTRAL_BAND = 0.5;
+
+    private final Map<String, Cue> lexicon;
+
+    public LexiconClassifier(@Value("${sentiment.lexicon.location:classpath:lexicon/sentiment-lexicon.csv}") Resource location) {
+        this.lexicon = load(location);
+        log.info("Loaded {} lexicon entries from {}", lexicon.size(), location);
+    }
+
+    public SentimentResponse classify(String text) {
+        String[] tokens = text.toLowerCase().replace("n't", "nt").split("[^a-z']+");
+
+        int lastContrast = -1;
+        for (int i = 0; i < tokens.length; i++) {
+            if (CONTRASTS.contains(tokens[i])) {
+                lastContrast = i;
+            }
+        }
+
+        double positive = 0;
+        double negative = 0;
+        int cues = 0;
+        boolean negationApplied = false;
+        Map<SentimentResponse.EmotionType, Double> emotions = new EnumMap<>(SentimentResponse.EmotionType.class);
+
+        int negatedUntil = -1;
+        double modifier = 1.0;
+        for (int i = 0; i < tokens.length; i++) {
+            String token = tokens[i].replace("'", "");
+            if (token.isEmpty()) {
+                continue;
+            }
+            if (NEGATORS.contains(token)) {
+                negatedUntil = i + NEGATION_SCOPE;
+                continue;
+            }
+            Double scale = MODIFIERS.get(token);
+            if (scale != null) {
+                modifier *= scale;
+                continue;
+            }
+            Cue cue = lookup(token);
+            if (cue == null) {
+                continue;
+            }
+
+            double weight = modifier * (lastContrast < 0 ? 1.0
+                    : i < lastContrast ? BEFORE_CONTRAST_WEIGHT : AFTER_CONTRAST_WEIGHT);
+            modifier = 1.0;
+            double valence = cue.valence() * weight;
+            boolean negated = i <= negatedUntil;
+            if (negated) {
+                valence = -valence * NEGATED_WEIGHT;
+                negationApplied = true;
+            }
+            if (valence > 0) {
+                positive += valence;
+            } else {
+                negative -= valence;
+            }
+            if (cue.valence() != 0) {
+                cues++;
+            }
+            // A negated emotion word ("not happy") says little about which emotion is present
+            if (cue.emotion() != null && !negated) {
+                emotions.merge(cue.emotion(), Math.max(1.0, Math.abs(cue.valence())) * weight, Double::sum);
+            }
+        }
+
+        double score = positive - negative;
+        long exclamations = text.chars().filter(c -> c == '!').count();
+        score *= 1 + 0.1 * Math.min(3, exclamations);
+
+        SentimentResponse.SentimentType sentiment = score > NEUTRAL_BAND ? SentimentResponse.SentimentType.POSITIVE
+                : score < -NEUTRAL_BAND ? SentimentResponse.SentimentType.NEGATIVE
+                : SentimentResponse.SentimentType.NEUTRAL;
+
+        double confidence;
+        if (cues == 0) {
+            confidence = 0.3;
+        } else {
+            double agreement = Math.abs(positive - negative) / (positive + negative);
+            double strength = 1 - Math.exp(-Math.abs(score) / 2);
+            confidence = 0.5 + 0.5 * agreement * strength;
+            if (negationApplied) {
+                confidence *= 0.9;
+            }
+            if (text.indexOf('?') >= 0) {
+                confidence *= 0.9;
+            }
+        }
+
+        return SentimentResponse.builder()
+                .text(text)
+                .sentiment(sentiment)
+                .confidence(Math.round(confidence * 100) / 100.0)
+                .primaryEmotion(primaryEmotion(emotions))
+                .emotionScores(normalize(emotions))
+                .analysis(String.format("Lexicon scoring: %d cue words, positive %.1f, negative %.1f%s",
+                        cues, positive, negative, negationApplied ? ", negation applied" : ""))
+                .timestamp(LocalDateTime.now())
+                .build();
+    }
+
+    private Cue lookup(String token) {
+        Cue cue = lexicon.get(token);
+        if (cue == null && token.length() > 3 && token.endsWith("s")) {
+            cue = lexicon.get(token.substring(0, token.length() - 1));
+        }
+        return cue;
+    }
+
+    private static SentimentResponse.EmotionType primaryEmotion(Map<SentimentResponse.EmotionType, Double> emotions) {
+        return emotions.entrySet().stream()
+                .max(Map.Entry.comparingByValue())
+                .map(Map.Entry::getKey)
+                .orElse(SentimentResponse.EmotionType.NONE);
+    }
+
+    private static Map<SentimentResponse.EmotionType, Double> normalize(Map<SentimentResponse.EmotionType, Double> emotions) {
+        double max = emotions.values().stream().mapToDouble(Double::doubleValue).max().orElse(1.0);
+        Map<SentimentResponse.EmotionType, Double> scores = new HashMap<>();
+        for (SentimentResponse.EmotionType emotion : SentimentResponse.EmotionType.values()) {
+            if (emotion != SentimentResponse.EmotionType.NONE) {
+                scores.put(emotion, Math.round(emotions.getOrDefault(emotion, 0.0) / max * 100) / 100.0);
+            }
+        }
+        return scores;
+    }
+
+    private static Map<String, Cue> load(Resource location) {
+        Map<String, Cue> entries = new HashMap<>();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(location.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.strip();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] fields = line.split(",");
+                SentimentResponse.EmotionType emotion = fields.length > 2
+                        ? SentimentResponse.EmotionType.valueOf(fields[2].strip())
+                        : null;
+                entries.put(fields[0].strip(), new Cue(Double.parseDouble(fields[1].strip()), emotion));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to load sentiment lexicon from " + location, e);
+        }
+        return entries;
+    }
+
+    private record Cue(double valence, SentimentResponse.EmotionType emotion) {
+    }
+}
@@ -0,0 +1,354 @@
+package mat.pia.sentiment.service;
+
+import ai.onnxruntime.NodeInfo;
+import ai.onnxruntime.OnnxTensor;
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+import ai.onnxruntime.TensorInfo;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import mat.pia.sentiment.exception.ServiceBusyException;
+import mat.pia.sentiment.model.SentimentResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.LongBuffer;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs an ONNX sentiment/emotion classifier on the CPU. Texts are queued and a pool of
+ * inference workers drains them in batches, pads each batch to its longest sequence and
+ * runs the shared session once per batch. The model needs input_ids and attention_mask
+ * inputs (token_type_ids is fed when declared), a sentiment logits output and optionally an
+ * emotion logits output; label order for both is configured below. Only created when
+ * sentiment.onnx.model-location is set; nothing is downloaded at runtime.
+ */
+@Component
+@ConditionalOnProperty("sentiment.onnx.model-location")
+@Slf4j
+public class OnnxSentimentEngine implements SmartLifecycle {
+
+    private final OrtEnvironment environment;
+    private final OrtSession session;
+    private final WordPieceTokenizer tokenizer;
+    private final String modelName;
+    private final int maxSequenceLength;
+    private final int maxBatchSize;
+    private final int workerCount;
+    private final String sentimentOutput;
+    private final List<SentimentResponse.SentimentType> sentimentLabels;
+    private final String emotionOutput;
+    private final List<SentimentResponse.EmotionType> emotionLabels;
+    private final double emotionThreshold;
+    private final boolean tokenTypeIds;
+    private final BlockingQueue<Pending> queue;
+    private final DistributionSummary batchSizes;
+    private final Timer inferenceTimer;
+
+    private final List<Thread> workers = new ArrayList<>();
+
+    private volatile boolean running;
+
+    public OnnxSentimentEngine(
+            MeterRegistry meterRegistry,
+            @Value("${sentiment.onnx.model-location}") Resource modelLocation,
+            @Value("${sentiment.onnx.vocab-location}") Resource vocabLocation,
+            @Value("${sentiment.onnx.lowercase:true}") boolean lowercase,
+            @Value("${sentiment.onnx.max-sequence-length:128}") int maxSequenceLength,
+            @Value("${sentiment.onnx.max-batch-size:32}") int maxBatchSize,
+            @Value("${sentiment.onnx.workers:0}") int workerThreads,
+            @Value("${sentiment.onnx.intra-op-threads:1}") int intraOpThreads,
+            @Value("${sentiment.onnx.queue-capacity:1000}") int queueCapacity,
+            @Value("${sentiment.onnx.sentiment-output:sentiment_logits}") String sentimentOutput,
+            @Value("${sentiment.onnx.sentiment-labels:NEGATIVE,NEUTRAL,POSITIVE}") List<SentimentResponse.SentimentType> sentimentLabels,
+            @Value("${sentiment.onnx.emotion-output:emotion_logits}") String emotionOutput,
+            @Value("${sentiment.onnx.emotion-labels:JOY,SADNESS,ANGER,FEAR,SURPRISE,DISGUST,TRUST,ANTICIPATION}") List<SentimentResponse.EmotionType> emotionLabels,
+            @Value("${sentiment.onnx.emotion-threshold:0.5}") double emotionThreshold) {
+        this.tokenizer = new WordPieceTokenizer(vocabLocation, lowercase);
+        this.modelName = modelLocation.getFilename();
+        this.maxSequenceLength = maxSequenceLength;
+        this.maxBatchSize = maxBatchSize;
+        // One single-threaded session run per core by default; raise intra-op threads for fewer, larger runs
+        this.workerCount = workerThreads > 0 ? workerThreads : Math.max(1, Runtime.getRuntime().availableProcessors() / intraOpThreads);
+        this.sentimentOutput = sentimentOutput;
+        this.sentimentLabels = sentimentLabels;
+        this.emotionLabels = emotionLabels;
+        this.emotionThreshold = emotionThreshold;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+
+        this.environment = OrtEnvironment.getEnvironment();
+        try (OrtSession.SessionOptions options = new OrtSession.SessionOptions()) {
+            options.setIntraOpNumThreads(intraOpThreads);
+            options.setOptimizationLevel(OrtSession.SessionOptions.OptLevel.ALL_OPT);
+            this.session = environment.createSession(modelLocation.getContentAsByteArray(), options);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read ONNX model from " + modelLocation, e);
+        } catch (OrtException e) {
+            throw new IllegalStateException("Failed to load ONNX model from " + modelLocation, e);
+        }
+
+        if (!session.getOutputNames().contains(sentimentOutput)) {
+            throw new IllegalStateException("ONNX model has no " + sentimentOutput + " output, found "
+                    + session.getOutputNames());
+        }
+        checkLabelCount(sentimentOutput, sentimentLabels.size(), "sentiment.onnx.sentiment-labels", true);
+        if (session.getOutputNames().contains(emotionOutput)) {
+            this.emotionOutput = emotionOutput;
+            checkLabelCount(emotionOutput, emotionLabels.size(), "sentiment.onnx.emotion-labels", false);
+        } else {
+            log.warn("ONNX model has no {} output; emotion scores will be empty", emotionOutput);
+            this.emotionOutput = null;
+        }
+        this.tokenTypeIds = session.getInputNames().contains("token_type_ids");
+
+        Gauge.builder("sentiment.onnx.queue.size", queue, BlockingQueue::size)
+                .description("Texts waiting for local model inference")
+                .register(meterRegistry);
+        this.batchSizes = DistributionSummary.builder("sentiment.onnx.batch.size")
+                .description("Texts per local model run")
+                .register(meterRegistry);
+        this.inferenceTimer = Timer.builder("sentiment.onnx.inference")
+                .description("Local model run time per batch")
+                .register(meterRegistry);
+        log.info("Loaded ONNX model {} (inputs {}, outputs {})", modelName, session.getInputNames(),
+                session.getOutputNames());
+    }
+
+    /**
+     * Compares the number of configured labels with the output's class dimension when the model
+     * declares it. A sentiment mismatch would fail every inference, so it stops startup; extra or
+     * missing emotion labels are only ignored, so they are logged.
+     */
+    private void checkLabelCount(String output, int labelCount, String property, boolean required) {
+        long width;
+        try {
+            NodeInfo info = session.getOutputInfo().get(output);
+            if (!(info.getInfo() instanceof TensorInfo tensor) || tensor.getShape().length != 2) {
+                throw new IllegalStateException("ONNX output " + output + " must be a [batch, classes] tensor, found "
+                        + info.getInfo());
+            }
+            width = tensor.getShape()[1];
+        } catch (OrtException e) {
+            throw new IllegalStateException("Failed to read ONNX output " + output, e);
+        }
+        if (width <= 0 || width == labelCount) {
+            // A symbolic dimension is checked per batch instead
+            return;
+        }
+        if (required) {
+            throw new IllegalStateException("ONNX output " + output + " has " + width + " classes but "
+                    + property + " lists " + labelCount + " labels");
+        }
+        log.warn("ONNX output {} has {} classes but {} lists {} labels; only the first {} are used",
+                output, width, property, labelCount, Math.min(width, labelCount));
+    }
+
+    /**
+     * Queues the text for the next batch. Fails with {@link ServiceBusyException} when the
+     * queue is full rather than waiting, or when the engine is not running.
+     */
+    public Mono<SentimentResponse> classify(String text) {
+        return Mono.defer(() -> {
+            if (!running) {
+                return Mono.error(new ServiceBusyException("Local model engine is not running"));
+            }
+            Pending pending = new Pending(text, new CompletableFuture<>());
+            if (!queue.offer(pending)) {
+                return Mono.error(new ServiceBusyException("Local model inference queue is full"));
+            }
+            // stop() may have drained the queue between the check and the offer; nothing would run this text
+            if (!running && queue.remove(pending)) {
+                return Mono.error(new ServiceBusyException("Local model engine is shutting down"));
+            }
+            return Mono.fromFuture(pending.result());
+        });
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        for (int i = 0; i < workerCount; i++) {
+            Thread worker = new Thread(this::inferenceLoop, "onnx-inference-" + i);
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+        log.info("Started {} ONNX inference workers (maxBatchSize={})", workerCount, maxBatchSize);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        for (Thread worker : workers) {
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        workers.clear();
+        List<Pending> abandoned = new ArrayList<>();
+        queue.drainTo(abandoned);
+        abandoned.forEach(p -> p.result().completeExceptionally(
+                new ServiceBusyException("Local model engine is shutting down")));
+        try {
+            session.close();
+        } catch (OrtException e) {
+            log.warn("Failed to close ONNX session: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void inferenceLoop() {
+        List<Pending> batch = new ArrayList<>(maxBatchSize);
+        while (running) {
+            try {
+                Pending first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, maxBatchSize - 1);
+                infer(batch);
+                batch.clear();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+    }
+
+    private void infer(List<Pending> batch) {
+        long[][] ids = new long[batch.size()][];
+        int width = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            ids[i] = tokenizer.encode(batch.get(i).text(), maxSequenceLength);
+            width = Math.max(width, ids[i].length);
+        }
+        long[] shape = {batch.size(), width};
+        LongBuffer inputIds = LongBuffer.allocate(batch.size() * width);
+        LongBuffer attentionMask = LongBuffer.allocate(batch.size() * width);
+        for (long[] row : ids) {
+            for (int j = 0; j < width; j++) {
+                inputIds.put(j < row.length ? row[j] : tokenizer.padId());
+                attentionMask.put(j < row.length ? 1 : 0);
+            }
+        }
+        inputIds.flip();
+        attentionMask.flip();
+
+        Map<String, OnnxTensor> inputs = new HashMap<>();
+        try {
+            inputs.put("input_ids", OnnxTensor.createTensor(environment, inputIds, shape));
+            inputs.put("attention_mask", OnnxTensor.createTensor(environment, attentionMask, shape));
+            if (tokenTypeIds) {
+                inputs.put("token_type_ids", OnnxTensor.createTensor(environment,
+                        LongBuffer.allocate(batch.size() * width), shape));
+            }
+            long started = System.nanoTime();
+            try (OrtSession.Result result = session.run(inputs)) {
+                inferenceTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+                batchSizes.record(batch.size());
+                float[][] sentimentLogits = (float[][]) result.get(sentimentOutput).orElseThrow().getValue();
+                float[][] emotionLogits = emotionOutput != null
+                        ? (float[][]) result.get(emotionOutput).orElseThrow().getValue()
+                        : null;
+                for (int i = 0; i < batch.size(); i++) {
+                    batch.get(i).result().complete(toResponse(batch.get(i).text(), sentimentLogits[i],
+                            emotionLogits != null ? emotionLogits[i] : null));
+                }
+            }
+        } catch (Exception e) {
+            log.error("Local model inference failed for a batch of {} texts", batch.size(), e);
+            batch.forEach(p -> p.result().completeExceptionally(e));
+        } finally {
+            inputs.values().forEach(OnnxTensor::close);
+        }
+    }
+
+    private SentimentResponse toResponse(String text, float[] sentimentLogits, float[] emotionLogits) {
+        if (sentimentLogits.length != sentimentLabels.size()) {
+            throw new IllegalStateException("ONNX output " + sentimentOutput + " has " + sentimentLogits.length
+                    + " classes but sentiment.onnx.sentiment-labels lists " + sentimentLabels.size() + " labels");
+        }
+        double[] probabilities = softmax(sentimentLogits);
+        int best = 0;
+        for (int i = 1; i < probabilities.length; i++) {
+            if (probabilities[i] > probabilities[best]) {
+                best = i;
+            }
+        }
+
+        Map<SentimentResponse.EmotionType, Double> emotionScores = new EnumMap<>(SentimentResponse.EmotionType.class);
+        Arrays.stream(SentimentResponse.EmotionType.values())
+                .filter(emotion -> emotion != SentimentResponse.EmotionType.NONE)
+                .forEach(emotion -> emotionScores.put(emotion, 0.0));
+        SentimentResponse.EmotionType primaryEmotion = SentimentResponse.EmotionType.NONE;
+        double primaryScore = emotionThreshold;
+        if (emotionLogits != null) {
+            // Emotions are multi-label, so each logit gets its own sigmoid
+            for (int i = 0; i < emotionLabels.size() && i < emotionLogits.length; i++) {
+                double score = 1 / (1 + Math.exp(-emotionLogits[i]));
+                emotionScores.put(emotionLabels.get(i), Math.round(score * 100) / 100.0);
+                if (score >= primaryScore) {
+                    primaryScore = score;
+                    primaryEmotion = emotionLabels.get(i);
+                }
+            }
+        }
+
+        return SentimentResponse.builder()
+                .text(text)
+                .sentiment(sentimentLabels.get(best))
+                .confidence(Math.round(probabilities[best] * 100) / 100.0)
+                .primaryEmotion(primaryEmotion)
+                .emotionScores(emotionScores)
+                .analysis("Local model inference (" + modelName + ")")
+                .timestamp(LocalDateTime.now())
+                .build();
+    }
+
+    private static double[] softmax(float[] logits) {
+        double max = Double.NEGATIVE_INFINITY;
+        for (float logit : logits) {
+            max = Math.max(max, logit);
+        }
+        double sum = 0;
+        double[] probabilities = new double[logits.length];
+        for (int i = 0; i < logits.length; i++) {
+            probabilities[i] = Math.exp(logits[i] - max);
+            sum += probabilities[i];
+        }
+        for (int i = 0; i < probabilities.length; i++) {
+            probabilities[i] /= sum;
+        }
+        return probabilities;
+    }
+
+    private record Pending(String text, CompletableFuture<SentimentResponse> result) {
+    }
+}
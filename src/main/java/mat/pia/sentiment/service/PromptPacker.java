@@ -0,0 +1,116 @@
+package mat.pia.sentiment.service;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import mat.pia.sentiment.client.AnthropicClient;
+import mat.pia.sentiment.client.AnthropicMessageCodec;
+import mat.pia.sentiment.exception.MalformedResponseException;
+import mat.pia.sentiment.model.SentimentResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Packs several short texts into a single Claude request. Packs are sized so the expected
+ * output fits in anthropic.max-tokens and the input stays under the configured budget.
+ * A pack whose reply cannot be decoded is split in half and retried, down to single-text calls.
+ */
+@Component
+@Slf4j
+public class PromptPacker {
+
+    // Rough English average; only used for sizing, never for billing
+    private static final int CHARS_PER_TOKEN = 4;
+    private static final int PER_ENTRY_OVERHEAD_TOKENS = 6;
+
+    private final AnthropicClient anthropicClient;
+    private final AnthropicMessageCodec messageCodec;
+
+    @Getter
+    @Value("${anthropic.packing.enabled:false}")
+    private boolean enabled;
+
+    @Value("${anthropic.packing.max-items:20}")
+    private int maxItems;
+
+    @Value("${anthropic.packing.max-text-chars:500}")
+    private int maxTextChars;
+
+    @Value("${anthropic.packing.max-input-tokens:4000}")
+    private int maxInputTokens;
+
+    @Value("${anthropic.packing.output-tokens-per-item:100}")
+    private int outputTokensPerItem;
+
+    public PromptPacker(AnthropicClient anthropicClient, AnthropicMessageCodec messageCodec) {
+        this.anthropicClient = anthropicClient;
+        this.messageCodec = messageCodec;
+    }
+
+    /**
+     * Groups positions of {@code texts} into units to send. Multi-element units are packs;
+     * texts too long to pack end up alone in their own unit.
+     */
+    public List<List<Integer>> plan(List<String> texts) {
+        int itemsPerPack = Math.max(1, Math.min(maxItems, messageCodec.getMaxTokens() / outputTokensPerItem));
+        int promptTokens = estimateTokens(AnthropicMessageCodec.PACKED_SYSTEM_PROMPT);
+
+        List<List<Integer>> units = new ArrayList<>();
+        List<Integer> pack = new ArrayList<>();
+        int packTokens = promptTokens;
+        for (int i = 0; i < texts.size(); i++) {
+            String text = texts.get(i);
+            if (text.length() > maxTextChars) {
+                units.add(List.of(i));
+                continue;
+            }
+            int tokens = estimateTokens(text) + PER_ENTRY_OVERHEAD_TOKENS;
+            if (!pack.isEmpty() && (pack.size() >= itemsPerPack || packTokens + tokens > maxInputTokens)) {
+                units.add(pack);
+                pack = new ArrayList<>();
+                packTokens = promptTokens;
+            }
+            pack.add(i);
+            packTokens += tokens;
+        }
+        if (!pack.isEmpty()) {
+            units.add(pack);
+        }
+        return units;
+    }
+
+    /** Analyzes the texts of one unit; the responses are in the same order as {@code texts}. */
+    public Mono<List<SentimentResponse>> analyze(List<String> texts) {
+        if (texts.size() == 1) {
+            return anthropicClient.analyze(texts.get(0)).map(List::of);
+        }
+        return anthropicClient.createMessage(messageCodec.buildPackedRequestBody(texts))
+                .map(responseJson -> messageCodec.decodePacked(texts, responseJson))
+                .onErrorResume(MalformedResponseException.class, e -> {
+                    int half = texts.size() / 2;
+                    log.warn("Malformed packed response for {} texts ({}), splitting into {} and {}",
+                            texts.size(), e.getMessage(), half, texts.size() - half);
+                    return analyze(texts.subList(0, half))
+                            .zipWith(analyze(texts.subList(half, texts.size())), (first, second) -> {
+                                List<SentimentResponse> joined = new ArrayList<>(first);
+                                joined.addAll(second);
+                                return joined;
+                            });
+                });
+    }
+
+    /**
+     * Content key of a text answered as part of a pack: the packed prompt and the per-item output
+     * budget, so packed answers are never looked up as answers to the single-text prompt.
+     */
+    public String packedContentKey(String text) {
+        return messageCodec.contentKey(text, AnthropicMessageCodec.PACKED_SYSTEM_PROMPT, outputTokensPerItem);
+    }
+
+    private int estimateTokens(String text) {
+        return text.length() / CHARS_PER_TOKEN + 1;
+    }
+}
@@ -0,0 +1,24 @@
+package mat.pia.sentiment.service;
+
+import mat.pia.sentiment.dto.AnalysisStreamEvent;
+import mat.pia.sentiment.dto.BatchSentimentRequest;
+import mat.pia.sentiment.dto.BatchSentimentResponse;
+import mat.pia.sentiment.dto.BatchStreamEvent;
+import mat.pia.sentiment.model.SentimentRequest;
+import mat.pia.sentiment.model.SentimentResponse;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Non-blocking counterpart of {@link SentimentService}: nothing waits on the provider call,
+ * and persistence is queued or offloaded instead of running on the caller's thread.
+ */
+public interface ReactiveSentimentService {
+    Mono<SentimentResponse> analyzeAsync(SentimentRequest request);
+
+    Flux<AnalysisStreamEvent> analyzeStreamAsync(SentimentRequest request);
+
+    Mono<BatchSentimentResponse> analyzeBatchAsync(BatchSentimentRequest batchRequest);
+
+    Flux<BatchStreamEvent> streamBatchAsync(BatchSentimentRequest batchRequest);
+}
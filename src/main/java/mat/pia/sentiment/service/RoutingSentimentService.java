@@ -0,0 +1,310 @@
+package mat.pia.sentiment.service;
+
+import io.micrometer.common.KeyValues;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import mat.pia.sentiment.diagnostics.PipelineObservations;
+import mat.pia.sentiment.dto.AnalysisStreamEvent;
+import mat.pia.sentiment.dto.BatchSentimentRequest;
+import mat.pia.sentiment.dto.BatchSentimentResponse;
+import mat.pia.sentiment.dto.BatchStreamEvent;
+import mat.pia.sentiment.dto.HistoryPage;
+import mat.pia.sentiment.dto.SentimentDTO;
+import mat.pia.sentiment.exception.InvalidRequestException;
+import mat.pia.sentiment.model.SentimentEntity;
+import mat.pia.sentiment.model.SentimentRequest;
+import mat.pia.sentiment.model.SentimentResponse;
+import mat.pia.sentiment.persistence.SentimentWriter;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Entry point for analyses. The engine comes from the request's engine field, falling back
+ * to sentiment.api.provider:
+ * <ul>
+ *   <li>anthropic - the text goes to Claude (default)</li>
+ *   <li>lexicon - the text is scored in-process by {@link LexiconClassifier}</li>
+ *   <li>onnx - the text is scored by the local model in {@link OnnxSentimentEngine}</li>
+ *   <li>routing - the lexicon answers when its confidence reaches the threshold,
+ *       everything else is escalated to Claude</li>
+ * </ul>
+ * The engine that answered is recorded in the api_provider column. History queries are shared.
+ */
+@Service
+@Primary
+@Slf4j
+public class RoutingSentimentService implements SentimentService, ReactiveSentimentService {
+
+    public static final String LEXICON_PROVIDER = "LEXICON";
+    public static final String ONNX_PROVIDER = "ONNX";
+
+    enum Provider { ANTHROPIC, LEXICON, ONNX, ROUTING }
+
+    private final AnthropicSentimentService anthropicService;
+    private final LexiconClassifier lexiconClassifier;
+    private final OnnxSentimentEngine onnxEngine;
+    private final SentimentMapper sentimentMapper;
+    private final SentimentWriter sentimentWriter;
+    private final Provider provider;
+    private final double confidenceThreshold;
+    private final Counter answeredLocally;
+    private final Counter escalated;
+    private final DistributionSummary batchSizes;
+    private final PipelineObservations observations;
+
+    public RoutingSentimentService(
+            AnthropicSentimentService anthropicService,
+            LexiconClassifier lexiconClassifier,
+            ObjectProvider<OnnxSentimentEngine> onnxEngine,
+            SentimentMapper sentimentMapper,
+            SentimentWriter sentimentWriter,
+            MeterRegistry meterRegistry,
+            PipelineObservations observations,
+            @Value("${sentiment.api.provider:anthropic}") String provider,
+            @Value("${sentiment.routing.confidence-threshold:0.85}") double confidenceThreshold) {
+        this.anthropicService = anthropicService;
+        this.lexiconClassifier = lexiconClassifier;
+        this.onnxEngine = onnxEngine.getIfAvailable();
+        this.sentimentMapper = sentimentMapper;
+        this.sentimentWriter = sentimentWriter;
+        this.provider = Provider.valueOf(provider.trim().toUpperCase());
+        this.confidenceThreshold = confidenceThreshold;
+        this.answeredLocally = meterRegistry.counter("sentiment.routing.decisions", "engine", "lexicon");
+        this.escalated = meterRegistry.counter("sentiment.routing.decisions", "engine", "anthropic");
+        this.batchSizes = DistributionSummary.builder("sentiment.batch.size")
+                .description("Entries per batch request")
+                .register(meterRegistry);
+        this.observations = observations;
+        if (this.provider == Provider.ONNX && this.onnxEngine == null) {
+            throw new IllegalStateException("sentiment.api.provider=onnx requires sentiment.onnx.model-location");
+        }
+        log.info("Sentiment provider: {}{}", this.provider,
+                this.provider == Provider.ROUTING ? " (lexicon confidence threshold " + confidenceThreshold + ")" : "");
+    }
+
+    @Override
+    public SentimentResponse analyzeSentiment(SentimentRequest request) {
+        return analyzeAsync(request).block();
+    }
+
+    @Override
+    public Mono<SentimentResponse> analyzeAsync(SentimentRequest request) {
+        return Mono.defer(() -> {
+            Provider engine = providerFor(request);
+            Mono<SentimentResponse> analysis;
+            if (engine == Provider.ONNX) {
+                analysis = analyzeWithModel(request);
+            } else {
+                analysis = answerLocally(request, engine)
+                        .map(local -> sentimentWriter.writeAsync(toEntity(request, local, LEXICON_PROVIDER)).thenReturn(local))
+                        .orElseGet(() -> anthropicService.analyzeAsync(request));
+            }
+            return observations.observe("sentiment.analyze", engineTag(engine), analysis);
+        });
+    }
+
+    @Override
+    public Flux<AnalysisStreamEvent> analyzeStreamAsync(SentimentRequest request) {
+        return Flux.defer(() -> {
+            Provider engine = providerFor(request);
+            Flux<AnalysisStreamEvent> events;
+            if (engine == Provider.ONNX) {
+                events = analyzeWithModel(request).flatMapMany(RoutingSentimentService::completeEvents);
+            } else {
+                events = answerLocally(request, engine)
+                        .map(local -> sentimentWriter.writeAsync(toEntity(request, local, LEXICON_PROVIDER))
+                                .thenMany(completeEvents(local)))
+                        .orElseGet(() -> anthropicService.analyzeStreamAsync(request));
+            }
+            return observations.observe("sentiment.analyze", engineTag(engine).and("mode", "stream"), events);
+        });
+    }
+
+    @Override
+    public BatchSentimentResponse analyzeBatch(BatchSentimentRequest batchRequest) {
+        return analyzeBatchAsync(batchRequest).block();
+    }
+
+    @Override
+    public Mono<BatchSentimentResponse> analyzeBatchAsync(BatchSentimentRequest batchRequest) {
+        batchSizes.record(batchRequest.getRequests().size());
+        return observations.observe("sentiment.batch", KeyValues.of("mode", "collect"), collectBatch(batchRequest));
+    }
+
+    private Mono<BatchSentimentResponse> collectBatch(BatchSentimentRequest batchRequest) {
+        if (allAnthropic(batchRequest.getRequests())) {
+            return anthropicService.analyzeBatchAsync(batchRequest);
+        }
+        int total = batchRequest.getRequests().size();
+        return routeBatch(batchRequest)
+                .collectList()
+                .map(events -> BatchSummaries.toResponse(total, events));
+    }
+
+    @Override
+    public Flux<BatchStreamEvent> streamBatchAsync(BatchSentimentRequest batchRequest) {
+        batchSizes.record(batchRequest.getRequests().size());
+        return observations.observe("sentiment.batch", KeyValues.of("mode", "stream"), routeBatch(batchRequest));
+    }
+
+    private Flux<BatchStreamEvent> routeBatch(BatchSentimentRequest batchRequest) {
+        List<SentimentRequest> requests = batchRequest.getRequests();
+        if (allAnthropic(requests)) {
+            return anthropicService.streamBatchAsync(batchRequest);
+        }
+
+        return Flux.defer(() -> {
+            List<BatchStreamEvent> local = new ArrayList<>();
+            List<SentimentEntity> localEntities = new ArrayList<>();
+            List<Integer> modelIndexes = new ArrayList<>();
+            List<SentimentRequest> escalatedRequests = new ArrayList<>();
+            List<Integer> escalatedIndexes = new ArrayList<>();
+            for (int i = 0; i < requests.size(); i++) {
+                Provider engine = providerFor(requests.get(i));
+                if (engine == Provider.ONNX) {
+                    modelIndexes.add(i);
+                    continue;
+                }
+                Optional<SentimentResponse> answer = answerLocally(requests.get(i), engine);
+                if (answer.isPresent()) {
+                    local.add(BatchStreamEvent.result(i, answer.get()));
+                    localEntities.add(toEntity(requests.get(i), answer.get(), LEXICON_PROVIDER));
+                } else {
+                    escalatedRequests.add(requests.get(i));
+                    escalatedIndexes.add(i);
+                }
+            }
+
+            // The engine batches queued texts itself, so entries are submitted individually
+            Flux<BatchStreamEvent> model = Flux.fromIterable(modelIndexes)
+                    .flatMap(i -> analyzeWithModel(requests.get(i))
+                            .map(result -> BatchStreamEvent.result(i, result))
+                            .onErrorResume(e -> {
+                                log.warn("Local model failed for batch entry {}: {}", i, e.getMessage());
+                                return Mono.just(BatchStreamEvent.failed(i, e.getMessage()));
+                            }));
+            Flux<BatchStreamEvent> remote = escalatedRequests.isEmpty()
+                    ? Flux.empty()
+                    : anthropicService.streamBatchAsync(new BatchSentimentRequest(escalatedRequests))
+                            .filter(event -> event.getType() != BatchStreamEvent.Type.SUMMARY)
+                            .map(event -> event.getType() == BatchStreamEvent.Type.RESULT
+                                    ? BatchStreamEvent.result(escalatedIndexes.get(event.getIndex()), event.getResult())
+                                    : BatchStreamEvent.failed(escalatedIndexes.get(event.getIndex()), event.getError()));
+
+            List<SentimentResponse> completed = new ArrayList<>();
+            return sentimentWriter.writeAllAsync(localEntities)
+                    .thenMany(Flux.fromIterable(local).concatWith(Flux.merge(model, remote)))
+                    .doOnNext(event -> {
+                        if (event.getType() == BatchStreamEvent.Type.RESULT) {
+                            completed.add(event.getResult());
+                        }
+                    })
+                    .concatWith(Mono.fromSupplier(() ->
+                            BatchStreamEvent.summary(BatchSummaries.summarize(requests.size(), completed))));
+        });
+    }
+
+    private Provider providerFor(SentimentRequest request) {
+        if (request.getEngine() == null || request.getEngine().isBlank()) {
+            return provider;
+        }
+        Provider requested = Provider.valueOf(request.getEngine().trim().toUpperCase());
+        if (requested == Provider.ONNX && onnxEngine == null) {
+            throw new InvalidRequestException("The onnx engine is not enabled; set sentiment.onnx.model-location");
+        }
+        return requested;
+    }
+
+    private static KeyValues engineTag(Provider engine) {
+        return KeyValues.of("engine", engine.name().toLowerCase());
+    }
+
+    private boolean allAnthropic(List<SentimentRequest> requests) {
+        return requests.stream().allMatch(request -> providerFor(request) == Provider.ANTHROPIC);
+    }
+
+    private Mono<SentimentResponse> analyzeWithModel(SentimentRequest request) {
+        return onnxEngine.classify(request.getText())
+                .flatMap(result -> sentimentWriter.writeAsync(toEntity(request, result, ONNX_PROVIDER)).thenReturn(result));
+    }
+
+    /** The lexicon's answer if the engine lets it answer this text. */
+    private Optional<SentimentResponse> answerLocally(SentimentRequest request, Provider engine) {
+        if (engine != Provider.LEXICON && engine != Provider.ROUTING) {
+            return Optional.empty();
+        }
+        SentimentResponse local = lexiconClassifier.classify(request.getText());
+        if (engine == Provider.LEXICON || local.getConfidence() >= confidenceThreshold) {
+            answeredLocally.increment();
+            return Optional.of(local);
+        }
+        log.debug("Escalating text with lexicon confidence {} to Claude", local.getConfidence());
+        escalated.increment();
+        return Optional.empty();
+    }
+
+    private static Flux<AnalysisStreamEvent> completeEvents(SentimentResponse result) {
+        return Flux.just(
+                AnalysisStreamEvent.partial(result.getSentiment(), result.getPrimaryEmotion()),
+                AnalysisStreamEvent.complete(result));
+    }
+
+    private SentimentEntity toEntity(SentimentRequest request, SentimentResponse response, String apiProvider) {
+        return sentimentMapper.toEntity(request, response, apiProvider, null);
+    }
+
+    @Override
+    public SentimentDTO findById(Long id) {
+        return anthropicService.findById(id);
+    }
+
+    @Override
+    public List<SentimentDTO> findAll() {
+        return anthropicService.findAll();
+    }
+
+    @Override
+    public List<SentimentDTO> findBySentimentType(SentimentResponse.SentimentType sentimentType) {
+        return anthropicService.findBySentimentType(sentimentType);
+    }
+
+    @Override
+    public List<SentimentDTO> findByPrimaryEmotion(SentimentResponse.EmotionType emotionType) {
+        return anthropicService.findByPrimaryEmotion(emotionType);
+    }
+
+    @Override
+    public List<SentimentDTO> findBySentimentAndEmotion(
+            SentimentResponse.SentimentType sentimentType,
+            SentimentResponse.EmotionType emotionType) {
+        return anthropicService.findBySentimentAndEmotion(sentimentType, emotionType);
+    }
+
+    @Override
+    public HistoryPage findPage(
+            SentimentResponse.SentimentType sentimentType,
+            SentimentResponse.EmotionType emotionType,
+            String cursor,
+            int size) {
+        return anthropicService.findPage(sentimentType, emotionType, cursor, size);
+    }
+
+    @Override
+    public void streamHistory(
+            SentimentResponse.SentimentType sentimentType,
+            SentimentResponse.EmotionType emotionType,
+            Consumer<SentimentDTO> consumer) {
+        anthropicService.streamHistory(sentimentType, emotionType, consumer);
+    }
+}
@@ -0,0 +1,151 @@
+package mat.pia.sentiment.service;
+
+import mat.pia.sentiment.dto.AnalyticsSummary;
+import mat.pia.sentiment.dto.SourceAnalytics;
+import mat.pia.sentiment.dto.TimeBucketAnalytics;
+import mat.pia.sentiment.exception.InvalidRequestException;
+import mat.pia.sentiment.model.SentimentResponse;
+import mat.pia.sentiment.repository.SentimentRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Sentiment and emotion distributions over a time window, computed by grouped queries in the
+ * database so only one row per group crosses the wire. Queries group by sentiment as well,
+ * and totals and average confidence are combined here from those groups.
+ */
+@Service
+public class SentimentAnalyticsService {
+
+    private final SentimentRepository sentimentRepository;
+    private final Duration defaultWindow;
+    private final int maxBuckets;
+
+    public SentimentAnalyticsService(
+            SentimentRepository sentimentRepository,
+            @Value("${sentiment.analytics.default-window:P7D}") Duration defaultWindow,
+            @Value("${sentiment.analytics.max-buckets:2000}") int maxBuckets) {
+        this.sentimentRepository = sentimentRepository;
+        this.defaultWindow = defaultWindow;
+        this.maxBuckets = maxBuckets;
+    }
+
+    @Transactional(readOnly = true)
+    public AnalyticsSummary summarize(LocalDateTime from, LocalDateTime to) {
+        Window window = window(from, to);
+        Group total = new Group();
+        sentimentRepository.aggregateBySentiment(window.from(), window.to()).forEach(total::add);
+
+        Map<SentimentResponse.EmotionType, Long> emotionCounts = new EnumMap<>(SentimentResponse.EmotionType.class);
+        for (SentimentRepository.EmotionCount count : sentimentRepository.countByPrimaryEmotion(window.from(), window.to())) {
+            if (count.getEmotion() != null) {
+                emotionCounts.put(count.getEmotion(), count.getCount());
+            }
+        }
+
+        return AnalyticsSummary.builder()
+                .from(window.from())
+                .to(window.to())
+                .total(total.count)
+                .averageConfidence(total.averageConfidence())
+                .sentimentCounts(total.sentimentCounts)
+                .emotionCounts(emotionCounts)
+                .build();
+    }
+
+    @Transactional(readOnly = true)
+    public List<SourceAnalytics> bySource(LocalDateTime from, LocalDateTime to) {
+        Window window = window(from, to);
+        Map<String, Group> groups = group(
+                sentimentRepository.aggregateBySourceAndSentiment(window.from(), window.to()),
+                SentimentRepository.SourceAggregate::getSource);
+
+        List<SourceAnalytics> sources = new ArrayList<>(groups.size());
+        groups.forEach((source, group) -> sources.add(SourceAnalytics.builder()
+                .source(source)
+                .total(group.count)
+                .averageConfidence(group.averageConfidence())
+                .sentimentCounts(group.sentimentCounts)
+                .build()));
+        sources.sort((a, b) -> Long.compare(b.getTotal(), a.getTotal()));
+        return sources;
+    }
+
+    @Transactional(readOnly = true)
+    public List<TimeBucketAnalytics> timeline(String bucket, LocalDateTime from, LocalDateTime to) {
+        Window window = window(from, to);
+        boolean hourly = "hour".equalsIgnoreCase(bucket);
+        if (!hourly && !"day".equalsIgnoreCase(bucket)) {
+            throw new InvalidRequestException("Unsupported analytics bucket: " + bucket + " (use hour or day)");
+        }
+        Duration bucketSize = hourly ? Duration.ofHours(1) : Duration.ofDays(1);
+        long buckets = Duration.between(window.from(), window.to()).dividedBy(bucketSize) + 1;
+        if (buckets > maxBuckets) {
+            throw new InvalidRequestException("Analytics window spans " + buckets + " " + bucket
+                    + " buckets, more than the maximum of " + maxBuckets);
+        }
+
+        List<SentimentRepository.BucketAggregate> rows = hourly
+                ? sentimentRepository.aggregateByHourAndSentiment(window.from(), window.to())
+                : sentimentRepository.aggregateByDayAndSentiment(window.from(), window.to());
+        Map<LocalDateTime, Group> groups = group(rows, SentimentRepository.BucketAggregate::getBucket);
+
+        List<TimeBucketAnalytics> timeline = new ArrayList<>(groups.size());
+        groups.forEach((start, group) -> timeline.add(TimeBucketAnalytics.builder()
+                .start(start)
+                .total(group.count)
+                .averageConfidence(group.averageConfidence())
+                .sentimentCounts(group.sentimentCounts)
+                .build()));
+        return timeline;
+    }
+
+    private Window window(LocalDateTime from, LocalDateTime to) {
+        LocalDateTime end = to != null ? to : LocalDateTime.now();
+        LocalDateTime start = from != null ? from : end.minus(defaultWindow);
+        if (!start.isBefore(end)) {
+            throw new InvalidRequestException("Analytics window must start before it ends");
+        }
+        return new Window(start, end);
+    }
+
+    /** Folds per-sentiment rows into one group per key, keeping the order the rows came in. */
+    private static <A extends SentimentRepository.SentimentAggregate, K> Map<K, Group> group(
+            List<A> rows, Function<A, K> key) {
+        Map<K, Group> groups = new LinkedHashMap<>();
+        for (A row : rows) {
+            groups.computeIfAbsent(key.apply(row), k -> new Group()).add(row);
+        }
+        return groups;
+    }
+
+    private record Window(LocalDateTime from, LocalDateTime to) {
+    }
+
+    private static final class Group {
+        private final Map<SentimentResponse.SentimentType, Long> sentimentCounts =
+                new EnumMap<>(SentimentResponse.SentimentType.class);
+        private long count;
+        private double confidenceSum;
+
+        private void add(SentimentRepository.SentimentAggregate row) {
+            sentimentCounts.merge(row.getSentiment(), row.getCount(), Long::sum);
+            count += row.getCount();
+            confidenceSum += row.getAverageConfidence() * row.getCount();
+        }
+
+        private double averageConfidence() {
+            return count == 0 ? 0.0 : confidenceSum / count;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package mat.pia.sentiment.service;
+
+import mat.pia.sentiment.dto.SentimentDTO;
+import mat.pia.sentiment.model.SentimentEntity;
+import mat.pia.sentiment.model.SentimentRequest;
+import mat.pia.sentiment.model.SentimentResponse;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.Map;
+
+@Component
+public class SentimentMapper {
+
+    public SentimentEntity toEntity(SentimentRequest request, SentimentResponse response,
+                                    String apiProvider, String contentHash) {
+        return SentimentEntity.builder()
+                .text(request.getText())
+                .sentiment(response.getSentiment())
+                .primaryEmotion(response.getPrimaryEmotion())
+                .emotionScores(response.getEmotionScores())
+                .confidence(response.getConfidence())
+                .analysis(response.getAnalysis())
+                .createdAt(LocalDateTime.now())
+                .source(request.getSource())
+                .apiProvider(apiProvider)
+                .contentHash(contentHash)
+                .build();
+    }
+
+    public SentimentResponse toResponse(SentimentEntity entity) {
+        return SentimentResponse.builder()
+                .text(entity.getText())
+                .sentiment(entity.getSentiment())
+                .primaryEmotion(entity.getPrimaryEmotion())
+                .emotionScores(emotionScores(entity))
+                .confidence(entity.getConfidence())
+                .analysis(entity.getAnalysis())
+                .build();
+    }
+
+    public SentimentDTO toDto(SentimentEntity entity) {
+        return SentimentDTO.builder()
+                .id(entity.getId())
+                .text(entity.getText())
+                .sentiment(entity.getSentiment())
+                .primaryEmotion(entity.getPrimaryEmotion())
+                .emotionScores(emotionScores(entity))
+                .confidence(entity.getConfidence())
+                .analysis(entity.getAnalysis())
+                .createdAt(entity.getCreatedAt())
+                .source(entity.getSource())
+                .apiProvider(entity.getApiProvider())
+                .build();
+    }
+
+    // Decoded from the packed column by EmotionScoresConverter when the row is read
+    private static Map<SentimentResponse.EmotionType, Double> emotionScores(SentimentEntity entity) {
+        Map<SentimentResponse.EmotionType, Double> scores = entity.getEmotionScores();
+        return scores != null ? scores : new EnumMap<>(SentimentResponse.EmotionType.class);
+    }
+}
@@ -2,11 +2,13 @@ package mat.pia.sentiment.service;
 
 import mat.pia.sentiment.dto.BatchSentimentRequest;
 import mat.pia.sentiment.dto.BatchSentimentResponse;
+import mat.pia.sentiment.dto.HistoryPage;
 import mat.pia.sentiment.dto.SentimentDTO;
 import mat.pia.sentiment.model.SentimentRequest;
 import mat.pia.sentiment.model.SentimentResponse;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface SentimentService {
     SentimentResponse analyzeSentiment(SentimentRequest request);
@@ -24,4 +26,15 @@ public interface SentimentService {
     List<SentimentDTO> findBySentimentAndEmotion(
         SentimentResponse.SentimentType sentimentType, 
         SentimentResponse.EmotionType emotionType);
+    
+    HistoryPage findPage(
+        SentimentResponse.SentimentType sentimentType, 
+        SentimentResponse.EmotionType emotionType, 
+        String cursor, 
+        int size);
+    
+    void streamHistory(
+        SentimentResponse.SentimentType sentimentType, 
+        SentimentResponse.EmotionType emotionType, 
+        Consumer<SentimentDTO> consumer);
 }
\ No newline at end of file
@@ -0,0 +1,159 @@
+package mat.pia.sentiment.service;
+
+import org.springframework.core.io.Resource;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * BERT-style WordPiece tokenizer for the local model: whitespace and punctuation splitting,
+ * optional lowercasing with accent stripping, then greedy longest-match against vocab.txt.
+ */
+class WordPieceTokenizer {
+
+    private static final String CLS = "[CLS]";
+    private static final String SEP = "[SEP]";
+    private static final String UNK = "[UNK]";
+    private static final String PAD = "[PAD]";
+    private static final int MAX_WORD_LENGTH = 100;
+
+    private final Map<String, Integer> vocab;
+    private final boolean lowercase;
+    private final int clsId;
+    private final int sepId;
+    private final int unkId;
+    private final int padId;
+
+    WordPieceTokenizer(Resource vocabLocation, boolean lowercase) {
+        this.vocab = load(vocabLocation);
+        this.lowercase = lowercase;
+        this.clsId = require(CLS);
+        this.sepId = require(SEP);
+        this.unkId = require(UNK);
+        this.padId = require(PAD);
+    }
+
+    int padId() {
+        return padId;
+    }
+
+    /** Token ids framed by [CLS] and [SEP], truncated to at most maxLength ids. */
+    long[] encode(String text, int maxLength) {
+        List<Integer> ids = new ArrayList<>();
+        ids.add(clsId);
+        for (String word : basicTokens(text)) {
+            wordPieces(word, ids);
+            if (ids.size() >= maxLength - 1) {
+                break;
+            }
+        }
+        int length = Math.min(ids.size(), maxLength - 1);
+        long[] encoded = new long[length + 1];
+        for (int i = 0; i < length; i++) {
+            encoded[i] = ids.get(i);
+        }
+        encoded[length] = sepId;
+        return encoded;
+    }
+
+    private List<String> basicTokens(String text) {
+        String normalized = text;
+        if (lowercase) {
+            normalized = Normalizer.normalize(text.toLowerCase(), Normalizer.Form.NFD)
+                    .replaceAll("\\p{Mn}", "");
+        }
+        List<String> tokens = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        for (int i = 0; i < normalized.length(); i++) {
+            char c = normalized.charAt(i);
+            if (Character.isWhitespace(c) || Character.isISOControl(c)) {
+                flush(current, tokens);
+            } else if (isPunctuation(c)) {
+                flush(current, tokens);
+                tokens.add(String.valueOf(c));
+            } else {
+                current.append(c);
+            }
+        }
+        flush(current, tokens);
+        return tokens;
+    }
+
+    private void wordPieces(String word, List<Integer> ids) {
+        if (word.length() > MAX_WORD_LENGTH) {
+            ids.add(unkId);
+            return;
+        }
+        List<Integer> pieces = new ArrayList<>();
+        int start = 0;
+        while (start < word.length()) {
+            int end = word.length();
+            Integer piece = null;
+            while (start < end) {
+                String candidate = (start > 0 ? "##" : "") + word.substring(start, end);
+                piece = vocab.get(candidate);
+                if (piece != null) {
+                    break;
+                }
+                end--;
+            }
+            if (piece == null) {
+                ids.add(unkId);
+                return;
+            }
+            pieces.add(piece);
+            start = end;
+        }
+        ids.addAll(pieces);
+    }
+
+    private static void flush(StringBuilder current, List<String> tokens) {
+        if (!current.isEmpty()) {
+            tokens.add(current.toString());
+            current.setLength(0);
+        }
+    }
+
+    private static boolean isPunctuation(char c) {
+        if ((c >= 33 && c <= 47) || (c >= 58 && c <= 64) || (c >= 91 && c <= 96) || (c >= 123 && c <= 126)) {
+            return true;
+        }
+        int type = Character.getType(c);
+        return type == Character.CONNECTOR_PUNCTUATION || type == Character.DASH_PUNCTUATION
+                || type == Character.START_PUNCTUATION || type == Character.END_PUNCTUATION
+                || type == Character.INITIAL_QUOTE_PUNCTUATION || type == Character.FINAL_QUOTE_PUNCTUATION
+                || type == Character.OTHER_PUNCTUATION;
+    }
+
+    private int require(String token) {
+        Integer id = vocab.get(token);
+        if (id == null) {
+            throw new IllegalStateException("Vocabulary has no " + token + " token");
+        }
+        return id;
+    }
+
+    private static Map<String, Integer> load(Resource location) {
+        Map<String, Integer> entries = new HashMap<>();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(location.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            int id = 0;
+            while ((line = reader.readLine()) != null) {
+                // The id is the line number, even if a token repeats
+                entries.putIfAbsent(line.strip(), id++);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to load model vocabulary from " + location, e);
+        }
+        return entries;
+    }
+}
@@ -0,0 +1,106 @@
+package mat.pia.sentiment.client;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import mat.pia.sentiment.exception.ServiceBusyException;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ClientRequest request = ClientRequest.create(HttpMethod.POST, URI.create("http://localhost/v1/messages")).build();
+
+    @Test
+    void holdsThePermitUntilTheBodyHasBeenRead() {
+        AdaptiveConcurrencyLimiter limiter = limiter(1, 10);
+        Sinks.Many<DataBuffer> body = Sinks.many().unicast().onBackpressureBuffer();
+
+        ClientResponse first = limiter.filter().filter(request, respondWith(HttpStatus.OK, body)).block();
+        Disposable firstRead = first.bodyToMono(String.class).subscribe();
+        Mono<ClientResponse> second = limiter.filter().filter(request, respondWith(HttpStatus.OK, Sinks.many().unicast().onBackpressureBuffer()));
+        Disposable secondCall = second.subscribe();
+
+        assertThat(gauge("in-flight")).isEqualTo(1);
+        assertThat(gauge("queued")).isEqualTo(1);
+
+        body.tryEmitNext(DefaultDataBufferFactory.sharedInstance.wrap("{}".getBytes(StandardCharsets.UTF_8)));
+        body.tryEmitComplete();
+
+        assertThat(gauge("queued")).isZero();
+        assertThat(gauge("in-flight")).isEqualTo(1);
+        firstRead.dispose();
+        secondCall.dispose();
+    }
+
+    @Test
+    void growsOnSuccessAndBacksOffOnOverload() {
+        AdaptiveConcurrencyLimiter limiter = limiter(8, 10);
+
+        limiter.filter().filter(request, respondWith(HttpStatus.OK, "{}"))
+                .flatMap(response -> response.bodyToMono(String.class)).block();
+        assertThat(gauge("limit")).isEqualTo(8.125);
+
+        limiter.filter().filter(request, respondWith(HttpStatus.TOO_MANY_REQUESTS, "{}"))
+                .flatMap(response -> response.bodyToMono(String.class)).block();
+        assertThat(gauge("limit")).isEqualTo(8.125 * 0.7);
+        assertThat(gauge("in-flight")).isZero();
+    }
+
+    @Test
+    void cancelledCallFreesItsPermitWithoutMovingTheLimit() {
+        AdaptiveConcurrencyLimiter limiter = limiter(8, 10);
+        Sinks.Many<DataBuffer> body = Sinks.many().unicast().onBackpressureBuffer();
+
+        ClientResponse response = limiter.filter().filter(request, respondWith(HttpStatus.OK, body)).block();
+        response.bodyToMono(String.class).subscribe().dispose();
+
+        assertThat(gauge("in-flight")).isZero();
+        assertThat(gauge("limit")).isEqualTo(8);
+    }
+
+    @Test
+    void shedsCallsOnceTheQueueIsFull() {
+        AdaptiveConcurrencyLimiter limiter = limiter(1, 1);
+        ExchangeFunction pending = ignored -> Mono.never();
+
+        Disposable holder = limiter.filter().filter(request, pending).subscribe();
+        Disposable waiter = limiter.filter().filter(request, pending).subscribe();
+
+        StepVerifier.create(limiter.filter().filter(request, pending))
+                .expectError(ServiceBusyException.class)
+                .verify();
+        holder.dispose();
+        waiter.dispose();
+    }
+
+    private AdaptiveConcurrencyLimiter limiter(int initialLimit, int maxQueued) {
+        return new AdaptiveConcurrencyLimiter(true, initialLimit, 1, 64, 0.7, maxQueued, meterRegistry);
+    }
+
+    private double gauge(String name) {
+        return meterRegistry.get("anthropic.concurrency." + name).gauge().value();
+    }
+
+    private static ExchangeFunction respondWith(HttpStatus status, Sinks.Many<DataBuffer> body) {
+        return ignored -> Mono.just(ClientResponse.create(status).body(body.asFlux()).build());
+    }
+
+    private static ExchangeFunction respondWith(HttpStatus status, String body) {
+        return ignored -> Mono.just(ClientResponse.create(status).body(body).build());
+    }
+}
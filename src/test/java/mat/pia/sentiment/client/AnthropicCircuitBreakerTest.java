@@ -0,0 +1,130 @@
+package mat.pia.sentiment.client;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import mat.pia.sentiment.client.AnthropicCircuitBreaker.State;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AnthropicCircuitBreakerTest {
+
+    @Test
+    void staysClosedUntilTheMinimumNumberOfCalls() {
+        AnthropicCircuitBreaker breaker = breaker(Duration.ofMinutes(1));
+
+        fail(breaker, 3);
+
+        assertThat(breaker.getState()).isEqualTo(State.CLOSED);
+        assertThat(breaker.tryAcquire()).isTrue();
+    }
+
+    @Test
+    void opensWhenTheFailureRateReachesTheThreshold() {
+        AnthropicCircuitBreaker breaker = breaker(Duration.ofMinutes(1));
+
+        succeed(breaker, 2);
+        fail(breaker, 2);
+
+        assertThat(breaker.getState()).isEqualTo(State.OPEN);
+        assertThat(breaker.tryAcquire()).isFalse();
+        assertThat(breaker.remainingOpen()).isPositive();
+    }
+
+    @Test
+    void onlyTheLastWindowOfCallsCounts() {
+        AnthropicCircuitBreaker breaker = breaker(Duration.ofMinutes(1));
+
+        succeed(breaker, 6);
+        fail(breaker, 2);
+        assertThat(breaker.getState()).isEqualTo(State.CLOSED);
+        // 3 failures out of 9 calls overall, but 3 out of the last 6
+        fail(breaker, 1);
+
+        assertThat(breaker.getState()).isEqualTo(State.OPEN);
+    }
+
+    @Test
+    void letsProbesThroughOnceTheOpenDurationHasPassed() {
+        AnthropicCircuitBreaker breaker = breaker(Duration.ZERO);
+        fail(breaker, 4);
+        assertThat(breaker.getState()).isEqualTo(State.OPEN);
+
+        assertThat(breaker.tryAcquire()).isTrue();
+        assertThat(breaker.getState()).isEqualTo(State.HALF_OPEN);
+        assertThat(breaker.tryAcquire()).isTrue();
+        assertThat(breaker.tryAcquire()).as("only two probes at a time").isFalse();
+    }
+
+    @Test
+    void closesOnceAllProbesSucceed() {
+        AnthropicCircuitBreaker breaker = halfOpen();
+
+        breaker.onSuccess();
+        assertThat(breaker.getState()).isEqualTo(State.HALF_OPEN);
+        breaker.onSuccess();
+
+        assertThat(breaker.getState()).isEqualTo(State.CLOSED);
+        // The window starts empty again, so a single failure does not reopen it
+        fail(breaker, 1);
+        assertThat(breaker.getState()).isEqualTo(State.CLOSED);
+    }
+
+    @Test
+    void reopensWhenAProbeFails() {
+        AnthropicCircuitBreaker breaker = halfOpen();
+
+        breaker.onSuccess();
+        breaker.onFailure();
+
+        assertThat(breaker.getState()).isEqualTo(State.OPEN);
+    }
+
+    @Test
+    void ignoredProbeGivesItsSlotBack() {
+        AnthropicCircuitBreaker breaker = halfOpen();
+        assertThat(breaker.tryAcquire()).isFalse();
+
+        breaker.onIgnored();
+
+        assertThat(breaker.tryAcquire()).isTrue();
+    }
+
+    @Test
+    void disabledBreakerNeverRejects() {
+        AnthropicCircuitBreaker breaker = new AnthropicCircuitBreaker(
+                false, 6, 4, 0.5, Duration.ofMinutes(1), 2, new SimpleMeterRegistry());
+
+        fail(breaker, 10);
+
+        assertThat(breaker.getState()).isEqualTo(State.CLOSED);
+        assertThat(breaker.tryAcquire()).isTrue();
+    }
+
+    /** Window of 6 calls, opens from 4 calls at a 50% failure rate, 2 probes. */
+    private static AnthropicCircuitBreaker breaker(Duration openDuration) {
+        return new AnthropicCircuitBreaker(true, 6, 4, 0.5, openDuration, 2, new SimpleMeterRegistry());
+    }
+
+    /** A breaker whose two probe slots have both been taken. */
+    private static AnthropicCircuitBreaker halfOpen() {
+        AnthropicCircuitBreaker breaker = breaker(Duration.ZERO);
+        fail(breaker, 4);
+        breaker.tryAcquire();
+        breaker.tryAcquire();
+        return breaker;
+    }
+
+    private static void fail(AnthropicCircuitBreaker breaker, int calls) {
+        for (int i = 0; i < calls; i++) {
+            breaker.onFailure();
+        }
+    }
+
+    private static void succeed(AnthropicCircuitBreaker breaker, int calls) {
+        for (int i = 0; i < calls; i++) {
+            breaker.onSuccess();
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package mat.pia.sentiment.client;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import mat.pia.sentiment.exception.ApiException;
+import mat.pia.sentiment.exception.MalformedResponseException;
+import mat.pia.sentiment.model.SentimentResponse;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Checks the streaming decoder against the JsonNode tree decoder it replaced, kept below as
+ * {@link TreeDecoder}, on well-formed and odd replies.
+ */
+class AnthropicMessageCodecTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AnthropicMessageCodec codec = new AnthropicMessageCodec(objectMapper, meterRegistry);
+    private final TreeDecoder reference = new TreeDecoder(objectMapper);
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            // Well-formed
+            "{\"sentiment\":\"POSITIVE\",\"confidence\":0.92,\"analysis\":\"Upbeat\",\"primaryEmotion\":\"JOY\","
+                    + "\"emotionScores\":{\"JOY\":0.9,\"SADNESS\":0.05,\"ANGER\":0,\"FEAR\":0,\"SURPRISE\":0.2,"
+                    + "\"DISGUST\":0,\"TRUST\":0.4,\"ANTICIPATION\":0.3}}",
+            // Prose and a code fence around the object
+            "Here is the analysis:\n```json\n{\"sentiment\":\"negative\",\"confidence\":0.7,\"primaryEmotion\":\"anger\"}\n```\nThanks!",
+            // Unknown labels fall back to the defaults
+            "{\"sentiment\":\"MIXED\",\"primaryEmotion\":\"BOREDOM\",\"confidence\":0.4}",
+            // Missing fields keep their defaults and there are no emotion scores
+            "{}",
+            // Values of the wrong type
+            "{\"sentiment\":\"Neutral\",\"confidence\":\"0.65\",\"analysis\":42,\"emotionScores\":{\"JOY\":\"0.5\",\"FEAR\":true,\"ANGER\":[1],\"joy\":0.9,\"NONE\":1}}",
+            "{\"sentiment\":null,\"primaryEmotion\":null,\"confidence\":null,\"analysis\":null,\"emotionScores\":null}",
+            "{\"sentiment\":[\"POSITIVE\"],\"analysis\":{\"text\":\"nested\"},\"emotionScores\":[0.5]}",
+            // Nested objects and extra fields are skipped
+            "{\"meta\":{\"sentiment\":\"NEGATIVE\",\"deep\":[{\"x\":1}]},\"sentiment\":\"POSITIVE\",\"index\":3,\"extra\":true}",
+            // Repeated keys: the last one wins
+            "{\"sentiment\":\"NEGATIVE\",\"sentiment\":\"POSITIVE\"}",
+            // Escapes and non-ASCII text in the analysis
+            "{\"sentiment\":\"POSITIVE\",\"analysis\":\"Said \\\"wow\\\" \\u2014 caf\\u00e9 \\ud83d\\ude00\\nnext line\"}",
+            // No JSON object at all
+            "I cannot analyze this text.",
+            ""
+    })
+    void decodesClaudesTextLikeTheTreeDecoder(String content) {
+        String reply = message(content);
+
+        assertSameResult(codec.decode("text", reply), reference.decode("text", reply));
+        assertSameResult(codec.decodeContent("text", content), reference.decodeContent("text", content));
+    }
+
+    @Test
+    void readsOnlyTheFirstContentBlockWhereverItSits() {
+        String reply = "{\"usage\":{\"input_tokens\":7,\"output_tokens\":3},\"id\":\"msg_1\","
+                + "\"content\":[{\"text\":\"{\\\"sentiment\\\":\\\"NEGATIVE\\\"}\",\"type\":\"text\"},"
+                + "{\"type\":\"text\",\"text\":\"{\\\"sentiment\\\":\\\"POSITIVE\\\"}\"}],"
+                + "\"stop_reason\":\"end_turn\"}";
+
+        assertSameResult(codec.decode("text", reply), reference.decode("text", reply));
+        assertThat(codec.decode("text", reply).getSentiment()).isEqualTo(SentimentResponse.SentimentType.NEGATIVE);
+    }
+
+    @Test
+    void replyWithoutContentIsTheFallback() {
+        String reply = "{\"type\":\"message\",\"content\":[]}";
+
+        assertSameResult(codec.decode("text", reply), reference.decode("text", reply));
+    }
+
+    @Test
+    void countsUsageLikeTheTreeDecoder() {
+        codec.decode("text", "{\"content\":[{\"type\":\"text\",\"text\":\"{}\"}],\"usage\":{\"input_tokens\":10,"
+                + "\"cache_creation_input_tokens\":5,\"cache_read_input_tokens\":20,\"output_tokens\":8,\"server_tool_use\":{\"n\":1}}}");
+
+        assertThat(meterRegistry.get("anthropic.tokens").tag("type", "input").counter().count()).isEqualTo(35);
+        assertThat(meterRegistry.get("anthropic.tokens").tag("type", "output").counter().count()).isEqualTo(8);
+    }
+
+    @Test
+    void rejectsRepliesThatAreNotJson() {
+        assertThatThrownBy(() -> codec.decode("text", "<html>Bad gateway</html>")).isInstanceOf(ApiException.class);
+        assertThatThrownBy(() -> codec.decode("text", "{\"content\":[{\"text\":")).isInstanceOf(ApiException.class);
+    }
+
+    @Test
+    void decodesPackedRepliesLikeTheTreeDecoder() {
+        List<String> texts = List.of("first", "second", "third");
+        String reply = message("Results:\n[{\"index\":2,\"sentiment\":\"NEGATIVE\",\"primaryEmotion\":\"SADNESS\"},"
+                + "\"stray\",{\"index\":0,\"sentiment\":\"POSITIVE\",\"confidence\":0.9,\"emotionScores\":{\"JOY\":0.8}},"
+                + "{\"index\":7,\"sentiment\":\"NEGATIVE\"},{\"index\":1}]");
+
+        List<SentimentResponse> decoded = codec.decodePacked(texts, reply);
+        List<SentimentResponse> expected = reference.decodePacked(texts, reply);
+
+        assertThat(decoded).hasSize(3);
+        for (int i = 0; i < texts.size(); i++) {
+            assertSameResult(decoded.get(i), expected.get(i));
+        }
+    }
+
+    @Test
+    void rejectsPackedRepliesThatMissAnIndexOrHoldNoArray() {
+        List<String> texts = List.of("first", "second");
+
+        assertThatThrownBy(() -> codec.decodePacked(texts, message("[{\"index\":0}]")))
+                .isInstanceOf(MalformedResponseException.class)
+                .hasMessageContaining("missing index 1");
+        assertThatThrownBy(() -> codec.decodePacked(texts, message("{\"index\":0}")))
+                .isInstanceOf(MalformedResponseException.class);
+        assertThatThrownBy(() -> codec.decodePacked(texts, message("[{\"index\":0},{\"index\":")))
+                .isInstanceOf(MalformedResponseException.class);
+    }
+
+    private static void assertSameResult(SentimentResponse actual, SentimentResponse expected) {
+        assertThat(actual).usingRecursiveComparison()
+                .ignoringFields("timestamp")
+                .isEqualTo(expected);
+    }
+
+    private String message(String content) {
+        Map<String, Object> message = Map.of(
+                "type", "message",
+                "content", List.of(Map.of("type", "text", "text", content)),
+                "usage", Map.of("input_tokens", 12, "output_tokens", 34));
+        try {
+            return objectMapper.writeValueAsString(message);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** The JsonNode tree decoding the codec used before the streaming decoder. */
+    private static final class TreeDecoder {
+
+        private static final String FALLBACK_JSON =
+                "{\"sentiment\":\"NEUTRAL\",\"confidence\":0.5,\"analysis\":\"Could not extract valid JSON from Claude response\",\"primaryEmotion\":\"NONE\",\"emotionScores\":{}}";
+
+        private final ObjectMapper objectMapper;
+
+        TreeDecoder(ObjectMapper objectMapper) {
+            this.objectMapper = objectMapper;
+        }
+
+        SentimentResponse decode(String text, String responseJson) {
+            try {
+                JsonNode message = objectMapper.readTree(responseJson);
+                return decodeContent(text, message.path("content").path(0).path("text").asText());
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        SentimentResponse decodeContent(String text, String content) {
+            try {
+                return toResponse(text, objectMapper.readTree(extractJsonFromContent(content)));
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        List<SentimentResponse> decodePacked(List<String> texts, String responseJson) {
+            try {
+                String content = objectMapper.readTree(responseJson).path("content").path(0).path("text").asText();
+                JsonNode entries = objectMapper.readTree(content.substring(content.indexOf('['), content.lastIndexOf(']') + 1));
+                JsonNode[] byIndex = new JsonNode[texts.size()];
+                for (JsonNode entry : entries) {
+                    int index = entry.path("index").asInt(-1);
+                    if (index >= 0 && index < byIndex.length) {
+                        byIndex[index] = entry;
+                    }
+                }
+                return IntStream.range(0, texts.size())
+                        .mapToObj(i -> toResponse(texts.get(i), byIndex[i]))
+                        .toList();
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private SentimentResponse toResponse(String text, JsonNode contentNode) {
+            String sentimentStr = contentNode.path("sentiment").asText("NEUTRAL");
+            String primaryEmotionStr = contentNode.path("primaryEmotion").asText("NONE");
+            double confidence = contentNode.path("confidence").asDouble(0.5);
+            String analysis = contentNode.path("analysis").asText("No analysis provided");
+
+            Map<SentimentResponse.EmotionType, Double> emotionScores = new HashMap<>();
+            JsonNode emotionScoresNode = contentNode.path("emotionScores");
+            if (emotionScoresNode.isObject()) {
+                for (SentimentResponse.EmotionType emotion : SentimentResponse.EmotionType.values()) {
+                    if (emotion != SentimentResponse.EmotionType.NONE) {
+                        emotionScores.put(emotion, emotionScoresNode.path(emotion.name()).asDouble(0.0));
+                    }
+                }
+            }
+
+            SentimentResponse.SentimentType sentimentType;
+            try {
+                sentimentType = SentimentResponse.SentimentType.valueOf(sentimentStr.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                sentimentType = SentimentResponse.SentimentType.NEUTRAL;
+            }
+            SentimentResponse.EmotionType primaryEmotion;
+            try {
+                primaryEmotion = SentimentResponse.EmotionType.valueOf(primaryEmotionStr.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                primaryEmotion = SentimentResponse.EmotionType.NONE;
+            }
+
+            return SentimentResponse.builder()
+                    .text(text)
+                    .sentiment(sentimentType)
+                    .primaryEmotion(primaryEmotion)
+                    .emotionScores(emotionScores)
+                    .confidence(confidence)
+                    .analysis(analysis)
+                    .build();
+        }
+
+        private static String extractJsonFromContent(String content) {
+            int jsonStart = content.indexOf('{');
+            int jsonEnd = content.lastIndexOf('}');
+            if (jsonStart >= 0 && jsonEnd > jsonStart) {
+                return content.substring(jsonStart, jsonEnd + 1);
+            }
+            return FALLBACK_JSON;
+        }
+    }
+}
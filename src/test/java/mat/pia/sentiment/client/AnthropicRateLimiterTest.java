@@ -0,0 +1,96 @@
+package mat.pia.sentiment.client;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class AnthropicRateLimiterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ExchangeFunction ok = ignored -> Mono.just(ClientResponse.create(HttpStatus.OK).build());
+
+    @Test
+    void refillsAtTheConfiguredRate() throws InterruptedException {
+        // 60000 per minute is one per millisecond
+        AnthropicRateLimiter limiter = new AnthropicRateLimiter(true, 60_000, 60_000, meterRegistry);
+        limiter.observe(HttpStatus.OK, remaining(0, 0));
+        assertThat(available("requests")).isLessThan(20);
+
+        Thread.sleep(200);
+
+        assertThat(available("requests")).isBetween(150.0, 1_000.0);
+    }
+
+    @Test
+    void neverRefillsPastTheBucketSize() throws InterruptedException {
+        AnthropicRateLimiter limiter = new AnthropicRateLimiter(true, 60, 1_000, meterRegistry);
+
+        Thread.sleep(50);
+
+        assertThat(available("requests")).isEqualTo(60);
+        assertThat(available("tokens")).isEqualTo(1_000);
+    }
+
+    @Test
+    void delaysCallsUntilTheDebtHasBeenRefilled() {
+        // 600 per minute refills one request every 100 ms
+        AnthropicRateLimiter limiter = new AnthropicRateLimiter(true, 600, 60_000, meterRegistry);
+        limiter.observe(HttpStatus.OK, remaining(0, 60_000));
+
+        long start = System.nanoTime();
+        limiter.filter().filter(request(), ok).block();
+
+        assertThat((System.nanoTime() - start) / 1_000_000).isBetween(70L, 1_000L);
+    }
+
+    @Test
+    void providerHeadersResizeTheBuckets() {
+        AnthropicRateLimiter limiter = new AnthropicRateLimiter(true, 50, 50_000, meterRegistry);
+        HttpHeaders headers = new HttpHeaders();
+        headers.add("anthropic-ratelimit-requests-limit", "20");
+        headers.add("anthropic-ratelimit-tokens-remaining", "1000");
+
+        limiter.observe(HttpStatus.OK, headers);
+
+        assertThat(available("requests")).isEqualTo(20);
+        assertThat(available("tokens")).isCloseTo(1_000, within(5.0));
+    }
+
+    @Test
+    void tooManyRequestsPausesUntilRetryAfter() {
+        AnthropicRateLimiter limiter = new AnthropicRateLimiter(true, 60, 60_000, meterRegistry);
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(HttpHeaders.RETRY_AFTER, "2");
+
+        limiter.observe(HttpStatus.TOO_MANY_REQUESTS, headers);
+
+        // Two seconds of refill at one per second is owed before the next call
+        assertThat(available("requests")).isCloseTo(-2, within(0.1));
+    }
+
+    private double available(String bucket) {
+        return meterRegistry.get("anthropic.ratelimit.available").tag("bucket", bucket).gauge().value();
+    }
+
+    private static HttpHeaders remaining(long requests, long tokens) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add("anthropic-ratelimit-requests-remaining", Long.toString(requests));
+        headers.add("anthropic-ratelimit-tokens-remaining", Long.toString(tokens));
+        return headers;
+    }
+
+    private static ClientRequest request() {
+        return ClientRequest.create(HttpMethod.POST, URI.create("http://localhost/v1/messages")).build();
+    }
+}
@@ -0,0 +1,155 @@
+package mat.pia.sentiment.client;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import mat.pia.sentiment.exception.ApiException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/** Drives the executor through a WebClient whose exchange function answers each attempt from a script. */
+class ResilientCallExecutorTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AnthropicCircuitBreaker circuitBreaker =
+            new AnthropicCircuitBreaker(false, 20, 10, 0.5, Duration.ofSeconds(30), 3, meterRegistry);
+    private final ResilientCallExecutor executor = new ResilientCallExecutor(circuitBreaker, meterRegistry);
+    private final AtomicInteger attempts = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(executor, "attemptTimeout", Duration.ofSeconds(2));
+        ReflectionTestUtils.setField(executor, "deadline", Duration.ofSeconds(10));
+        ReflectionTestUtils.setField(executor, "maxRetries", 3);
+        ReflectionTestUtils.setField(executor, "initialBackoff", Duration.ofMillis(100));
+        ReflectionTestUtils.setField(executor, "maxBackoff", Duration.ofSeconds(1));
+        ReflectionTestUtils.setField(executor, "hedgeEnabled", false);
+        ReflectionTestUtils.setField(executor, "hedgeMinDelay", Duration.ofMillis(50));
+        ReflectionTestUtils.setField(executor, "hedgeMinSamples", 2);
+    }
+
+    @Test
+    void retriesServerErrorsAndRateLimitsWithEqualJitter() {
+        List<Mono<ClientResponse>> script = List.of(status(HttpStatus.INTERNAL_SERVER_ERROR),
+                status(HttpStatus.TOO_MANY_REQUESTS), ok("done"));
+
+        long start = System.nanoTime();
+        String result = call(script::get).block();
+
+        assertThat(result).isEqualTo("done");
+        assertThat(attempts).hasValue(3);
+        assertThat(meterRegistry.get("anthropic.calls.retries").counter().count()).isEqualTo(2);
+        // Equal jitter waits at least half of each step: 50 ms and then 100 ms
+        assertThat(millisSince(start)).isGreaterThanOrEqualTo(150);
+    }
+
+    @Test
+    void waitsAsLongAsRetryAfterAsks() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, "0.6");
+        List<Mono<ClientResponse>> script = List.of(
+                Mono.just(ClientResponse.create(HttpStatus.TOO_MANY_REQUESTS).headers(h -> h.addAll(headers)).build()),
+                ok("done"));
+
+        long start = System.nanoTime();
+        String result = call(script::get).block();
+
+        assertThat(result).isEqualTo("done");
+        // The backoff alone would be at most 100 ms
+        assertThat(millisSince(start)).isGreaterThanOrEqualTo(600);
+    }
+
+    @Test
+    void doesNotRetryClientErrors() {
+        assertThatThrownBy(() -> call(attempt -> status(HttpStatus.BAD_REQUEST)).block())
+                .isInstanceOf(WebClientResponseException.BadRequest.class);
+        assertThat(attempts).hasValue(1);
+    }
+
+    @Test
+    void givesUpAfterMaxRetries() {
+        assertThatThrownBy(() -> call(attempt -> status(HttpStatus.SERVICE_UNAVAILABLE)).block())
+                .isInstanceOf(WebClientResponseException.ServiceUnavailable.class);
+        assertThat(attempts).hasValue(4);
+    }
+
+    @Test
+    void hedgeWinsWhenTheFirstAttemptStalls() {
+        ReflectionTestUtils.setField(executor, "hedgeEnabled", true);
+        // Two fast calls give the latency window its samples, so the hedge fires after the 50 ms minimum
+        call(attempt -> ok("warm-up")).block();
+        call(attempt -> ok("warm-up")).block();
+
+        long start = System.nanoTime();
+        String result = call(attempt -> attempt == 2
+                ? ok("slow").delayElement(Duration.ofSeconds(1))
+                : ok("hedge")).block();
+
+        assertThat(result).isEqualTo("hedge");
+        assertThat(attempts).hasValue(4);
+        assertThat(meterRegistry.get("anthropic.calls.hedges").counter().count()).isEqualTo(1);
+        assertThat(millisSince(start)).isLessThan(900);
+    }
+
+    @Test
+    void failsOnceTheDeadlineHasPassed() {
+        ReflectionTestUtils.setField(executor, "deadline", Duration.ofMillis(300));
+
+        long start = System.nanoTime();
+        assertThatThrownBy(() -> call(attempt -> Mono.never()).block())
+                .isInstanceOf(ApiException.class)
+                .hasMessageContaining("did not respond in time");
+        assertThat(millisSince(start)).isBetween(250L, 1_500L);
+    }
+
+    @Test
+    void doesNotRetryWhenTheBackoffWouldOutlastTheDeadline() {
+        ReflectionTestUtils.setField(executor, "deadline", Duration.ofSeconds(1));
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, "5");
+
+        assertThatThrownBy(() -> call(attempt -> Mono.just(ClientResponse.create(HttpStatus.TOO_MANY_REQUESTS)
+                .headers(h -> h.addAll(headers)).build())).block())
+                .isInstanceOf(WebClientResponseException.TooManyRequests.class);
+        assertThat(attempts).hasValue(1);
+    }
+
+    /** Runs one executor call; {@code responses} answers the n-th HTTP attempt, counting from 0. */
+    private Mono<String> call(IntFunction<Mono<ClientResponse>> responses) {
+        ExchangeFunction exchange = request -> Mono.defer(() -> responses.apply(attempts.getAndIncrement()));
+        WebClient webClient = WebClient.builder().exchangeFunction(exchange).build();
+        return executor.execute(() -> webClient.post()
+                .uri("http://anthropic.test/v1/messages")
+                .retrieve()
+                .bodyToMono(String.class));
+    }
+
+    private static Mono<ClientResponse> status(HttpStatus status) {
+        return Mono.just(ClientResponse.create(status).build());
+    }
+
+    private static Mono<ClientResponse> ok(String body) {
+        return Mono.just(ClientResponse.create(HttpStatus.OK)
+                .header(HttpHeaders.CONTENT_TYPE, "text/plain")
+                .body(body)
+                .build());
+    }
+
+    private static long millisSince(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+}
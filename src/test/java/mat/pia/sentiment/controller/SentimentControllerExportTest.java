@@ -0,0 +1,82 @@
+package mat.pia.sentiment.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import mat.pia.sentiment.dto.SentimentDTO;
+import mat.pia.sentiment.model.SentimentResponse;
+import mat.pia.sentiment.service.ReactiveSentimentService;
+import mat.pia.sentiment.service.SentimentService;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+class SentimentControllerExportTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private final SentimentService sentimentService = mock(SentimentService.class);
+    private final SentimentController controller = new SentimentController(
+            sentimentService, mock(ReactiveSentimentService.class), objectMapper, "reactive");
+
+    @Test
+    void writesOneLinePerRow() throws Exception {
+        exportRows(3, false);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        controller.exportSentimentHistory(null, null, response);
+
+        List<String> lines = response.getContentAsString().lines().toList();
+        assertThat(lines).hasSize(3);
+        assertThat(objectMapper.readTree(lines.get(2)).get("id").asLong()).isEqualTo(2);
+    }
+
+    @Test
+    void endsWithAnErrorLineWhenFailingAfterTheResponseWasCommitted() throws Exception {
+        exportRows(500, true);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        controller.exportSentimentHistory(null, null, response);
+
+        List<String> lines = response.getContentAsString().lines().toList();
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(lines).hasSize(501);
+        JsonNode last = objectMapper.readTree(lines.get(500));
+        assertThat(last.get("error").asText()).contains("500 rows");
+        assertThat(last.get("exported").asLong()).isEqualTo(500);
+    }
+
+    @Test
+    void failsNormallyWhenNothingWasSentYet() {
+        exportRows(1, true);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        assertThatThrownBy(() -> controller.exportSentimentHistory(null, null, response))
+                .isInstanceOf(DataAccessResourceFailureException.class);
+        assertThat(response.getContentAsByteArray()).isEmpty();
+    }
+
+    private void exportRows(int rows, boolean failAfterwards) {
+        doAnswer(invocation -> {
+            Consumer<SentimentDTO> consumer = invocation.getArgument(2);
+            for (long id = 0; id < rows; id++) {
+                consumer.accept(SentimentDTO.builder()
+                        .id(id)
+                        .text("row " + id)
+                        .sentiment(SentimentResponse.SentimentType.NEUTRAL)
+                        .build());
+            }
+            if (failAfterwards) {
+                throw new DataAccessResourceFailureException("connection lost");
+            }
+            return null;
+        }).when(sentimentService).streamHistory(any(), any(), any());
+    }
+}
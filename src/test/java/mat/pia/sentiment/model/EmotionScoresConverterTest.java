@@ -0,0 +1,90 @@
+package mat.pia.sentiment.model;
+
+import mat.pia.sentiment.model.SentimentResponse.EmotionType;
+import org.junit.jupiter.api.Test;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EmotionScoresConverterTest {
+
+    private final EmotionScoresConverter converter = new EmotionScoresConverter();
+
+    @Test
+    void roundTripsAFullSetInEighteenBytes() {
+        Map<EmotionType, Double> scores = new EnumMap<>(EmotionType.class);
+        double[] values = {0.1, 0.2111, 0.3222, 0.4333, 0.5444, 0.6555, 0.7666, 0.8777};
+        int i = 0;
+        for (EmotionType emotion : EmotionType.values()) {
+            if (emotion != EmotionType.NONE) {
+                scores.put(emotion, values[i++]);
+            }
+        }
+
+        byte[] column = converter.convertToDatabaseColumn(scores);
+
+        assertThat(column).hasSize(18);
+        assertThat(converter.convertToEntityAttribute(column)).isEqualTo(scores);
+    }
+
+    @Test
+    void roundTripsASubsetAndKeepsEachScoreOnItsEmotion() {
+        Map<EmotionType, Double> scores = Map.of(EmotionType.SADNESS, 0.25, EmotionType.ANTICIPATION, 1.0, EmotionType.JOY, 0.0);
+
+        byte[] column = converter.convertToDatabaseColumn(scores);
+
+        assertThat(column).hasSize(2 + 2 * 3);
+        assertThat(converter.convertToEntityAttribute(column)).containsExactlyInAnyOrderEntriesOf(scores);
+    }
+
+    @Test
+    void keepsFourDecimalPlaces() {
+        byte[] column = converter.convertToDatabaseColumn(Map.of(EmotionType.FEAR, 0.123456, EmotionType.TRUST, -0.98766));
+
+        assertThat(converter.convertToEntityAttribute(column))
+                .containsEntry(EmotionType.FEAR, 0.1235)
+                .containsEntry(EmotionType.TRUST, -0.9877);
+    }
+
+    @Test
+    void clampsScoresOutsideTheFixedPointRange() {
+        Map<EmotionType, Double> scores = new EnumMap<>(EmotionType.class);
+        scores.put(EmotionType.JOY, 7.5);
+        scores.put(EmotionType.ANGER, -7.5);
+        scores.put(EmotionType.FEAR, Double.NaN);
+        scores.put(EmotionType.DISGUST, null);
+
+        Map<EmotionType, Double> decoded = converter.convertToEntityAttribute(converter.convertToDatabaseColumn(scores));
+
+        assertThat(decoded)
+                .containsEntry(EmotionType.JOY, 3.2767)
+                .containsEntry(EmotionType.ANGER, -3.2768)
+                .containsEntry(EmotionType.FEAR, 0.0)
+                .containsEntry(EmotionType.DISGUST, 0.0);
+    }
+
+    @Test
+    void storesNoScoresAsNull() {
+        assertThat(converter.convertToDatabaseColumn(Map.of())).isNull();
+        assertThat(converter.convertToDatabaseColumn(null)).isNull();
+        assertThat(converter.convertToEntityAttribute(null)).isEmpty();
+    }
+
+    @Test
+    void emptyMarkerDecodesToNoScores() {
+        assertThat(EmotionScoresConverter.emptyMarker()).hasSize(2).containsOnly(0);
+        assertThat(converter.convertToEntityAttribute(EmotionScoresConverter.emptyMarker())).isEmpty();
+    }
+
+    @Test
+    void truncatedColumnDecodesTheScoresThatArePresent() {
+        byte[] column = converter.convertToDatabaseColumn(Map.of(EmotionType.JOY, 0.5, EmotionType.SADNESS, 0.25));
+        byte[] truncated = new byte[column.length - 1];
+        System.arraycopy(column, 0, truncated, 0, truncated.length);
+
+        assertThat(converter.convertToEntityAttribute(truncated)).containsOnly(Map.entry(EmotionType.JOY, 0.5));
+        assertThat(converter.convertToEntityAttribute(new byte[1])).isEmpty();
+    }
+}
@@ -0,0 +1,116 @@
+package mat.pia.sentiment.persistence;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import mat.pia.sentiment.model.EmotionScoresConverter;
+import mat.pia.sentiment.model.SentimentResponse.EmotionType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** Runs the migration against a pre-change sentiment_analyses table in an in-memory H2 database. */
+class EmotionScoresMigrationTest {
+
+    private static final AtomicInteger databases = new AtomicInteger();
+
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(
+                "jdbc:h2:mem:migration-" + databases.incrementAndGet() + ";DB_CLOSE_DELAY=-1", "sa", ""));
+        jdbcTemplate.execute("CREATE TABLE sentiment_analyses (id BIGINT PRIMARY KEY, "
+                + "emotion_scores VARBINARY(64), emotion_details VARCHAR(1000))");
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute("SHUTDOWN");
+    }
+
+    @Test
+    void copiesLegacyScoresIntoThePackedColumn() {
+        insert(1, "{\"JOY\":0.8,\"SADNESS\":0.1}");
+        insert(2, "{\"ANGER\":0.5,\"BOREDOM\":0.9}");
+
+        migration(false).afterSingletonsInstantiated();
+
+        assertThat(EmotionScoresConverter.decode(packed(1)))
+                .containsOnly(Map.entry(EmotionType.JOY, 0.8), Map.entry(EmotionType.SADNESS, 0.1));
+        assertThat(EmotionScoresConverter.decode(packed(2))).containsOnly(Map.entry(EmotionType.ANGER, 0.5));
+    }
+
+    @Test
+    void marksRowsWithoutReadableScoresSoTheyAreNotScannedAgain() {
+        insert(1, "{}");
+        insert(2, "not json");
+        insert(3, "null");
+        insert(4, "{\"BOREDOM\":0.9}");
+
+        migration(false).afterSingletonsInstantiated();
+
+        for (long id = 1; id <= 4; id++) {
+            assertThat(packed(id)).as("row %d", id).isEqualTo(EmotionScoresConverter.emptyMarker());
+        }
+        assertThat(remaining()).isZero();
+    }
+
+    @Test
+    void leavesRowsThatAlreadyHavePackedScores() {
+        byte[] current = EmotionScoresConverter.encode(Map.of(EmotionType.TRUST, 0.7));
+        jdbcTemplate.update("INSERT INTO sentiment_analyses (id, emotion_scores, emotion_details) VALUES (?, ?, ?)",
+                1, current, "{\"JOY\":0.8}");
+
+        migration(false).afterSingletonsInstantiated();
+
+        assertThat(packed(1)).isEqualTo(current);
+    }
+
+    @Test
+    void walksAllChunks() {
+        for (int id = 1; id <= 7; id++) {
+            insert(id, id % 2 == 0 ? "{\"FEAR\":0.3}" : "{}");
+        }
+
+        migration(false).afterSingletonsInstantiated();
+
+        assertThat(remaining()).isZero();
+        assertThat(EmotionScoresConverter.decode(packed(6))).containsEntry(EmotionType.FEAR, 0.3);
+    }
+
+    @Test
+    void dropsTheLegacyColumnWhenAsked() {
+        insert(1, "{\"JOY\":0.8}");
+
+        migration(true).afterSingletonsInstantiated();
+
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM INFORMATION_SCHEMA.COLUMNS "
+                + "WHERE TABLE_NAME = 'SENTIMENT_ANALYSES' AND COLUMN_NAME = 'EMOTION_DETAILS'", Integer.class)).isZero();
+        // A second start finds no legacy column and does nothing
+        migration(true).afterSingletonsInstantiated();
+    }
+
+    private EmotionScoresMigration migration(boolean dropLegacyColumn) {
+        return new EmotionScoresMigration(jdbcTemplate, new ObjectMapper(), 3, dropLegacyColumn);
+    }
+
+    private void insert(long id, String emotionDetails) {
+        jdbcTemplate.update("INSERT INTO sentiment_analyses (id, emotion_details) VALUES (?, ?)", id, emotionDetails);
+    }
+
+    private byte[] packed(long id) {
+        return jdbcTemplate.queryForObject("SELECT emotion_scores FROM sentiment_analyses WHERE id = ?", byte[].class, id);
+    }
+
+    /** Rows the next start would pick up again. */
+    private int remaining() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM sentiment_analyses "
+                + "WHERE emotion_scores IS NULL AND emotion_details IS NOT NULL", Integer.class);
+    }
+}
@@ -0,0 +1,123 @@
+package mat.pia.sentiment.persistence;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import mat.pia.sentiment.exception.ServiceBusyException;
+import mat.pia.sentiment.model.SentimentEntity;
+import mat.pia.sentiment.model.SentimentResponse;
+import mat.pia.sentiment.repository.SentimentRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+class SentimentWriterTest {
+
+    private final SentimentRepository sentimentRepository = mock(SentimentRepository.class);
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final CountDownLatch flushStarted = new CountDownLatch(1);
+    private final CountDownLatch releaseFlush = new CountDownLatch(1);
+
+    private SentimentWriter writer;
+
+    @AfterEach
+    void tearDown() {
+        releaseFlush.countDown();
+        if (writer != null && writer.isRunning()) {
+            writer.stop();
+        }
+    }
+
+    @Test
+    void queuedRowIsVisibleByContentHashUntilWritten() throws Exception {
+        writer = startWriter(10);
+
+        writer.writeAsync(entity("hash-1")).block();
+
+        assertThat(flushStarted.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(writer.findPending("hash-1")).isPresent();
+        releaseFlush.countDown();
+        verify(jdbcTemplate, timeout(5000)).batchUpdate(anyString(), anyCollection(), anyInt(), anyRowSetter());
+        awaitNotPending("hash-1");
+        assertThat(writer.findPending("hash-1")).isEmpty();
+    }
+
+    @Test
+    void overflowIsSavedDirectlyWithoutWaitingForTheQueue() throws Exception {
+        writer = startWriter(1);
+        writer.writeAsync(entity("in-flush")).block();
+        assertThat(flushStarted.await(5, TimeUnit.SECONDS)).isTrue();
+        writer.writeAsync(entity("queued")).block();
+
+        long start = System.nanoTime();
+        SentimentEntity overflow = entity("overflow");
+        writer.writeAsync(overflow).block();
+
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(2));
+        verify(sentimentRepository).saveAll(List.of(overflow));
+        assertThat(writer.findPending("overflow")).isEmpty();
+    }
+
+    @Test
+    void rejectsWritesAfterStop() {
+        writer = startWriter(10);
+        releaseFlush.countDown();
+        writer.stop();
+
+        assertThatThrownBy(() -> writer.writeAsync(entity("late")).block())
+                .isInstanceOf(ServiceBusyException.class);
+        assertThatThrownBy(() -> writer.write(entity("late")))
+                .isInstanceOf(ServiceBusyException.class);
+    }
+
+    private SentimentWriter startWriter(int queueCapacity) {
+        doAnswer(invocation -> {
+            flushStarted.countDown();
+            releaseFlush.await(10, TimeUnit.SECONDS);
+            return new int[0][];
+        }).when(jdbcTemplate).batchUpdate(anyString(), anyCollection(), anyInt(), anyRowSetter());
+
+        SentimentWriter created = new SentimentWriter(sentimentRepository, jdbcTemplate, new SimpleMeterRegistry(),
+                true, queueCapacity, 10, Duration.ofMillis(20), Duration.ofSeconds(5));
+        created.start();
+        return created;
+    }
+
+    /** Typed matcher for batchUpdate's row setter, so the call needs no raw type. */
+    private static ParameterizedPreparedStatementSetter<SentimentEntity> anyRowSetter() {
+        return any();
+    }
+
+    private void awaitNotPending(String contentHash) throws InterruptedException {
+        for (int i = 0; i < 100 && writer.findPending(contentHash).isPresent(); i++) {
+            Thread.sleep(20);
+        }
+    }
+
+    private static SentimentEntity entity(String contentHash) {
+        return SentimentEntity.builder()
+                .text("text " + contentHash)
+                .sentiment(SentimentResponse.SentimentType.POSITIVE)
+                .confidence(0.9)
+                .createdAt(LocalDateTime.now())
+                .apiProvider("ANTHROPIC")
+                .contentHash(contentHash)
+                .build();
+    }
+}
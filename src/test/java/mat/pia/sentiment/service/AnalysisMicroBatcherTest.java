@@ -0,0 +1,150 @@
+package mat.pia.sentiment.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import mat.pia.sentiment.exception.ApiException;
+import mat.pia.sentiment.exception.ServiceBusyException;
+import mat.pia.sentiment.model.SentimentResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class AnalysisMicroBatcherTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final PromptPacker promptPacker = mock(PromptPacker.class);
+    private AnalysisMicroBatcher batcher;
+
+    @BeforeEach
+    void setUp() {
+        // Units of three texts; a unit holding "boom" fails as a whole
+        when(promptPacker.plan(anyList())).thenAnswer(invocation -> {
+            List<String> texts = invocation.getArgument(0);
+            return IntStream.range(0, (texts.size() + 2) / 3)
+                    .mapToObj(unit -> IntStream.range(unit * 3, Math.min(texts.size(), unit * 3 + 3)).boxed().toList())
+                    .toList();
+        });
+        when(promptPacker.analyze(anyList())).thenAnswer(invocation -> {
+            List<String> texts = invocation.getArgument(0);
+            if (texts.contains("boom")) {
+                return Mono.error(new ApiException("Failed to analyze sentiment with Anthropic Claude"));
+            }
+            return Mono.just(texts.stream()
+                    .map(text -> SentimentResponse.builder().text(text).sentiment(SentimentResponse.SentimentType.POSITIVE).build())
+                    .toList());
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (batcher != null) {
+            batcher.stop();
+        }
+    }
+
+    @Test
+    void eachCallerGetsItsOwnResult() throws Exception {
+        batcher = start(20, Duration.ofMillis(200), 100);
+
+        List<CompletableFuture<SentimentResponse>> results = submitAll(texts(6));
+
+        for (int i = 0; i < results.size(); i++) {
+            assertThat(results.get(i).get(5, TimeUnit.SECONDS).getText()).isEqualTo("text " + i);
+        }
+        verify(promptPacker, times(1)).plan(anyList());
+        verify(promptPacker, times(2)).analyze(anyList());
+        assertThat(meterRegistry.get("sentiment.microbatch.size").summary().max()).isEqualTo(6);
+        assertThat(meterRegistry.get("sentiment.microbatch.queue.depth").gauge().value()).isZero();
+    }
+
+    @Test
+    void failedUnitOnlyFailsItsOwnCallers() throws Exception {
+        batcher = start(20, Duration.ofMillis(200), 100);
+
+        List<CompletableFuture<SentimentResponse>> results = submitAll(List.of("a", "b", "c", "d", "boom", "f"));
+
+        assertThat(results.get(0).get(5, TimeUnit.SECONDS).getText()).isEqualTo("a");
+        assertThat(results.get(2).get(5, TimeUnit.SECONDS).getText()).isEqualTo("c");
+        for (int i = 3; i < 6; i++) {
+            CompletableFuture<SentimentResponse> failed = results.get(i);
+            assertThatThrownBy(() -> failed.get(5, TimeUnit.SECONDS))
+                    .isInstanceOf(ExecutionException.class)
+                    .hasCauseInstanceOf(ApiException.class);
+        }
+    }
+
+    @Test
+    void answersSayWhetherTheyCameFromAPack() throws Exception {
+        batcher = start(20, Duration.ofMillis(200), 100);
+
+        // Units of three, so the fourth text is sent alone
+        List<CompletableFuture<AnalysisMicroBatcher.Answer>> answers = texts(4).stream()
+                .map(text -> batcher.submit(text).toFuture())
+                .collect(Collectors.toList());
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(answers.get(i).get(5, TimeUnit.SECONDS).packed()).isTrue();
+        }
+        assertThat(answers.get(3).get(5, TimeUnit.SECONDS).packed()).isFalse();
+    }
+
+    @Test
+    void fullBatchIsSentWithoutWaitingForMaxWait() throws Exception {
+        batcher = start(3, Duration.ofMinutes(1), 100);
+
+        List<CompletableFuture<SentimentResponse>> results = submitAll(texts(3));
+
+        assertThat(results.get(2).get(5, TimeUnit.SECONDS).getText()).isEqualTo("text 2");
+    }
+
+    @Test
+    void partialBatchIsSentAfterMaxWait() throws Exception {
+        batcher = start(20, Duration.ofMillis(50), 100);
+
+        SentimentResponse response = batcher.submit("alone").toFuture().get(5, TimeUnit.SECONDS).response();
+
+        assertThat(response.getText()).isEqualTo("alone");
+        assertThat(meterRegistry.get("sentiment.microbatch.size").summary().max()).isEqualTo(1);
+    }
+
+    @Test
+    void rejectsCallersOnceTheQueueIsFull() {
+        // Not started, so nothing drains the queue
+        batcher = new AnalysisMicroBatcher(promptPacker, meterRegistry, true, 20, Duration.ofMillis(50), 8, 1);
+        submitAll(texts(8));
+
+        assertThatThrownBy(() -> batcher.submit("one too many").block()).isInstanceOf(ServiceBusyException.class);
+    }
+
+    private AnalysisMicroBatcher start(int maxItems, Duration maxWait, int queueCapacity) {
+        AnalysisMicroBatcher created = new AnalysisMicroBatcher(promptPacker, meterRegistry, true, maxItems, maxWait, queueCapacity, 2);
+        created.start();
+        return created;
+    }
+
+    private List<CompletableFuture<SentimentResponse>> submitAll(List<String> texts) {
+        return texts.stream()
+                .map(text -> batcher.submit(text).map(AnalysisMicroBatcher.Answer::response).toFuture())
+                .collect(Collectors.toList());
+    }
+
+    private static List<String> texts(int count) {
+        return IntStream.range(0, count).mapToObj(i -> "text " + i).toList();
+    }
+}
@@ -0,0 +1,282 @@
+package mat.pia.sentiment.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import mat.pia.sentiment.cache.SemanticSentimentCache;
+import mat.pia.sentiment.cache.SentimentResultCache;
+import mat.pia.sentiment.client.AnthropicClient;
+import mat.pia.sentiment.client.AnthropicMessageCodec;
+import mat.pia.sentiment.diagnostics.PipelineObservations;
+import mat.pia.sentiment.dto.BatchSentimentRequest;
+import mat.pia.sentiment.exception.ServiceBusyException;
+import mat.pia.sentiment.model.SentimentEntity;
+import mat.pia.sentiment.model.SentimentRequest;
+import mat.pia.sentiment.model.SentimentResponse;
+import mat.pia.sentiment.persistence.SentimentWriter;
+import mat.pia.sentiment.repository.SentimentRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockingDetails;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class AnthropicSentimentServiceTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AnthropicMessageCodec messageCodec = new AnthropicMessageCodec(new ObjectMapper(), meterRegistry);
+    private final AnthropicClient anthropicClient = mock(AnthropicClient.class);
+    private final PromptPacker promptPacker = mock(PromptPacker.class);
+    private final AnalysisMicroBatcher microBatcher = mock(AnalysisMicroBatcher.class);
+    private final SentimentRepository sentimentRepository = mock(SentimentRepository.class);
+    private final SentimentWriter sentimentWriter = mock(SentimentWriter.class);
+    private final SentimentResultCache resultCache = new SentimentResultCache(true, 100, Duration.ofMinutes(5), meterRegistry);
+
+    private AnthropicSentimentService service;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(messageCodec, "model", "claude-test");
+        ReflectionTestUtils.setField(messageCodec, "maxTokens", 1000);
+        when(sentimentWriter.writeAsync(any())).thenReturn(Mono.empty());
+        when(sentimentWriter.writeAllAsync(anyList())).thenReturn(Mono.empty());
+        when(anthropicClient.analyze(anyString()))
+                .thenAnswer(invocation -> Mono.just(response(invocation.getArgument(0))));
+        when(promptPacker.analyze(anyList())).thenAnswer(invocation -> {
+            List<String> texts = invocation.getArgument(0);
+            return Mono.just(texts.stream().map(AnthropicSentimentServiceTest::response).toList());
+        });
+
+        service = newService(new SemanticSentimentCache(
+                false, 0.92, 1024, 8, 12, 100, Duration.ofMinutes(5), 0.0, meterRegistry));
+    }
+
+    private AnthropicSentimentService newService(SemanticSentimentCache semanticCache) {
+        AnthropicSentimentService created = new AnthropicSentimentService(
+                anthropicClient, promptPacker, microBatcher, sentimentRepository, messageCodec,
+                new SentimentMapper(), resultCache, semanticCache, sentimentWriter, meterRegistry,
+                new PipelineObservations(ObservationRegistry.NOOP));
+        ReflectionTestUtils.setField(created, "batchConcurrency", 4);
+        ReflectionTestUtils.setField(created, "dedupEnabled", true);
+        ReflectionTestUtils.setField(created, "dedupFreshness", Duration.ofDays(30));
+        ReflectionTestUtils.setField(created, "coalescingEnabled", true);
+        return created;
+    }
+
+    @Test
+    void storesClaudeAnswerOnce() {
+        SentimentResponse first = service.analyzeSentiment(request("I love it"));
+        SentimentResponse second = service.analyzeSentiment(request("I love it"));
+
+        assertThat(second.getSentiment()).isEqualTo(first.getSentiment());
+        verify(anthropicClient, times(1)).analyze("I love it");
+        verify(sentimentWriter, times(1)).writeAsync(any());
+    }
+
+    @Test
+    void storedAnalysisIsReusedWithoutAddingARow() {
+        SentimentEntity stored = new SentimentEntity();
+        stored.setText("I love it");
+        stored.setSentiment(SentimentResponse.SentimentType.POSITIVE);
+        stored.setConfidence(0.9);
+        stored.setPrimaryEmotion(SentimentResponse.EmotionType.JOY);
+        stored.setCreatedAt(LocalDateTime.now());
+        when(sentimentRepository.findFirstByContentHashAndCreatedAtAfterOrderByCreatedAtDesc(
+                eq(messageCodec.contentKey("I love it")), any()))
+                .thenReturn(Optional.of(stored));
+
+        SentimentResponse response = service.analyzeSentiment(request("I love it"));
+
+        assertThat(response.getSentiment()).isEqualTo(SentimentResponse.SentimentType.POSITIVE);
+        verify(anthropicClient, never()).analyze(anyString());
+        verify(sentimentWriter, never()).writeAsync(any());
+    }
+
+    @Test
+    void rowWaitingInTheWriteQueueIsReused() {
+        SentimentEntity queued = new SentimentEntity();
+        queued.setText("I love it");
+        queued.setSentiment(SentimentResponse.SentimentType.NEGATIVE);
+        queued.setCreatedAt(LocalDateTime.now());
+        when(sentimentWriter.findPending(messageCodec.contentKey("I love it"))).thenReturn(Optional.of(queued));
+
+        SentimentResponse response = service.analyzeSentiment(request("I love it"));
+
+        assertThat(response.getSentiment()).isEqualTo(SentimentResponse.SentimentType.NEGATIVE);
+        verify(anthropicClient, never()).analyze(anyString());
+    }
+
+    @Test
+    void batchStoresOnlyEntriesAnsweredByClaude() {
+        service.analyzeSentiment(request("cached"));
+
+        service.analyzeBatch(new BatchSentimentRequest(List.of(request("cached"), request("fresh"))));
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<SentimentEntity>> written = ArgumentCaptor.forClass(List.class);
+        verify(sentimentWriter).writeAllAsync(written.capture());
+        assertThat(written.getValue()).extracting(SentimentEntity::getText).containsExactly("fresh");
+    }
+
+    @Test
+    void packedAnswersAreStoredUnderTheirOwnKeyAndNotServedToSingleAnalyses() {
+        when(promptPacker.isEnabled()).thenReturn(true);
+        when(promptPacker.plan(anyList())).thenReturn(List.of(List.of(0, 1)));
+        when(promptPacker.packedContentKey(anyString())).thenAnswer(invocation -> messageCodec.contentKey(
+                invocation.getArgument(0), AnthropicMessageCodec.PACKED_SYSTEM_PROMPT, 100));
+
+        service.analyzeBatch(new BatchSentimentRequest(List.of(request("I love it"), request("I hate it"))));
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<SentimentEntity>> written = ArgumentCaptor.forClass(List.class);
+        verify(sentimentWriter).writeAllAsync(written.capture());
+        assertThat(written.getValue()).extracting(SentimentEntity::getContentHash).containsExactly(
+                promptPacker.packedContentKey("I love it"), promptPacker.packedContentKey("I hate it"));
+        assertThat(written.getValue()).extracting(SentimentEntity::getContentHash)
+                .doesNotContain(messageCodec.contentKey("I love it"));
+        assertThat(resultCache.get(messageCodec.contentKey("I love it"))).isEmpty();
+
+        service.analyzeSentiment(request("I love it"));
+
+        verify(anthropicClient, times(1)).analyze("I love it");
+    }
+
+    @Test
+    void microBatchedPackedAnswerIsStoredUnderThePackedKeyAndNotCached() {
+        when(microBatcher.isEnabled()).thenReturn(true);
+        when(microBatcher.submit(anyString())).thenAnswer(invocation ->
+                Mono.just(new AnalysisMicroBatcher.Answer(response(invocation.getArgument(0)), true)));
+        when(promptPacker.packedContentKey(anyString())).thenAnswer(invocation -> "packed:" + invocation.getArgument(0));
+
+        service.analyzeSentiment(request("I love it"));
+
+        ArgumentCaptor<SentimentEntity> written = ArgumentCaptor.forClass(SentimentEntity.class);
+        verify(sentimentWriter).writeAsync(written.capture());
+        assertThat(written.getValue().getContentHash()).isEqualTo("packed:I love it");
+        assertThat(resultCache.get(messageCodec.contentKey("I love it"))).isEmpty();
+    }
+
+    @Test
+    void concurrentIdenticalRequestsShareOneClaudeCall() {
+        Sinks.One<SentimentResponse> reply = Sinks.one();
+        when(anthropicClient.analyze("same text")).thenReturn(reply.asMono());
+
+        List<CompletableFuture<SentimentResponse>> responses = IntStream.range(0, 50)
+                .mapToObj(i -> service.analyzeAsync(request("same text")).toFuture())
+                .toList();
+        // Every request has either made the call or joined it before Claude answers
+        await(() -> meterRegistry.counter("anthropic.calls.coalesced").count() == 49);
+        reply.tryEmitValue(response("same text"));
+
+        assertThat(responses).allSatisfy(future ->
+                assertThat(future.get(5, TimeUnit.SECONDS).getSentiment()).isEqualTo(SentimentResponse.SentimentType.POSITIVE));
+        verify(anthropicClient, times(1)).analyze("same text");
+        verify(sentimentWriter, times(1)).writeAsync(any());
+    }
+
+    @Test
+    void coalescingCanBeTurnedOff() {
+        ReflectionTestUtils.setField(service, "coalescingEnabled", false);
+        Sinks.One<SentimentResponse> reply = Sinks.one();
+        when(anthropicClient.analyze("same text")).thenReturn(reply.asMono());
+
+        List<CompletableFuture<SentimentResponse>> responses = IntStream.range(0, 5)
+                .mapToObj(i -> service.analyzeAsync(request("same text")).toFuture())
+                .toList();
+        await(() -> mockingDetails(anthropicClient).getInvocations().size() == 5);
+        reply.tryEmitValue(response("same text"));
+
+        assertThat(responses).allSatisfy(future -> assertThat(future.get(5, TimeUnit.SECONDS)).isNotNull());
+        verify(sentimentWriter, times(5)).writeAsync(any());
+    }
+
+    @Test
+    void nearDuplicateIsServedButNotStoredAsAnExactMatch() {
+        service = newService(semanticCache());
+        service.analyzeSentiment(request("I really love this product"));
+
+        SentimentResponse nearDuplicate = service.analyzeSentiment(request("I really love this product!"));
+
+        assertThat(nearDuplicate.getText()).isEqualTo("I really love this product!");
+        assertThat(nearDuplicate.getSentiment()).isEqualTo(SentimentResponse.SentimentType.POSITIVE);
+        verify(anthropicClient, times(1)).analyze(anyString());
+        ArgumentCaptor<SentimentEntity> written = ArgumentCaptor.forClass(SentimentEntity.class);
+        verify(sentimentWriter, times(1)).writeAsync(written.capture());
+        assertThat(written.getValue().getText()).isEqualTo("I really love this product");
+        assertThat(resultCache.get(messageCodec.contentKey("I really love this product!"))).isEmpty();
+    }
+
+    @Test
+    void batchDoesNotStoreNearDuplicates() {
+        service = newService(semanticCache());
+        service.analyzeSentiment(request("I really love this product"));
+
+        service.analyzeBatch(new BatchSentimentRequest(List.of(request("I really love this product!"), request("fresh"))));
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<SentimentEntity>> written = ArgumentCaptor.forClass(List.class);
+        verify(sentimentWriter).writeAllAsync(written.capture());
+        assertThat(written.getValue()).extracting(SentimentEntity::getText).containsExactly("fresh");
+        assertThat(resultCache.get(messageCodec.contentKey("I really love this product!"))).isEmpty();
+    }
+
+    @Test
+    void loadSheddingIsNotReportedAsAProviderFailure() {
+        when(anthropicClient.analyze("busy"))
+                .thenReturn(Mono.error(new ServiceBusyException("Too many pending Anthropic calls, try again later")));
+
+        assertThatThrownBy(() -> service.analyzeSentiment(request("busy")))
+                .isInstanceOf(ServiceBusyException.class);
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("condition not met in time").isLessThan(deadline);
+            Thread.onSpinWait();
+        }
+    }
+
+    private SemanticSentimentCache semanticCache() {
+        return new SemanticSentimentCache(true, 0.8, 1024, 8, 12, 100, Duration.ofMinutes(5), 0.0, meterRegistry);
+    }
+
+    private static SentimentRequest request(String text) {
+        SentimentRequest request = new SentimentRequest();
+        request.setText(text);
+        return request;
+    }
+
+    private static SentimentResponse response(String text) {
+        return SentimentResponse.builder()
+                .text(text)
+                .sentiment(SentimentResponse.SentimentType.POSITIVE)
+                .confidence(0.9)
+                .analysis("test")
+                .primaryEmotion(SentimentResponse.EmotionType.JOY)
+                .build();
+    }
+}
@@ -0,0 +1,213 @@
+package mat.pia.sentiment.service;
+
+import mat.pia.sentiment.dto.BatchJobRequest;
+import mat.pia.sentiment.dto.BatchJobResultPage;
+import mat.pia.sentiment.dto.BatchJobStatus;
+import mat.pia.sentiment.model.BatchJobEntity;
+import mat.pia.sentiment.model.BatchJobItemEntity;
+import mat.pia.sentiment.model.SentimentRequest;
+import mat.pia.sentiment.model.SentimentResponse;
+import mat.pia.sentiment.repository.BatchJobRepository;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/** Runs batch jobs end to end against {@link MessageBatchesStub} and an in-memory H2 database. */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@ActiveProfiles("test")
+class BatchJobServiceTest {
+
+    private static final MessageBatchesStub stub = startStub();
+
+    @Autowired
+    private BatchJobService batchJobService;
+
+    @Autowired
+    private BatchJobRepository jobRepository;
+
+    @DynamicPropertySource
+    static void stubProperties(DynamicPropertyRegistry registry) {
+        registry.add("anthropic.batches.url", stub::url);
+        registry.add("anthropic.batches.poller.enabled", () -> "false");
+        registry.add("anthropic.batches.max-requests-per-batch", () -> "2");
+        registry.add("anthropic.http.warm-up.enabled", () -> "false");
+    }
+
+    @AfterAll
+    static void stopStub() {
+        stub.close();
+    }
+
+    @BeforeEach
+    void setUp() {
+        stub.reset();
+        ReflectionTestUtils.setField(batchJobService, "submissionTimeout", Duration.ofMinutes(10));
+    }
+
+    @Test
+    void runsJobToCompletion() {
+        BatchJobStatus created = batchJobService.createJob(job("I love this", "This is awful", "please fail", "love it"));
+
+        BatchJobEntity job = jobRepository.findById(created.getId()).orElseThrow();
+        batchJobService.submitPending(job);
+        assertThat(stub.createdBatches()).isEqualTo(2);
+        assertThat(job.getStatus()).isEqualTo(BatchJobEntity.Status.SUBMITTED);
+
+        batchJobService.collectResults(job);
+
+        BatchJobStatus status = batchJobService.getStatus(created.getId());
+        assertThat(status.getStatus()).isEqualTo(BatchJobEntity.Status.COMPLETED);
+        assertThat(status.getSucceededItems()).isEqualTo(3);
+        assertThat(status.getFailedItems()).isEqualTo(1);
+
+        List<BatchJobResultPage.ItemResult> items = batchJobService.getResults(created.getId(), null, 10).getItems();
+        assertThat(items).extracting(BatchJobResultPage.ItemResult::getIndex).containsExactly(0, 1, 2, 3);
+        assertThat(items).extracting(BatchJobResultPage.ItemResult::getStatus).containsExactly(
+                BatchJobItemEntity.Status.SUCCEEDED,
+                BatchJobItemEntity.Status.SUCCEEDED,
+                BatchJobItemEntity.Status.FAILED,
+                BatchJobItemEntity.Status.SUCCEEDED);
+        assertThat(items.get(0).getResult().getSentiment()).isEqualTo(SentimentResponse.SentimentType.POSITIVE);
+        assertThat(items.get(1).getResult().getSentiment()).isEqualTo(SentimentResponse.SentimentType.NEGATIVE);
+        assertThat(items.get(1).getResult().getApiProvider()).isEqualTo("ANTHROPIC_BATCH");
+        assertThat(items.get(2).getErrorMessage()).contains("errored");
+    }
+
+    @Test
+    void resultThatCannotBeStoredFailsOnlyItsItem() {
+        BatchJobStatus created = batchJobService.createJob(job("love", "verbose hate"));
+        BatchJobEntity job = jobRepository.findById(created.getId()).orElseThrow();
+
+        batchJobService.submitPending(job);
+        batchJobService.collectResults(job);
+
+        BatchJobStatus status = batchJobService.getStatus(created.getId());
+        assertThat(status.getStatus()).isEqualTo(BatchJobEntity.Status.COMPLETED);
+        assertThat(status.getSucceededItems()).isEqualTo(1);
+        assertThat(status.getFailedItems()).isEqualTo(1);
+        List<BatchJobResultPage.ItemResult> items = batchJobService.getResults(created.getId(), null, 10).getItems();
+        assertThat(items.get(0).getResult().getSentiment()).isEqualTo(SentimentResponse.SentimentType.POSITIVE);
+        assertThat(items.get(1).getErrorMessage()).startsWith("Result could not be stored");
+    }
+
+    @Test
+    void retriesItemsTheProviderRejectedWithAServerError() {
+        BatchJobStatus created = batchJobService.createJob(job("love", "hate"));
+        BatchJobEntity job = jobRepository.findById(created.getId()).orElseThrow();
+
+        stub.rejectCreateWith(500);
+        batchJobService.submitPending(job);
+        assertThat(job.getStatus()).isEqualTo(BatchJobEntity.Status.QUEUED);
+        assertThat(itemStatuses(created.getId())).containsOnly(BatchJobItemEntity.Status.PENDING);
+
+        stub.rejectCreateWith(0);
+        batchJobService.submitPending(job);
+        batchJobService.collectResults(job);
+
+        assertThat(batchJobService.getStatus(created.getId()).getSucceededItems()).isEqualTo(2);
+    }
+
+    @Test
+    void rejectedChunkFailsOnlyItsOwnItems() {
+        BatchJobStatus created = batchJobService.createJob(job("love", "hate", "love it", "hate it"));
+        BatchJobEntity job = jobRepository.findById(created.getId()).orElseThrow();
+
+        stub.rejectCreateWith(400, 1);
+        batchJobService.submitPending(job);
+
+        assertThat(job.getStatus()).isEqualTo(BatchJobEntity.Status.SUBMITTED);
+        assertThat(itemStatuses(created.getId())).containsExactly(
+                BatchJobItemEntity.Status.SUBMITTED,
+                BatchJobItemEntity.Status.SUBMITTED,
+                BatchJobItemEntity.Status.FAILED,
+                BatchJobItemEntity.Status.FAILED);
+
+        batchJobService.collectResults(job);
+
+        BatchJobStatus status = batchJobService.getStatus(created.getId());
+        assertThat(status.getStatus()).isEqualTo(BatchJobEntity.Status.COMPLETED);
+        assertThat(status.getSucceededItems()).isEqualTo(2);
+        assertThat(status.getFailedItems()).isEqualTo(2);
+        assertThat(status.getErrorMessage()).contains("Provider rejected batch");
+        assertThat(batchJobService.getResults(created.getId(), null, 10).getItems().get(3).getErrorMessage())
+                .contains("Provider rejected batch");
+    }
+
+    @Test
+    void jobFailsWhenTheProviderRejectsEveryChunk() {
+        BatchJobStatus created = batchJobService.createJob(job("love", "hate", "love it"));
+        BatchJobEntity job = jobRepository.findById(created.getId()).orElseThrow();
+
+        stub.rejectCreateWith(400);
+        batchJobService.submitPending(job);
+
+        BatchJobStatus status = batchJobService.getStatus(created.getId());
+        assertThat(status.getStatus()).isEqualTo(BatchJobEntity.Status.FAILED);
+        assertThat(status.getFailedItems()).isEqualTo(3);
+        assertThat(stub.createdBatches()).isZero();
+    }
+
+    @Test
+    void neverResubmitsItemsWhoseSubmissionOutcomeIsUnknown() {
+        BatchJobStatus created = batchJobService.createJob(job("love", "hate"));
+        BatchJobEntity job = jobRepository.findById(created.getId()).orElseThrow();
+
+        stub.dropCreateResponse(true);
+        assertThatThrownBy(() -> batchJobService.submitPending(job)).isInstanceOf(RuntimeException.class);
+        assertThat(itemStatuses(created.getId())).containsOnly(BatchJobItemEntity.Status.SUBMITTING);
+
+        // A later poll inside the submission timeout leaves them alone
+        stub.dropCreateResponse(false);
+        batchJobService.submitPending(job);
+        assertThat(stub.createdBatches()).isEqualTo(1);
+        assertThat(itemStatuses(created.getId())).containsOnly(BatchJobItemEntity.Status.SUBMITTING);
+
+        // Once it has passed they are failed, not sent again
+        ReflectionTestUtils.setField(batchJobService, "submissionTimeout", Duration.ZERO);
+        batchJobService.collectResults(job);
+
+        assertThat(stub.createdBatches()).isEqualTo(1);
+        assertThat(stub.submittedRequests()).isEqualTo(2);
+        BatchJobStatus status = batchJobService.getStatus(created.getId());
+        assertThat(status.getStatus()).isEqualTo(BatchJobEntity.Status.COMPLETED);
+        assertThat(status.getFailedItems()).isEqualTo(2);
+        assertThat(batchJobService.getResults(created.getId(), null, 10).getItems())
+                .allSatisfy(item -> assertThat(item.getErrorMessage()).contains("outcome unknown"));
+    }
+
+    private List<BatchJobItemEntity.Status> itemStatuses(String jobId) {
+        return batchJobService.getResults(jobId, null, 100).getItems().stream()
+                .map(BatchJobResultPage.ItemResult::getStatus)
+                .collect(Collectors.toList());
+    }
+
+    private static BatchJobRequest job(String... texts) {
+        return new BatchJobRequest(IntStream.range(0, texts.length)
+                .mapToObj(i -> new SentimentRequest(texts[i], "test", null))
+                .collect(Collectors.toList()));
+    }
+
+    private static MessageBatchesStub startStub() {
+        try {
+            return new MessageBatchesStub();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
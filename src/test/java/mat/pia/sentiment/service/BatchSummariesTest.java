@@ -0,0 +1,69 @@
+package mat.pia.sentiment.service;
+
+import mat.pia.sentiment.dto.BatchSentimentResponse;
+import mat.pia.sentiment.dto.BatchStreamEvent;
+import mat.pia.sentiment.exception.ApiException;
+import mat.pia.sentiment.model.SentimentResponse;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+class BatchSummariesTest {
+
+    @Test
+    void keepsResultsInRequestOrderAndListsFailuresByIndex() {
+        List<BatchStreamEvent> events = List.of(
+                BatchStreamEvent.result(2, response(SentimentResponse.SentimentType.NEGATIVE, 0.6)),
+                BatchStreamEvent.failed(1, "Claude call failed"),
+                BatchStreamEvent.result(0, response(SentimentResponse.SentimentType.POSITIVE, 0.8)));
+
+        BatchSentimentResponse response = BatchSummaries.toResponse(4, events);
+
+        assertThat(response.getResults()).extracting(SentimentResponse::getSentiment).containsExactly(
+                SentimentResponse.SentimentType.POSITIVE,
+                SentimentResponse.SentimentType.NEGATIVE);
+        assertThat(response.getFailures()).extracting(BatchSentimentResponse.Failure::getIndex)
+                .containsExactly(1, 3);
+        assertThat(response.getFailures().get(0).getError()).isEqualTo("Claude call failed");
+        assertThat(response.getFailures().get(1).getError()).isNotBlank();
+    }
+
+    @Test
+    void summaryCountsOnlySuccessfulEntries() {
+        List<BatchStreamEvent> events = List.of(
+                BatchStreamEvent.result(0, response(SentimentResponse.SentimentType.POSITIVE, 0.8)),
+                BatchStreamEvent.result(1, response(SentimentResponse.SentimentType.POSITIVE, 0.6)),
+                BatchStreamEvent.failed(2, "boom"));
+
+        BatchSentimentResponse.BatchSummary summary = BatchSummaries.toResponse(3, events).getSummary();
+
+        assertThat(summary.getTotalRequests()).isEqualTo(3);
+        assertThat(summary.getProcessedRequests()).isEqualTo(2);
+        assertThat(summary.getFailedRequests()).isEqualTo(1);
+        assertThat(summary.getPositiveCount()).isEqualTo(2);
+        assertThat(summary.getAverageConfidence()).isCloseTo(0.7, within(1e-9));
+    }
+
+    @Test
+    void failsWhenNoEntrySucceeded() {
+        List<BatchStreamEvent> events = List.of(
+                BatchStreamEvent.failed(0, "boom"),
+                BatchStreamEvent.failed(1, "boom"));
+
+        assertThatThrownBy(() -> BatchSummaries.toResponse(2, events))
+                .isInstanceOf(ApiException.class);
+    }
+
+    private static SentimentResponse response(SentimentResponse.SentimentType sentiment, double confidence) {
+        return SentimentResponse.builder()
+                .text("text")
+                .sentiment(sentiment)
+                .confidence(confidence)
+                .primaryEmotion(SentimentResponse.EmotionType.NONE)
+                .build();
+    }
+}
@@ -0,0 +1,55 @@
+package mat.pia.sentiment.service;
+
+import mat.pia.sentiment.exception.InvalidRequestException;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class HistoryCursorTest {
+
+    @Test
+    void roundTripsPosition() {
+        HistoryCursor cursor = new HistoryCursor(LocalDateTime.of(2025, 3, 15, 14, 30, 45, 123_000_000), 42);
+
+        HistoryCursor decoded = HistoryCursor.decode(cursor.encode());
+
+        assertThat(decoded).isEqualTo(cursor);
+    }
+
+    @Test
+    void roundTripsWholeSecondsAndNanos() {
+        HistoryCursor wholeSecond = new HistoryCursor(LocalDateTime.of(2025, 1, 1, 0, 0), 1);
+        HistoryCursor nanos = new HistoryCursor(LocalDateTime.of(2025, 1, 1, 0, 0, 0, 1), Long.MAX_VALUE);
+
+        assertThat(HistoryCursor.decode(wholeSecond.encode())).isEqualTo(wholeSecond);
+        assertThat(HistoryCursor.decode(nanos.encode())).isEqualTo(nanos);
+    }
+
+    @Test
+    void encodesUrlSafeWithoutPadding() {
+        String token = new HistoryCursor(LocalDateTime.of(2025, 3, 15, 14, 30, 45, 123_000_000), 42).encode();
+
+        assertThat(token).isEqualTo("MjAyNS0wMy0xNVQxNDozMDo0NS4xMjN8NDI").doesNotContain("=", "+", "/");
+    }
+
+    @Test
+    void rejectsMalformedTokens() {
+        assertThatThrownBy(() -> HistoryCursor.decode("not base64!"))
+                .isInstanceOf(InvalidRequestException.class);
+        assertThatThrownBy(() -> HistoryCursor.decode(encode("2025-03-15T14:30:45")))
+                .isInstanceOf(InvalidRequestException.class);
+        assertThatThrownBy(() -> HistoryCursor.decode(encode("yesterday|42")))
+                .isInstanceOf(InvalidRequestException.class);
+        assertThatThrownBy(() -> HistoryCursor.decode(encode("2025-03-15T14:30:45|forty-two")))
+                .isInstanceOf(InvalidRequestException.class);
+    }
+
+    private static String encode(String position) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+}
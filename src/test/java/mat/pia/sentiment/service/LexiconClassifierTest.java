@@ -0,0 +1,110 @@
+package mat.pia.sentiment.service;
+
+import mat.pia.sentiment.model.SentimentResponse;
+import mat.pia.sentiment.model.SentimentResponse.EmotionType;
+import mat.pia.sentiment.model.SentimentResponse.SentimentType;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.ClassPathResource;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LexiconClassifierTest {
+
+    private final LexiconClassifier classifier = new LexiconClassifier(new ClassPathResource("lexicon/sentiment-lexicon.csv"));
+
+    @Test
+    void scoresCueWordsWithTheirEmotion() {
+        SentimentResponse positive = classifier.classify("I love it");
+        SentimentResponse negative = classifier.classify("I hate this");
+
+        assertThat(positive.getSentiment()).isEqualTo(SentimentType.POSITIVE);
+        assertThat(positive.getPrimaryEmotion()).isEqualTo(EmotionType.JOY);
+        assertThat(positive.getEmotionScores()).containsEntry(EmotionType.JOY, 1.0).doesNotContainKey(EmotionType.NONE);
+        assertThat(negative.getSentiment()).isEqualTo(SentimentType.NEGATIVE);
+        assertThat(negative.getPrimaryEmotion()).isEqualTo(EmotionType.ANGER);
+    }
+
+    @Test
+    void textWithoutCuesIsNeutralWithLowConfidence() {
+        SentimentResponse response = classifier.classify("The meeting is at noon");
+
+        assertThat(response.getSentiment()).isEqualTo(SentimentType.NEUTRAL);
+        assertThat(response.getConfidence()).isEqualTo(0.3);
+        assertThat(response.getPrimaryEmotion()).isEqualTo(EmotionType.NONE);
+    }
+
+    @Test
+    void negationFlipsTheCueAndDropsItsEmotion() {
+        SentimentResponse response = classifier.classify("This is not good");
+
+        assertThat(response.getSentiment()).isEqualTo(SentimentType.NEGATIVE);
+        assertThat(response.getPrimaryEmotion()).isEqualTo(EmotionType.NONE);
+        assertThat(response.getAnalysis()).contains("negation applied");
+    }
+
+    @Test
+    void contractedNegatorsCount() {
+        assertThat(classifier.classify("I don't like it").getSentiment()).isEqualTo(SentimentType.NEGATIVE);
+        assertThat(classifier.classify("I didn't hate it").getSentiment()).isEqualTo(SentimentType.POSITIVE);
+    }
+
+    @Test
+    void negationOnlyReachesTheNextFewWords() {
+        assertThat(classifier.classify("not that I would say it was good").getSentiment())
+                .isEqualTo(SentimentType.POSITIVE);
+    }
+
+    @Test
+    void clauseAfterAContrastOutweighsTheOneBefore() {
+        assertThat(classifier.classify("The food was good but the service was terrible").getSentiment())
+                .isEqualTo(SentimentType.NEGATIVE);
+        assertThat(classifier.classify("The service was terrible but the food was good").getSentiment())
+                .isEqualTo(SentimentType.POSITIVE);
+    }
+
+    @Test
+    void modifiersScaleConfidence() {
+        double plain = classifier.classify("good").getConfidence();
+
+        assertThat(classifier.classify("very good").getConfidence()).isGreaterThan(plain);
+        assertThat(classifier.classify("slightly good").getConfidence()).isLessThan(plain);
+    }
+
+    @Test
+    void mixedEvidenceIsNeutral() {
+        SentimentResponse response = classifier.classify("good and bad");
+
+        assertThat(response.getSentiment()).isEqualTo(SentimentType.NEUTRAL);
+        assertThat(response.getConfidence()).isEqualTo(0.5);
+    }
+
+    @Test
+    void questionsAreLessCertain() {
+        assertThat(classifier.classify("Is it good?").getConfidence())
+                .isLessThan(classifier.classify("It is good").getConfidence());
+    }
+
+    @Test
+    void fallsBackToTheSingularOfPlurals() {
+        LexiconClassifier small = new LexiconClassifier(lexicon("# comment\n\ngift,2,SURPRISE\n"));
+
+        SentimentResponse response = small.classify("So many gifts");
+
+        assertThat(response.getSentiment()).isEqualTo(SentimentType.POSITIVE);
+        assertThat(response.getPrimaryEmotion()).isEqualTo(EmotionType.SURPRISE);
+    }
+
+    @Test
+    void rejectsUnknownEmotions() {
+        assertThatThrownBy(() -> new LexiconClassifier(lexicon("gift,2,DELIGHT\n")))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static ByteArrayResource lexicon(String csv) {
+        return new ByteArrayResource(csv.getBytes(StandardCharsets.UTF_8));
+    }
+}
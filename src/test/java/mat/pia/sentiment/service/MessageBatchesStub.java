@@ -0,0 +1,192 @@
+package mat.pia.sentiment.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-memory stand-in for the Message Batches API: create, retrieve and the JSONL results file.
+ * Every batch has ended by the time it is retrieved. Texts containing "love" come back
+ * POSITIVE, texts containing "fail" as errored results, everything else NEGATIVE. Texts
+ * containing "verbose" get an analysis longer than the sentiment_analyses column.
+ */
+class MessageBatchesStub implements AutoCloseable {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpServer server;
+    private final Map<String, List<JsonNode>> batches = new ConcurrentHashMap<>();
+    private final AtomicInteger created = new AtomicInteger();
+    private final AtomicInteger submittedRequests = new AtomicInteger();
+
+    private volatile int rejectCreateWith;
+    private volatile int acceptBeforeRejecting;
+    private volatile boolean dropCreateResponse;
+
+    MessageBatchesStub() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/v1/messages/batches", this::handle);
+        server.start();
+    }
+
+    String url() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/v1/messages/batches";
+    }
+
+    /** Batches the provider accepted, including ones whose response never reached the caller. */
+    int createdBatches() {
+        return created.get();
+    }
+
+    int submittedRequests() {
+        return submittedRequests.get();
+    }
+
+    /** Answers the next creates with this error status, without creating a batch (0 to stop). */
+    void rejectCreateWith(int status) {
+        rejectCreateWith(status, 0);
+    }
+
+    /** Accepts creates until this many batches exist, then answers with the error status. */
+    void rejectCreateWith(int status, int acceptBeforeRejecting) {
+        this.acceptBeforeRejecting = acceptBeforeRejecting;
+        this.rejectCreateWith = status;
+    }
+
+    /** Creates the next batches but drops the connection instead of answering. */
+    void dropCreateResponse(boolean drop) {
+        this.dropCreateResponse = drop;
+    }
+
+    void reset() {
+        batches.clear();
+        created.set(0);
+        submittedRequests.set(0);
+        rejectCreateWith = 0;
+        acceptBeforeRejecting = 0;
+        dropCreateResponse = false;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String path = exchange.getRequestURI().getPath().substring("/v1/messages/batches".length());
+            if ("POST".equals(exchange.getRequestMethod()) && path.isEmpty()) {
+                create(exchange);
+            } else if ("GET".equals(exchange.getRequestMethod()) && path.endsWith("/results")) {
+                results(exchange, path.substring(1, path.length() - "/results".length()));
+            } else if ("GET".equals(exchange.getRequestMethod()) && !path.isEmpty()) {
+                retrieve(exchange, path.substring(1));
+            } else {
+                exchange.sendResponseHeaders(404, -1);
+            }
+        }
+    }
+
+    private void create(HttpExchange exchange) throws IOException {
+        JsonNode body;
+        try (InputStream in = exchange.getRequestBody()) {
+            body = objectMapper.readTree(in);
+        }
+        if (rejectCreateWith != 0 && created.get() >= acceptBeforeRejecting) {
+            sendJson(exchange, rejectCreateWith, objectMapper.createObjectNode().put("type", "error"));
+            return;
+        }
+        String id = "msgbatch_stub_" + created.incrementAndGet();
+        List<JsonNode> requests = new ArrayList<>();
+        body.path("requests").forEach(requests::add);
+        batches.put(id, requests);
+        submittedRequests.addAndGet(requests.size());
+        if (dropCreateResponse) {
+            // Closing without a status line leaves the client unsure whether the batch exists
+            return;
+        }
+        sendJson(exchange, 200, batch(id, "in_progress"));
+    }
+
+    private void retrieve(HttpExchange exchange, String id) throws IOException {
+        if (!batches.containsKey(id)) {
+            exchange.sendResponseHeaders(404, -1);
+            return;
+        }
+        sendJson(exchange, 200, batch(id, "ended"));
+    }
+
+    private void results(HttpExchange exchange, String id) throws IOException {
+        StringBuilder lines = new StringBuilder();
+        for (JsonNode request : batches.getOrDefault(id, List.of())) {
+            String text = request.path("params").path("messages").path(0).path("content").asText();
+            ObjectNode line = objectMapper.createObjectNode();
+            line.put("custom_id", request.path("custom_id").asText());
+            line.set("result", text.contains("fail") ? errored() : succeeded(text));
+            lines.append(objectMapper.writeValueAsString(line)).append('\n');
+        }
+        byte[] bytes = lines.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("content-type", "application/binary");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private ObjectNode batch(String id, String processingStatus) {
+        ObjectNode batch = objectMapper.createObjectNode();
+        batch.put("id", id);
+        batch.put("type", "message_batch");
+        batch.put("processing_status", processingStatus);
+        batch.put("results_url", url() + "/" + id + "/results");
+        return batch;
+    }
+
+    private ObjectNode succeeded(String text) {
+        ObjectNode content = objectMapper.createObjectNode();
+        content.put("sentiment", text.contains("love") ? "POSITIVE" : "NEGATIVE");
+        content.put("confidence", 0.9);
+        content.put("analysis", text.contains("verbose") ? "stub ".repeat(200) : "stub");
+        content.put("primaryEmotion", text.contains("love") ? "JOY" : "SADNESS");
+        content.putObject("emotionScores").put("JOY", 0.8).put("SADNESS", 0.1);
+
+        ObjectNode result = objectMapper.createObjectNode();
+        result.put("type", "succeeded");
+        ObjectNode message = result.putObject("message");
+        message.put("type", "message");
+        message.put("role", "assistant");
+        message.putArray("content").addObject().put("type", "text").put("text", content.toString());
+        message.putObject("usage").put("input_tokens", 10).put("output_tokens", 20);
+        return result;
+    }
+
+    private ObjectNode errored() {
+        ObjectNode result = objectMapper.createObjectNode();
+        result.put("type", "errored");
+        result.putObject("error").put("type", "error")
+                .putObject("error").put("type", "invalid_request_error").put("message", "stub failure");
+        return result;
+    }
+
+    private void sendJson(HttpExchange exchange, int status, JsonNode body) throws IOException {
+        byte[] bytes = objectMapper.writeValueAsBytes(body);
+        exchange.getResponseHeaders().add("content-type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package mat.pia.sentiment.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import mat.pia.sentiment.exception.ServiceBusyException;
+import mat.pia.sentiment.model.SentimentResponse;
+import mat.pia.sentiment.model.SentimentResponse.EmotionType;
+import mat.pia.sentiment.model.SentimentResponse.SentimentType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Runs the engine against src/test/resources/onnx/tiny-sentiment.onnx, which sums fixed
+ * per-token logits (see make_tiny_model.py next to it), so no model is downloaded.
+ */
+class OnnxSentimentEngineTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private OnnxSentimentEngine engine;
+
+    @AfterEach
+    void tearDown() {
+        if (engine != null && engine.isRunning()) {
+            engine.stop();
+        }
+    }
+
+    @Test
+    void classifiesWithTheModelsLabels() {
+        engine = start("sentiment_logits", "emotion_logits");
+
+        SentimentResponse good = engine.classify("good").block();
+        SentimentResponse bad = engine.classify("Bad!").block();
+
+        assertThat(good.getSentiment()).isEqualTo(SentimentType.POSITIVE);
+        assertThat(good.getConfidence()).isEqualTo(0.91);
+        assertThat(good.getPrimaryEmotion()).isEqualTo(EmotionType.JOY);
+        assertThat(good.getEmotionScores()).containsEntry(EmotionType.JOY, 0.88).containsEntry(EmotionType.ANGER, 0.12);
+        assertThat(good.getAnalysis()).contains("tiny-sentiment.onnx");
+        assertThat(bad.getSentiment()).isEqualTo(SentimentType.NEGATIVE);
+        assertThat(bad.getPrimaryEmotion()).isEqualTo(EmotionType.ANGER);
+    }
+
+    @Test
+    void noEmotionAboveTheThresholdMeansNone() {
+        engine = start("sentiment_logits", "emotion_logits");
+
+        SentimentResponse response = engine.classify("meh").block();
+
+        assertThat(response.getSentiment()).isEqualTo(SentimentType.NEUTRAL);
+        assertThat(response.getPrimaryEmotion()).isEqualTo(EmotionType.NONE);
+    }
+
+    @Test
+    void paddingInABatchDoesNotChangeResults() {
+        engine = start("sentiment_logits", "emotion_logits");
+        List<String> texts = List.of("good", "the movie the movie the movie was meh", "bad", "very good good");
+
+        // One worker, so texts queued together run in shared batches padded to the longest text
+        List<SentimentResponse> responses = Flux.range(0, 10)
+                .concatMapIterable(round -> texts)
+                .flatMapSequential(engine::classify)
+                .collectList()
+                .block();
+
+        assertThat(responses).hasSize(40);
+        for (int i = 0; i < responses.size(); i += texts.size()) {
+            assertThat(responses.subList(i, i + texts.size())).extracting(SentimentResponse::getSentiment).containsExactly(
+                    SentimentType.POSITIVE, SentimentType.NEUTRAL, SentimentType.NEGATIVE, SentimentType.POSITIVE);
+        }
+        assertThat(meterRegistry.get("sentiment.onnx.batch.size").summary().max()).isGreaterThan(1);
+    }
+
+    @Test
+    void emotionOutputIsOptional() {
+        engine = start("sentiment_logits", "missing_output");
+
+        SentimentResponse response = engine.classify("good").block();
+
+        assertThat(response.getSentiment()).isEqualTo(SentimentType.POSITIVE);
+        assertThat(response.getPrimaryEmotion()).isEqualTo(EmotionType.NONE);
+        assertThat(response.getEmotionScores()).containsEntry(EmotionType.JOY, 0.0);
+    }
+
+    @Test
+    void rejectsAModelWithoutTheSentimentOutput() {
+        assertThatThrownBy(() -> create("missing_output", "emotion_logits"))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("missing_output");
+    }
+
+    @Test
+    void rejectsSentimentLabelsThatDoNotMatchTheModel() {
+        assertThatThrownBy(() -> create("sentiment_logits", "emotion_logits",
+                List.of(SentimentType.NEGATIVE, SentimentType.POSITIVE)))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("has 3 classes")
+                .hasMessageContaining("sentiment.onnx.sentiment-labels lists 2 labels");
+    }
+
+    @Test
+    void rejectsTextsOnceStopped() {
+        engine = start("sentiment_logits", "emotion_logits");
+        engine.stop();
+
+        assertThatThrownBy(() -> engine.classify("good").block())
+                .isInstanceOf(ServiceBusyException.class)
+                .hasMessageContaining("not running");
+    }
+
+    private OnnxSentimentEngine start(String sentimentOutput, String emotionOutput) {
+        OnnxSentimentEngine created = create(sentimentOutput, emotionOutput);
+        created.start();
+        return created;
+    }
+
+    private OnnxSentimentEngine create(String sentimentOutput, String emotionOutput) {
+        return create(sentimentOutput, emotionOutput,
+                List.of(SentimentType.NEGATIVE, SentimentType.NEUTRAL, SentimentType.POSITIVE));
+    }
+
+    private OnnxSentimentEngine create(String sentimentOutput, String emotionOutput,
+                                       List<SentimentType> sentimentLabels) {
+        return new OnnxSentimentEngine(meterRegistry,
+                new ClassPathResource("onnx/tiny-sentiment.onnx"),
+                new ClassPathResource("onnx/vocab.txt"),
+                true, 128, 8, 1, 1, 100,
+                sentimentOutput,
+                sentimentLabels,
+                emotionOutput,
+                List.of(EmotionType.JOY, EmotionType.SADNESS, EmotionType.ANGER, EmotionType.FEAR,
+                        EmotionType.SURPRISE, EmotionType.DISGUST, EmotionType.TRUST, EmotionType.ANTICIPATION),
+                0.5);
+    }
+}
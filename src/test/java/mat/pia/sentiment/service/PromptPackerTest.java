@@ -0,0 +1,142 @@
+package mat.pia.sentiment.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import mat.pia.sentiment.client.AnthropicClient;
+import mat.pia.sentiment.client.AnthropicMessageCodec;
+import mat.pia.sentiment.model.SentimentResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class PromptPackerTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AnthropicMessageCodec messageCodec = new AnthropicMessageCodec(objectMapper, new SimpleMeterRegistry());
+    private final AnthropicClient anthropicClient = mock(AnthropicClient.class);
+    private final PromptPacker packer = new PromptPacker(anthropicClient, messageCodec);
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(messageCodec, "model", "claude-test");
+        ReflectionTestUtils.setField(messageCodec, "maxTokens", 1000);
+        ReflectionTestUtils.setField(packer, "enabled", true);
+        ReflectionTestUtils.setField(packer, "maxItems", 20);
+        ReflectionTestUtils.setField(packer, "maxTextChars", 500);
+        ReflectionTestUtils.setField(packer, "maxInputTokens", 4000);
+        ReflectionTestUtils.setField(packer, "outputTokensPerItem", 100);
+    }
+
+    @Test
+    void packsAsManyTextsAsTheOutputBudgetAllows() {
+        // 1000 max tokens / 100 per item = 10 per pack
+        List<List<Integer>> units = packer.plan(texts(25, "short text"));
+
+        assertThat(units).extracting(List::size).containsExactly(10, 10, 5);
+        assertThat(units.stream().flatMap(List::stream)).containsExactlyElementsOf(range(25));
+    }
+
+    @Test
+    void sendsLongTextsAlone() {
+        List<String> texts = new ArrayList<>(texts(3, "short"));
+        texts.add(1, "x".repeat(501));
+
+        List<List<Integer>> units = packer.plan(texts);
+
+        assertThat(units).containsExactly(List.of(1), List.of(0, 2, 3));
+    }
+
+    @Test
+    void startsANewPackWhenTheInputBudgetIsReached() {
+        ReflectionTestUtils.setField(packer, "maxInputTokens", 400);
+
+        // Each 400-char text is about 107 tokens with its overhead, on top of the packed prompt
+        List<List<Integer>> units = packer.plan(texts(6, "y".repeat(400)));
+
+        assertThat(units).hasSizeGreaterThan(1);
+        assertThat(units).allSatisfy(unit -> assertThat(unit.size()).isLessThan(4));
+        assertThat(units.stream().flatMap(List::stream)).containsExactlyElementsOf(range(6));
+    }
+
+    @Test
+    void splitsAPackWhoseReplyIsMalformed() {
+        List<String> texts = List.of("a", "b", "c", "d");
+        // The full pack comes back without index 3; both halves decode
+        when(anthropicClient.createMessage(any())).thenAnswer(invocation -> {
+            ObjectNode body = invocation.getArgument(0);
+            String content = body.path("messages").path(0).path("content").asText();
+            long entries = content.lines().filter(line -> line.matches("\\[\\d+] .*")).count();
+            return Mono.just(packedReply((int) (entries == 4 ? 3 : entries)));
+        });
+
+        List<SentimentResponse> responses = packer.analyze(texts).block();
+
+        assertThat(responses).extracting(SentimentResponse::getText).containsExactlyElementsOf(texts);
+        verify(anthropicClient, times(3)).createMessage(any());
+    }
+
+    @Test
+    void fallsBackToSingleCallsWhenPairsAreMalformedToo() {
+        when(anthropicClient.createMessage(any())).thenReturn(Mono.just(packedReply(0)));
+        when(anthropicClient.analyze(anyString())).thenAnswer(invocation -> Mono.just(SentimentResponse.builder()
+                .text(invocation.getArgument(0))
+                .sentiment(SentimentResponse.SentimentType.NEUTRAL)
+                .build()));
+
+        List<SentimentResponse> responses = packer.analyze(List.of("a", "b", "c")).block();
+
+        assertThat(responses).extracting(SentimentResponse::getText).containsExactly("a", "b", "c");
+        verify(anthropicClient, times(3)).analyze(anyString());
+    }
+
+    @Test
+    void packedContentKeyDependsOnThePackedPromptAndPerItemBudget() {
+        String packedKey = packer.packedContentKey("I love it");
+        ReflectionTestUtils.setField(packer, "outputTokensPerItem", 50);
+
+        assertThat(packedKey).isNotEqualTo(messageCodec.contentKey("I love it"));
+        assertThat(packer.packedContentKey("I love it")).isNotEqualTo(packedKey);
+    }
+
+    /** A Messages API reply whose text is a packed array covering indexes 0..count-1. */
+    private String packedReply(int count) {
+        ArrayNode entries = objectMapper.createArrayNode();
+        for (int i = 0; i < count; i++) {
+            entries.addObject()
+                    .put("index", i)
+                    .put("sentiment", "POSITIVE")
+                    .put("confidence", 0.8)
+                    .put("primaryEmotion", "JOY")
+                    .put("analysis", "packed");
+        }
+        ObjectNode message = objectMapper.createObjectNode();
+        message.put("type", "message");
+        message.putArray("content").addObject().put("type", "text").put("text", entries.toString());
+        message.putObject("usage").put("input_tokens", 10).put("output_tokens", 10);
+        return message.toString();
+    }
+
+    private static List<String> texts(int count, String text) {
+        return IntStream.range(0, count).mapToObj(i -> text + " " + i).collect(Collectors.toList());
+    }
+
+    private static List<Integer> range(int count) {
+        return IntStream.range(0, count).boxed().collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,146 @@
+package mat.pia.sentiment.service;
+
+import mat.pia.sentiment.dto.AnalyticsSummary;
+import mat.pia.sentiment.dto.SourceAnalytics;
+import mat.pia.sentiment.dto.TimeBucketAnalytics;
+import mat.pia.sentiment.exception.InvalidRequestException;
+import mat.pia.sentiment.model.SentimentEntity;
+import mat.pia.sentiment.model.SentimentResponse.EmotionType;
+import mat.pia.sentiment.model.SentimentResponse.SentimentType;
+import mat.pia.sentiment.repository.SentimentRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * Runs the analytics queries against 100 rows in an in-memory H2 database and checks them
+ * against the same figures computed from the seeded rows.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@ActiveProfiles("test")
+class SentimentAnalyticsServiceTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2024, 3, 1, 0, 0);
+    private static final LocalDateTime END = START.plusDays(30);
+    private static final List<String> SOURCES = List.of("web", "api", "batch", "import");
+
+    @Autowired
+    private SentimentAnalyticsService analyticsService;
+
+    @Autowired
+    private SentimentRepository sentimentRepository;
+
+    private List<SentimentEntity> rows;
+
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) {
+        registry.add("anthropic.http.warm-up.enabled", () -> "false");
+    }
+
+    @BeforeEach
+    void setUp() {
+        sentimentRepository.deleteAll();
+        // Every seven hours over about 29 days, at uneven minutes, with uneven source and sentiment mixes
+        rows = sentimentRepository.saveAll(IntStream.range(0, 100)
+                .mapToObj(i -> SentimentEntity.builder()
+                        .text("text " + i)
+                        .sentiment(SentimentType.values()[(i * i) % SentimentType.values().length])
+                        .confidence(0.3 + (i % 7) / 10.0)
+                        .primaryEmotion(i % 5 == 0 ? null : EmotionType.values()[i % EmotionType.values().length])
+                        .source(SOURCES.get((i % 10) % SOURCES.size()))
+                        .createdAt(START.plusHours(7L * i).plusMinutes((13L * i) % 60))
+                        .apiProvider("test")
+                        .build())
+                .toList());
+        // Outside the window, so it must not be counted
+        sentimentRepository.save(SentimentEntity.builder()
+                .text("late").sentiment(SentimentType.POSITIVE).confidence(1.0).source("web")
+                .createdAt(END).apiProvider("test").build());
+    }
+
+    @Test
+    void summaryMatchesTheRows() {
+        AnalyticsSummary summary = analyticsService.summarize(START, END);
+
+        assertThat(summary.getTotal()).isEqualTo(100);
+        assertThat(summary.getAverageConfidence()).isCloseTo(averageConfidence(rows), within(1e-9));
+        assertThat(summary.getSentimentCounts()).isEqualTo(counts(rows, SentimentEntity::getSentiment));
+        assertThat(summary.getEmotionCounts()).isEqualTo(counts(
+                rows.stream().filter(row -> row.getPrimaryEmotion() != null).toList(), SentimentEntity::getPrimaryEmotion));
+    }
+
+    @Test
+    void sourcesMatchTheRowsLargestFirst() {
+        List<SourceAnalytics> sources = analyticsService.bySource(START, END);
+        Map<String, List<SentimentEntity>> bySource = rows.stream().collect(Collectors.groupingBy(SentimentEntity::getSource));
+
+        assertThat(sources).extracting(SourceAnalytics::getSource).containsExactlyInAnyOrderElementsOf(bySource.keySet());
+        assertThat(sources).extracting(SourceAnalytics::getTotal).isSortedAccordingTo((a, b) -> Long.compare(b, a));
+        for (SourceAnalytics source : sources) {
+            List<SentimentEntity> expected = bySource.get(source.getSource());
+            assertThat(source.getTotal()).as(source.getSource()).isEqualTo(expected.size());
+            assertThat(source.getAverageConfidence()).as(source.getSource()).isCloseTo(averageConfidence(expected), within(1e-9));
+            assertThat(source.getSentimentCounts()).as(source.getSource()).isEqualTo(counts(expected, SentimentEntity::getSentiment));
+        }
+    }
+
+    @Test
+    void dailyTimelineMatchesTheRows() {
+        assertTimeline(analyticsService.timeline("day", START, END), ChronoUnit.DAYS);
+    }
+
+    @Test
+    void hourlyTimelineMatchesTheRows() {
+        assertTimeline(analyticsService.timeline("HOUR", START, END), ChronoUnit.HOURS);
+    }
+
+    @Test
+    void rejectsBadBucketsAndWindows() {
+        assertThatThrownBy(() -> analyticsService.timeline("week", START, END))
+                .isInstanceOf(InvalidRequestException.class)
+                .hasMessageContaining("week");
+        assertThatThrownBy(() -> analyticsService.timeline("hour", START, START.plusYears(1)))
+                .isInstanceOf(InvalidRequestException.class)
+                .hasMessageContaining("more than the maximum");
+        assertThatThrownBy(() -> analyticsService.summarize(END, START)).isInstanceOf(InvalidRequestException.class);
+        assertThatThrownBy(() -> analyticsService.bySource(START, START)).isInstanceOf(InvalidRequestException.class);
+    }
+
+    private void assertTimeline(List<TimeBucketAnalytics> timeline, ChronoUnit unit) {
+        Map<LocalDateTime, List<SentimentEntity>> byBucket = rows.stream()
+                .collect(Collectors.groupingBy(row -> row.getCreatedAt().truncatedTo(unit)));
+
+        assertThat(timeline).extracting(TimeBucketAnalytics::getStart)
+                .containsExactlyElementsOf(byBucket.keySet().stream().sorted().toList());
+        for (TimeBucketAnalytics bucket : timeline) {
+            List<SentimentEntity> expected = byBucket.get(bucket.getStart());
+            assertThat(bucket.getTotal()).as(bucket.getStart().toString()).isEqualTo(expected.size());
+            assertThat(bucket.getAverageConfidence()).isCloseTo(averageConfidence(expected), within(1e-9));
+            assertThat(bucket.getSentimentCounts()).isEqualTo(counts(expected, SentimentEntity::getSentiment));
+        }
+    }
+
+    private static double averageConfidence(List<SentimentEntity> rows) {
+        return rows.stream().mapToDouble(SentimentEntity::getConfidence).average().orElse(0.0);
+    }
+
+    private static <K> Map<K, Long> counts(List<SentimentEntity> rows, Function<SentimentEntity, K> key) {
+        return rows.stream().collect(Collectors.groupingBy(key, Collectors.counting()));
+    }
+}
@@ -0,0 +1,64 @@
+package mat.pia.sentiment.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.ClassPathResource;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/** Ids refer to the lines of src/test/resources/onnx/vocab.txt. */
+class WordPieceTokenizerTest {
+
+    private static final long PAD = 0, UNK = 1, CLS = 2, SEP = 3, GOOD = 4, BAD = 5, UN = 8, BELIEV = 9, ABLE = 10,
+            BANG = 11, THE = 12, MOVIE = 13, CAFE = 14;
+
+    private final WordPieceTokenizer tokenizer = new WordPieceTokenizer(new ClassPathResource("onnx/vocab.txt"), true);
+
+    @Test
+    void framesWordsWithClsAndSep() {
+        assertThat(tokenizer.encode("the movie", 128)).containsExactly(CLS, THE, MOVIE, SEP);
+        assertThat(tokenizer.encode("", 128)).containsExactly(CLS, SEP);
+        assertThat(tokenizer.padId()).isEqualTo(PAD);
+    }
+
+    @Test
+    void splitsWordsIntoTheLongestKnownPieces() {
+        assertThat(tokenizer.encode("unbelievable", 128)).containsExactly(CLS, UN, BELIEV, ABLE, SEP);
+    }
+
+    @Test
+    void splitsPunctuationAndWhitespace() {
+        assertThat(tokenizer.encode("  good!bad\t", 128)).containsExactly(CLS, GOOD, BANG, BAD, SEP);
+    }
+
+    @Test
+    void wordWithAnUnknownPieceBecomesOneUnknownToken() {
+        assertThat(tokenizer.encode("unbelievably good", 128)).containsExactly(CLS, UNK, GOOD, SEP);
+    }
+
+    @Test
+    void lowercasesAndStripsAccents() {
+        assertThat(tokenizer.encode("The CAFÉ", 128)).containsExactly(CLS, THE, CAFE, SEP);
+
+        WordPieceTokenizer cased = new WordPieceTokenizer(new ClassPathResource("onnx/vocab.txt"), false);
+        assertThat(cased.encode("The movie", 128)).containsExactly(CLS, UNK, MOVIE, SEP);
+    }
+
+    @Test
+    void truncatesToTheMaximumLengthAndKeepsSep() {
+        assertThat(tokenizer.encode("good bad good bad", 4)).containsExactly(CLS, GOOD, BAD, SEP);
+        assertThat(tokenizer.encode("unbelievable", 4)).containsExactly(CLS, UN, BELIEV, SEP);
+    }
+
+    @Test
+    void requiresTheSpecialTokens() {
+        ByteArrayResource vocab = new ByteArrayResource("[PAD]\n[UNK]\n[SEP]\ngood\n".getBytes(StandardCharsets.UTF_8));
+
+        assertThatThrownBy(() -> new WordPieceTokenizer(vocab, true))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("[CLS]");
+    }
+}
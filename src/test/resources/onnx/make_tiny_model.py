@@ -0,0 +1,119 @@
+"""Writes tiny-sentiment.onnx, the test fixture for OnnxSentimentEngine.
+
+Each vocab.txt token has a fixed row of sentiment logits (NEGATIVE, NEUTRAL, POSITIVE) and
+emotion logits (JOY, SADNESS, ANGER, FEAR, SURPRISE, DISGUST, TRUST, ANTICIPATION); the
+model sums the rows of the unmasked tokens. [PAD] carries strong logits so that a padding
+position leaking through the attention mask changes the result.
+
+Plain Python with a hand-rolled protobuf encoder, so it runs without the onnx package:
+    python3 make_tiny_model.py
+"""
+import struct
+
+VOCAB = [line.strip() for line in open("vocab.txt", encoding="utf-8")]
+
+SENTIMENT = {
+    "[PAD]": [9, 0, 0],
+    "good": [0, 0, 3],
+    "bad": [3, 0, 0],
+    "meh": [0, 3, 0],
+}
+EMOTION = {
+    "[PAD]": [0, 0, 9, 0, 0, 0, 0, 0],
+    # Every sequence holds one [CLS], which keeps emotions below the threshold by default
+    "[CLS]": [-2] * 8,
+    "good": [4, 0, 0, 0, 0, 0, 0, 0],
+    "bad": [0, 0, 4, 0, 0, 0, 0, 0],
+}
+
+
+def varint(value):
+    value &= (1 << 64) - 1
+    out = bytearray()
+    while True:
+        byte = value & 0x7F
+        value >>= 7
+        if value:
+            out.append(byte | 0x80)
+        else:
+            out.append(byte)
+            return bytes(out)
+
+
+def field(number, wire_type, payload):
+    return varint(number << 3 | wire_type) + payload
+
+
+def int_field(number, value):
+    return field(number, 0, varint(value))
+
+
+def bytes_field(number, value):
+    if isinstance(value, str):
+        value = value.encode("utf-8")
+    return field(number, 2, varint(len(value)) + value)
+
+
+def tensor(name, rows):
+    floats = b"".join(struct.pack("<f", value) for row in rows for value in row)
+    return (int_field(1, len(rows)) + int_field(1, len(rows[0]))
+            + int_field(2, 1)  # FLOAT
+            + bytes_field(8, name)
+            + bytes_field(9, floats))
+
+
+def value_info(name, elem_type, dims):
+    shape = b"".join(bytes_field(1, int_field(1, d) if isinstance(d, int) else bytes_field(2, d)) for d in dims)
+    tensor_type = int_field(1, elem_type) + bytes_field(2, shape)
+    return bytes_field(1, name) + bytes_field(2, bytes_field(1, tensor_type))
+
+
+def attribute_int(name, value):
+    return bytes_field(1, name) + int_field(3, value) + int_field(20, 2)  # INT
+
+
+def attribute_ints(name, values):
+    return bytes_field(1, name) + b"".join(int_field(8, v) for v in values) + int_field(20, 7)  # INTS
+
+
+def node(op_type, inputs, outputs, *attributes):
+    return (b"".join(bytes_field(1, i) for i in inputs)
+            + b"".join(bytes_field(2, o) for o in outputs)
+            + bytes_field(3, outputs[0] + "_node")
+            + bytes_field(4, op_type)
+            + b"".join(bytes_field(5, a) for a in attributes))
+
+
+def rows(table, width):
+    return [table.get(token, [0] * width) for token in VOCAB]
+
+
+nodes = [
+    node("Cast", ["attention_mask"], ["mask_float"], attribute_int("to", 1)),
+    node("Unsqueeze", ["mask_float"], ["mask"], attribute_ints("axes", [2])),
+    node("Gather", ["sentiment_table", "input_ids"], ["sentiment_tokens"]),
+    node("Mul", ["sentiment_tokens", "mask"], ["sentiment_masked"]),
+    node("ReduceSum", ["sentiment_masked"], ["sentiment_logits"],
+         attribute_ints("axes", [1]), attribute_int("keepdims", 0)),
+    node("Gather", ["emotion_table", "input_ids"], ["emotion_tokens"]),
+    node("Mul", ["emotion_tokens", "mask"], ["emotion_masked"]),
+    node("ReduceSum", ["emotion_masked"], ["emotion_logits"],
+         attribute_ints("axes", [1]), attribute_int("keepdims", 0)),
+]
+
+graph = (b"".join(bytes_field(1, n) for n in nodes)
+         + bytes_field(2, "tiny-sentiment")
+         + bytes_field(5, tensor("sentiment_table", rows(SENTIMENT, 3)))
+         + bytes_field(5, tensor("emotion_table", rows(EMOTION, 8)))
+         + bytes_field(11, value_info("input_ids", 7, ["batch", "sequence"]))
+         + bytes_field(11, value_info("attention_mask", 7, ["batch", "sequence"]))
+         + bytes_field(12, value_info("sentiment_logits", 1, ["batch", 3]))
+         + bytes_field(12, value_info("emotion_logits", 1, ["batch", 8])))
+
+model = (int_field(1, 6)  # IR version
+         + bytes_field(2, "make_tiny_model.py")
+         + bytes_field(7, graph)
+         + bytes_field(8, bytes_field(1, "") + int_field(2, 11)))
+
+with open("tiny-sentiment.onnx", "wb") as out:
+    out.write(model)